@@ -0,0 +1,142 @@
+package de.golfgl.lightblocks.model;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.IntArray;
+
+import javax.annotation.Nullable;
+
+import de.golfgl.lightblocks.state.InitGameParameters;
+
+/**
+ * Gameboards and game models for the benchmarks. Lives in the model package to reach the parts of
+ * the model that are not public.
+ * <p>
+ * Everything random is seeded, so every run of a benchmark plays the same pieces on the same board.
+ */
+public class BenchmarkFixtures {
+    public static final long SEED = 42;
+    public static final IGameModelListener NO_USER_INTERFACE = new NoUserInterface();
+
+    /**
+     * the game model and the AI log via Gdx.app, so a headless application is needed
+     */
+    public static void initGdx() {
+        if (Gdx.app != null)
+            return;
+
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = -1;
+        new HeadlessApplication(new ApplicationAdapter() {
+        }, config);
+        Gdx.app.setLogLevel(Application.LOG_ERROR);
+    }
+
+    /**
+     * @param garbageRows rows at the bottom filled randomly, about half of their squares are set
+     */
+    public static Gameboard newGameboard(int garbageRows) {
+        MathUtils.random.setSeed(SEED);
+        Gameboard gameboard = new Gameboard();
+        gameboard.initGarbage(garbageRows);
+        return gameboard;
+    }
+
+    /**
+     * @param modeType see InitGameParameters.TYPE_*
+     * @return a started two player game without AI and user interface
+     */
+    public static ServerMultiplayerModel newGame(int modeType) {
+        MathUtils.random.setSeed(SEED);
+        ServerMultiplayerModel gameModel = new ServerMultiplayerModel();
+        startNewGame(gameModel, modeType);
+        return gameModel;
+    }
+
+    /**
+     * starts a new game on the reused game model, like the match does after a game over
+     */
+    public static void startNewGame(ServerMultiplayerModel gameModel, int modeType) {
+        InitGameParameters gameParams = new InitGameParameters();
+        gameParams.setModeType(modeType);
+        gameModel.startNewGame(gameParams);
+        gameModel.setUserInterface(NO_USER_INTERFACE);
+        gameModel.getSecondGameModel().setUserInterface(NO_USER_INTERFACE);
+    }
+
+    public static Gameboard getGameboard(GameModel gameModel) {
+        return gameModel.getGameboard();
+    }
+
+    private static class NoUserInterface implements IGameModelListener {
+        @Override
+        public void insertNewBlock(int x, int y, int blockType) {
+        }
+
+        @Override
+        public void moveTetro(Integer[][] v, int dx, int dy, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void rotateTetro(Integer[][] vOld, Integer[][] vNew, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void clearAndInsertLines(IntArray linesToRemove, boolean special, int[] garbageHolePosition) {
+        }
+
+        @Override
+        public void markAndMoveFreezedLines(boolean playSoundAndMove, IntArray removedLines, IntArray fullLines) {
+        }
+
+        @Override
+        public void setGameOver() {
+        }
+
+        @Override
+        public void showNextTetro(Integer[][] relativeBlockPositions, int blockType) {
+        }
+
+        @Override
+        public void activateNextTetro(Integer[][] boardBlockPositions, int blockType, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void swapHoldAndActivePiece(Integer[][] newHoldPiecePositions, Integer[][] oldActivePiecePositions,
+                                           Integer[][] newActivePiecePositions, int ghostPieceDistance,
+                                           int holdBlockType) {
+        }
+
+        @Override
+        public void pinTetromino(Integer[][] currentBlockPositions) {
+        }
+
+        @Override
+        public void updateScore(GameScore score, int gainedScore) {
+        }
+
+        @Override
+        public void markConflict(int x, int y) {
+        }
+
+        @Override
+        public void showMotivation(MotivationTypes achievement, @Nullable String extra) {
+        }
+
+        @Override
+        public void showGarbageAmount(int lines) {
+        }
+
+        @Override
+        public void showComboHeight(int comboHeight) {
+        }
+
+        @Override
+        public void emphasizeTimeLabel() {
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.golfgl.lightblocks.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.golfgl.lightblocks.server.model.InGameMessage;
+
+/**
+ * One frame of a two player game, both players make the same scripted inputs. A new game is
+ * started on the same game model after a game over, like the match does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameModelBenchmark {
+    private static final float FRAME_DELTA = 1 / 60f;
+    // an input every tenth of a second
+    private static final int FRAMES_PER_INPUT = 6;
+    private static final int[] SCRIPT = new int[]{InGameMessage.INPUT_START_MOVE_LEFT, InGameMessage.INPUT_STOP_MOVE,
+            InGameMessage.INPUT_ROTATE_RIGHT, InGameMessage.INPUT_START_MOVE_RIGHT, InGameMessage.INPUT_STOP_MOVE,
+            InGameMessage.INPUT_START_MOVE_RIGHT, InGameMessage.INPUT_STOP_MOVE, InGameMessage.INPUT_DROP_HARD,
+            InGameMessage.INPUT_DROP_NONE};
+
+    // see InitGameParameters.TYPE_*
+    @Param({"0", "1"})
+    public int modeType;
+
+    private ServerMultiplayerModel gameModel;
+    private int frame;
+    private int scriptPos;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.initGdx();
+        gameModel = BenchmarkFixtures.newGame(modeType);
+    }
+
+    @Benchmark
+    public boolean update() {
+        if (gameModel.isGameOver())
+            BenchmarkFixtures.startNewGame(gameModel, modeType);
+
+        frame++;
+        if (frame % FRAMES_PER_INPUT == 0) {
+            input(gameModel, SCRIPT[scriptPos]);
+            input(gameModel.getSecondGameModel(), SCRIPT[scriptPos]);
+            scriptPos = (scriptPos + 1) % SCRIPT.length;
+        }
+
+        gameModel.update(FRAME_DELTA);
+        return gameModel.isGameOver();
+    }
+
+    private static void input(GameModel gameModel, int input) {
+        switch (input) {
+            case InGameMessage.INPUT_START_MOVE_LEFT:
+                gameModel.inputStartMoveHorizontal(null, true);
+                break;
+            case InGameMessage.INPUT_START_MOVE_RIGHT:
+                gameModel.inputStartMoveHorizontal(null, false);
+                break;
+            case InGameMessage.INPUT_STOP_MOVE:
+                gameModel.inputEndMoveHorizontal(null, true);
+                gameModel.inputEndMoveHorizontal(null, false);
+                break;
+            case InGameMessage.INPUT_ROTATE_RIGHT:
+                gameModel.inputRotate(null, true);
+                break;
+            case InGameMessage.INPUT_DROP_HARD:
+                gameModel.inputSetSoftDropFactor(null, GameModel.FACTOR_HARD_DROP);
+                break;
+            case InGameMessage.INPUT_DROP_NONE:
+                gameModel.inputSetSoftDropFactor(null, GameModel.FACTOR_NO_DROP);
+                break;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.golfgl.lightblocks.model;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collision checks and line operations of the gameboard, used by the game model on every move and
+ * by the AI for every placement it evaluates
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameboardBenchmark {
+    private static final int GARBAGE_ROWS = 8;
+    private static final int LINES = 4;
+
+    private Gameboard gameboard;
+    private int[] rowMasks;
+    private Tetromino[] tetrominos;
+    private final Vector2 testPosition = new Vector2();
+    private final IntArray linesToRemove = new IntArray();
+    private final int[] holePosition = new int[LINES];
+
+    @Setup
+    public void setUp() {
+        gameboard = BenchmarkFixtures.newGameboard(GARBAGE_ROWS);
+        rowMasks = new int[Gameboard.GAMEBOARD_ALLROWS];
+        for (int y = 0; y < rowMasks.length; y++)
+            rowMasks[y] = gameboard.getRowMask(y);
+
+        tetrominos = new Tetromino[Tetromino.TETROMINO_NUMBER];
+        for (int i = 0; i < tetrominos.length; i++)
+            tetrominos[i] = new Tetromino(i, true);
+
+        for (int line = 0; line < LINES; line++) {
+            linesToRemove.add(line);
+            holePosition[line] = line * 3 % Gameboard.GAMEBOARD_COLUMNS;
+        }
+    }
+
+    /**
+     * every piece in every rotation and column just above the garbage, most of them collide
+     */
+    @Benchmark
+    public int isValidPosition() {
+        int valid = 0;
+        for (Tetromino tetromino : tetrominos) {
+            for (int rotation = 0; rotation < 4; rotation++) {
+                for (int x = -2; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
+                    testPosition.set(x, GARBAGE_ROWS - 2);
+                    if (gameboard.isValidPosition(tetromino, testPosition, rotation))
+                        valid++;
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * the same checks on the row masks only, as done by the AI's search
+     */
+    @Benchmark
+    public int isValidPositionRowMasks() {
+        int valid = 0;
+        for (Tetromino tetromino : tetrominos) {
+            for (int rotation = 0; rotation < 4; rotation++) {
+                int[] pieceRows = tetromino.getRowMasks(rotation);
+                for (int x = -2; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
+                    if (Gameboard.isValidPosition(rowMasks, pieceRows, x, GARBAGE_ROWS - 2))
+                        valid++;
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * inserts garbage lines and clears them again, so the gameboard is the same after every call
+     */
+    @Benchmark
+    public int insertAndClearLines() {
+        gameboard.insertLines(holePosition);
+        gameboard.clearLines(linesToRemove);
+        return gameboard.getColumnHeight(0);
+    }
+}
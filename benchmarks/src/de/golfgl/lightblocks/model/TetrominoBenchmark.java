@@ -0,0 +1,49 @@
+package de.golfgl.lightblocks.model;
+
+import com.badlogic.gdx.math.Vector2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block positions of the pieces, computed for every event the game model sends to its listener
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TetrominoBenchmark {
+    private Tetromino[] tetrominos;
+    private final Vector2 position = new Vector2(4, 18);
+
+    @Setup
+    public void setUp() {
+        tetrominos = new Tetromino[Tetromino.TETROMINO_NUMBER];
+        for (int i = 0; i < tetrominos.length; i++)
+            tetrominos[i] = new Tetromino(i, true);
+    }
+
+    /**
+     * every piece in every rotation
+     */
+    @Benchmark
+    public void getBlockPositions(Blackhole blackhole) {
+        for (Tetromino tetromino : tetrominos) {
+            for (int rotation = 0; rotation < 4; rotation++)
+                blackhole.consume(tetromino.getBlockPositions(position, rotation));
+        }
+    }
+}
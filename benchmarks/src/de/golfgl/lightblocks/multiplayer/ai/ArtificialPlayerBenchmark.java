@@ -0,0 +1,67 @@
+package de.golfgl.lightblocks.multiplayer.ai;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.golfgl.lightblocks.model.BenchmarkFixtures;
+import de.golfgl.lightblocks.model.Gameboard;
+import de.golfgl.lightblocks.model.ServerMultiplayerModel;
+import de.golfgl.lightblocks.model.Tetromino;
+import de.golfgl.lightblocks.state.InitGameParameters;
+
+/**
+ * Planning the moves for a new piece on a gameboard with garbage, on the calling thread like the
+ * match does without AI workers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtificialPlayerBenchmark {
+    private static final int GARBAGE_ROWS = 6;
+
+    @Param({"easy", "normal", "hard", "expert"})
+    public String profile;
+
+    private ArtificialPlayer aiPlayer;
+    private Gameboard gameboard;
+    private Tetromino[] tetrominos;
+    private int pieceNum;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.initGdx();
+        // the game model only gives the AI the next and hold piece
+        ServerMultiplayerModel gameModel = BenchmarkFixtures.newGame(InitGameParameters.TYPE_MODERN);
+        aiPlayer = new ArtificialPlayer(gameModel, gameModel.getSecondGameModel());
+        aiPlayer.setProfile(AiProfile.getBuiltIn(profile));
+        gameboard = BenchmarkFixtures.newGameboard(GARBAGE_ROWS);
+
+        tetrominos = new Tetromino[Tetromino.TETROMINO_NUMBER];
+        for (int i = 0; i < tetrominos.length; i++)
+            tetrominos[i] = new Tetromino(i, true);
+    }
+
+    @Benchmark
+    public void onNextPiece() {
+        Tetromino activePiece = tetrominos[pieceNum];
+        pieceNum = (pieceNum + 1) % tetrominos.length;
+        aiPlayer.onNextPiece(gameboard, activePiece);
+        // takes over the planned moves and frees the planning for the next call, the plan delay
+        // keeps the AI from moving
+        aiPlayer.update(0, activePiece);
+    }
+}
@@ -0,0 +1,137 @@
+package de.golfgl.lightblocks.server;
+
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketListener;
+import org.java_websocket.drafts.Draft_6455;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import de.golfgl.lightblocks.model.BenchmarkFixtures;
+import de.golfgl.lightblocks.server.model.InGameMessage;
+
+/**
+ * A tick of a match between a player using the text protocol and one using the batched binary
+ * protocol, so the match's listener builds every event in both formats. Both players make the
+ * same scripted inputs. The connections discard what is sent, the server is not started.
+ * <p>
+ * Countdowns and the pause after a game over are part of the measurement, like on a real server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+    private static final float FRAME_DELTA = 1 / 60f;
+    // an input every tenth of a second
+    private static final int FRAMES_PER_INPUT = 6;
+    private static final int[] SCRIPT = new int[]{InGameMessage.INPUT_START_MOVE_LEFT, InGameMessage.INPUT_STOP_MOVE,
+            InGameMessage.INPUT_ROTATE_RIGHT, InGameMessage.INPUT_START_MOVE_RIGHT, InGameMessage.INPUT_STOP_MOVE,
+            InGameMessage.INPUT_START_MOVE_RIGHT, InGameMessage.INPUT_STOP_MOVE, InGameMessage.INPUT_DROP_HARD,
+            InGameMessage.INPUT_DROP_NONE};
+
+    private Match match;
+    private Player textPlayer;
+    private Player binaryPlayer;
+    private DiscardingConnection textConnection;
+    private DiscardingConnection binaryConnection;
+    private int frame;
+    private int scriptPos;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.initGdx();
+        // the AI plans on the tick, sessions are not resumable
+        ServerConfiguration serverConfig = new ServerConfiguration(new String[]{"--verbosity=0", "--enableNsd=0",
+                "--server.aiThreads=0", "--server.slowTickMs=0", "--server.resumeGrace=0"});
+        LightblocksServer server = new LightblocksServer(new InetSocketAddress(0), serverConfig);
+        match = new Match(server, 1);
+
+        textConnection = new DiscardingConnection(server);
+        textPlayer = new Player(server, textConnection);
+        textPlayer.nickName = "text";
+        binaryConnection = new DiscardingConnection(server);
+        binaryPlayer = new Player(server, binaryConnection);
+        binaryPlayer.nickName = "binary";
+        binaryPlayer.binaryProtocol = true;
+        binaryPlayer.batchedFrames = true;
+        match.connectPlayer(textPlayer);
+        match.connectPlayer(binaryPlayer);
+
+        // the first game starts after the countdown
+        for (float time = 0; time <= Match.WAIT_TIME_START_PLAYNG; time += FRAME_DELTA)
+            match.update(FRAME_DELTA);
+    }
+
+    @Benchmark
+    public long update() {
+        frame++;
+        if (frame % FRAMES_PER_INPUT == 0) {
+            InGameMessage input = InGameMessage.fromInput(SCRIPT[scriptPos]);
+            try {
+                textPlayer.onMessage(input);
+                binaryPlayer.onMessage(input);
+            } catch (Player.UnexpectedException e) {
+                throw new IllegalStateException(e);
+            }
+            scriptPos = (scriptPos + 1) % SCRIPT.length;
+        }
+
+        match.update(FRAME_DELTA);
+        return textConnection.bytesSent + binaryConnection.bytesSent;
+    }
+
+    /**
+     * an open connection that only counts the payload sent to it
+     */
+    private static class DiscardingConnection extends WebSocketImpl {
+        private long bytesSent;
+
+        DiscardingConnection(WebSocketListener listener) {
+            super(listener, new Draft_6455());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public String getResourceDescriptor() {
+            return "/";
+        }
+
+        @Override
+        public void send(String text) {
+            bytesSent = bytesSent + text.length();
+        }
+
+        @Override
+        public void send(ByteBuffer bytes) {
+            bytesSent = bytesSent + bytes.remaining();
+        }
+
+        @Override
+        public void send(byte[] bytes) {
+            bytesSent = bytesSent + bytes.length;
+        }
+
+        @Override
+        public void close(int code, String message) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.golfgl.lightblocks.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.golfgl.lightblocks.model.BenchmarkFixtures;
+import de.golfgl.lightblocks.model.ServerMultiplayerModel;
+import de.golfgl.lightblocks.model.Tetromino;
+import de.golfgl.lightblocks.server.model.MatchInfo;
+import de.golfgl.lightblocks.state.InitGameParameters;
+
+/**
+ * The JSON messages: match information and scores sent by the server, the player information
+ * and text game inputs sent by the clients
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+    private static final String PLAYER_INFO = Serializer.ID_PLAYERINFO + "{\"nickName\":\"benchmark\","
+            + "\"clientVersion\":" + LightblocksServer.SERVER_VERSION + ",\"gameMode\":\"modern\","
+            + "\"binaryProtocol\":1,\"batchedFrames\":true}";
+    private static final String IN_GAME_MESSAGE = Serializer.ID_IN_GAME_MSG + "DRH";
+
+    private Serializer serializer;
+    private MatchInfo matchInfo;
+    private MatchInfo.ScoreInfo scoreInfo;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.initGdx();
+        serializer = new Serializer(new Metrics());
+
+        // filled like the match does, with the gameboards of a game with garbage
+        ServerMultiplayerModel gameModel = BenchmarkFixtures.newGame(InitGameParameters.TYPE_MODERN);
+        BenchmarkFixtures.getGameboard(gameModel).initGarbage(8);
+        BenchmarkFixtures.getGameboard(gameModel.getSecondGameModel()).initGarbage(4);
+        matchInfo = new MatchInfo();
+        matchInfo.player1 = newPlayerInfo(gameModel, "benchmark");
+        matchInfo.player2 = newPlayerInfo(gameModel.getSecondGameModel(), "AI");
+        matchInfo.isModern = true;
+        matchInfo.matchId = 1;
+        scoreInfo = matchInfo.player1.score;
+    }
+
+    private static MatchInfo.PlayerInfo newPlayerInfo(ServerMultiplayerModel gameModel, String nickname) {
+        MatchInfo.PlayerInfo playerInfo = new MatchInfo.PlayerInfo();
+        playerInfo.score = new MatchInfo.ScoreInfo(gameModel.getScore());
+        playerInfo.nickname = nickname;
+        playerInfo.gameboard = gameModel.getSerializedGameboard();
+        playerInfo.activePiece = serializeTetromino(gameModel.getActiveTetromino().getCurrentBlockPositions(),
+                gameModel.getActiveTetromino());
+        playerInfo.nextPiece = serializeTetromino(gameModel.getNextTetromino().getRelativeBlockPositions(),
+                gameModel.getNextTetromino());
+        return playerInfo;
+    }
+
+    private static String serializeTetromino(Integer[][] positions, Tetromino tetromino) {
+        StringBuilder builder = new StringBuilder();
+        for (Integer[] position : positions)
+            builder.append(position[0].intValue()).append('-').append(position[1].intValue()).append('-');
+        return builder.append(tetromino.getTetrominoType()).toString();
+    }
+
+    @Benchmark
+    public String serializeMatchInfo() {
+        return serializer.serialize(matchInfo);
+    }
+
+    @Benchmark
+    public String serializeScore() {
+        return serializer.serialize(scoreInfo);
+    }
+
+    @Benchmark
+    public Object deserializePlayerInfo() {
+        return serializer.deserialize(PLAYER_INFO);
+    }
+
+    @Benchmark
+    public Object deserializeInGameMessage() {
+        return serializer.deserialize(IN_GAME_MESSAGE);
+    }
+}
@@ -0,0 +1,76 @@
+package de.golfgl.lightblocks.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.golfgl.lightblocks.model.BenchmarkFixtures;
+import de.golfgl.lightblocks.model.Gameboard;
+import de.golfgl.lightblocks.model.Tetromino;
+
+/**
+ * Writing and parsing the replay of a game, done by the game when a score is saved or a replay
+ * is watched
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+    private static final int PIECES = 200;
+    // milliseconds between two steps of a piece
+    private static final int STEP_MS = 150;
+
+    private Replay replay;
+    private String replayString;
+
+    /**
+     * records a game of moved, rotated and dropped pieces on a gameboard with garbage
+     */
+    @Setup
+    public void setUp() {
+        Gameboard gameboard = BenchmarkFixtures.newGameboard(8);
+        replay = new Replay();
+        int timeMs = 0;
+        for (int piece = 0; piece < PIECES; piece++) {
+            Tetromino tetromino = new Tetromino(piece % Tetromino.TETROMINO_NUMBER, true);
+            replay.addNextPieceStep(timeMs, gameboard, tetromino);
+            int distance = piece % 7 - 3;
+            for (int move = 0; move < Math.abs(distance); move++) {
+                timeMs = timeMs + STEP_MS;
+                tetromino.getPosition().x += Integer.signum(distance);
+                replay.addMovePieceStep(timeMs, true, (byte) Integer.signum(distance));
+            }
+            timeMs = timeMs + STEP_MS;
+            tetromino.setRotation(1);
+            replay.addRotatePieceStep(timeMs, tetromino);
+            timeMs = timeMs + STEP_MS;
+            tetromino.getPosition().y -= 8;
+            replay.addMovePieceStep(timeMs, false, (byte) -8);
+            timeMs = timeMs + STEP_MS;
+            replay.addDropStep(timeMs, tetromino).score = piece * 10;
+        }
+        replayString = replay.toString();
+    }
+
+    @Benchmark
+    public String writeReplay() {
+        return replay.toString();
+    }
+
+    @Benchmark
+    public boolean parseReplay() {
+        return new Replay().fromString(replayString);
+    }
+}
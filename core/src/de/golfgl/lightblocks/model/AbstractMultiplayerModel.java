@@ -128,8 +128,9 @@ public abstract class AbstractMultiplayerModel<T extends AbstractMultiplayerMode
         // 9 lines will get the same gap, then we switch over to the next
 
         int numOfLines = modelConnector.removeGarbage(isFirstPlayer(), removedLines);
-
-        int[] retVal = new int[numOfLines];
+        int[] retVal = obtainGarbageLines(numOfLines);
+        if (retVal == null)
+            return null;
 
         for (int garbageLine = 0; garbageLine < numOfLines; garbageLine++) {
             retVal[garbageLine] = modelConnector.garbageGapPos[currentGarbageGapPosIndex];
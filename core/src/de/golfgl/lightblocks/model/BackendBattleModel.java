@@ -234,7 +234,9 @@ public class BackendBattleModel extends GameModel {
         if (waitingGarbage.size > 0 && waitingGarbage.first().timeMs <= getScore().getTimeMs()) {
             WaitingGarbage garbageToAdd = this.waitingGarbage.removeFirst();
 
-            int[] retVal = new int[garbageToAdd.lines];
+            int[] retVal = obtainGarbageLines(garbageToAdd.lines);
+            if (retVal == null)
+                return null;
 
             for (int i = 0; i < retVal.length; i++) {
                 int garbageSlotPos = garbageReceived / MultiplayerModel.GARBAGEGAP_CHANGECOUNT;
@@ -2,6 +2,7 @@ package de.golfgl.lightblocks.model;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.I18NBundle;
 import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Json;
@@ -87,7 +88,15 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
     // von removeLines geschrieben, für ui.clearAndInsertLines aufbewahrt
     private final IntArray removedLines;
     private int[] garbageLines;
+    // Puffer für Positionen, die den Listenern nach einer Änderung noch übergeben werden
+    private final Integer[][] oldBlockPositions = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
+    private final Integer[][] holdBlockPositions = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
     private boolean removeWasSpecial;
+    // nicht mehr benutzte Steine, werden beim Ziehen wiederverwendet
+    private final Array<Tetromino> freeTetrominos = new Array<>();
+    private Tetromino holdTetromino;
+    // Garbage-Arrays je Anzahl Zeilen, siehe obtainGarbageLines
+    private int[][] garbageLinesBuffers = new int[Gameboard.GAMEBOARD_ALLROWS + 1][];
 
     public GameModel() {
 
@@ -341,7 +350,27 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
 
     @Override
     public Tetromino getHoldTetromino() {
-        return onHoldTetromino >= 0 ? new Tetromino(onHoldTetromino, isModernRotation()) : null;
+        if (onHoldTetromino < 0)
+            return null;
+
+        // the instance is reused for the next call
+        if (holdTetromino == null || holdTetromino.isSrs() != isModernRotation())
+            holdTetromino = new Tetromino(onHoldTetromino, isModernRotation());
+        else
+            holdTetromino.init(onHoldTetromino);
+        return holdTetromino;
+    }
+
+    /**
+     * @return a tetromino in its initial state, reused if possible
+     */
+    private Tetromino obtainTetromino(int type) {
+        Tetromino tetromino = freeTetrominos.size > 0 ? freeTetrominos.pop() : null;
+        if (tetromino == null || tetromino.isSrs() != isModernRotation())
+            return new Tetromino(type, isModernRotation());
+
+        tetromino.init(type);
+        return tetromino;
     }
 
     public boolean isGhostPieceAllowedByGameModel() {
@@ -495,6 +524,24 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
         return null;
     }
 
+    /**
+     * Array für drawGarbageLines. Wird für dieselbe Anzahl Zeilen wiederverwendet, das Modell und
+     * die Listener benutzen es nur bis zum nächsten Ablegen
+     *
+     * @return null für keine Zeilen
+     */
+    @Nullable
+    protected int[] obtainGarbageLines(int numOfLines) {
+        if (numOfLines <= 0)
+            return null;
+
+        if (numOfLines >= garbageLinesBuffers.length)
+            garbageLinesBuffers = new int[numOfLines + 1][];
+        if (garbageLinesBuffers[numOfLines] == null)
+            garbageLinesBuffers[numOfLines] = new int[numOfLines];
+        return garbageLinesBuffers[numOfLines];
+    }
+
     /**
      * for overriding purpose. Lines are removed but garbage not yet inserted
      */
@@ -555,7 +602,8 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
 
             // Die Position und auch die Einzelteile darin muss geclonet werden, um nicht
             // durch die Rotation verloren zu gehen
-            Integer[][] oldBlockPositionsNewArray = cloneDoubleIntegerArray(activeTetromino.getCurrentBlockPositions());
+            Integer[][] oldBlockPositionsNewArray = copyBlockPositions(activeTetromino.getCurrentBlockPositions(),
+                    oldBlockPositions);
 
             if (wallkickPos != null)
                 activeTetromino.getPosition().set(wallkickPos);
@@ -570,13 +618,16 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
         }
     }
 
-    private Integer[][] cloneDoubleIntegerArray(Integer[][] arrayToClone) {
-        Integer[][] clonedArray = new Integer[arrayToClone.length][2];
-        for (int i = 0; i < arrayToClone.length; i++) {
-            clonedArray[i][0] = new Integer(arrayToClone[i][0]);
-            clonedArray[i][1] = new Integer(arrayToClone[i][1]);
+    /**
+     * kopiert die Positionen in den übergebenen Puffer. Die Integer selbst sind unveränderlich und
+     * können geteilt werden
+     */
+    private static Integer[][] copyBlockPositions(Integer[][] from, Integer[][] to) {
+        for (int i = 0; i < from.length; i++) {
+            to[i][0] = from[i][0];
+            to[i][1] = from[i][1];
         }
-        return clonedArray;
+        return to;
     }
 
     /**
@@ -598,8 +649,10 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
         if (!isHoldMoveAllowedByModel() || noDropSinceHoldMove || isGameOver)
             return false;
 
-        Integer[][] newHoldPositions = cloneDoubleIntegerArray(activeTetromino.getRelativeBlockPositions());
-        Integer[][] oldActivePositions = cloneDoubleIntegerArray(activeTetromino.getCurrentBlockPositions());
+        Integer[][] newHoldPositions = copyBlockPositions(activeTetromino.getRelativeBlockPositions(),
+                holdBlockPositions);
+        Integer[][] oldActivePositions = copyBlockPositions(activeTetromino.getCurrentBlockPositions(),
+                oldBlockPositions);
 
         if (onHoldTetromino < 0) {
             // Der erste durchgeführte Hold
@@ -611,8 +664,9 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
             // resetMovements und replay.add... nicht nötig, ist bereits in activateNextTetro enthalten
         } else {
             Tetromino tmp = activeTetromino;
-            activeTetromino = new Tetromino(onHoldTetromino, isModernRotation());
+            activeTetromino = obtainTetromino(onHoldTetromino);
             onHoldTetromino = tmp.getTetrominoType();
+            freeTetrominos.add(tmp);
             checkActiveTetroPosBeforeUiInformed();
             int ghostPieceDistance = gameboard.getGhostPieceDistance(activeTetromino, 0);
             uiGameboard.swapHoldAndActivePiece(newHoldPositions, oldActivePositions,
@@ -643,8 +697,11 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
             return;
         }
 
+        Tetromino droppedTetromino = activeTetromino;
         activeTetromino = nextTetromino;
-        nextTetromino = drawyer.getNextTetromino(isModernRotation());
+        nextTetromino = obtainTetromino(drawyer.drawNextTetromino());
+        if (droppedTetromino != null)
+            freeTetrominos.add(droppedTetromino);
         checkActiveTetroPosBeforeUiInformed();
 
         // ins Display mit beiden
@@ -806,7 +863,7 @@ public abstract class GameModel implements Json.Serializable, AiAcessibleGameMod
     }
 
     protected void initializeActiveAndNextTetromino() {
-        nextTetromino = drawyer.getNextTetromino(isModernRotation());
+        nextTetromino = obtainTetromino(drawyer.drawNextTetromino());
         activateNextTetromino();
     }
 
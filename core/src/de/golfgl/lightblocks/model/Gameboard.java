@@ -18,9 +18,14 @@ public class Gameboard implements Json.Serializable {
     public static final int GAMEBOARD_COLUMNS = 10;
     public static final int SQUARE_EMPTY = -1;
     public static final int SQUARE_GARBAGE = 9;
+    public static final int FULL_ROW = (1 << GAMEBOARD_COLUMNS) - 1;
 
     // Der Tetromino-Index an dieser Position (y/x)
     private final int[][] gameboardSquare;
+    // die belegten Felder als Bitmaske je Zeile, Bit x für Spalte x. Immer synchron mit gameboardSquare
+    private final int[] rowMasks = new int[GAMEBOARD_ALLROWS];
+    // Höhe der Oberfläche je Spalte: Zeile über dem obersten Block, 0 für leere Spalten
+    private final int[] columnHeights = new int[GAMEBOARD_COLUMNS];
     Vector2 tempPos;
 
     Gameboard() {
@@ -35,6 +40,51 @@ public class Gameboard implements Json.Serializable {
 
     }
 
+    private static int calcRowMask(int[] row) {
+        int mask = 0;
+        for (int x = 0; x < GAMEBOARD_COLUMNS; x++) {
+            if (row[x] != SQUARE_EMPTY)
+                mask = mask | (1 << x);
+        }
+        return mask;
+    }
+
+    private void updateRowMasks() {
+        for (int y = 0; y < GAMEBOARD_ALLROWS; y++)
+            rowMasks[y] = calcRowMask(gameboardSquare[y]);
+        updateColumnHeights();
+    }
+
+    private void updateColumnHeights() {
+        calcColumnHeights(rowMasks, columnHeights);
+    }
+
+    /**
+     * ermittelt die Höhe je Spalte aus den Bitmasken der Zeilen
+     */
+    public static void calcColumnHeights(int[] rowMasks, int[] columnHeights) {
+        for (int x = 0; x < GAMEBOARD_COLUMNS; x++) {
+            int y = GAMEBOARD_ALLROWS - 1;
+            while (y >= 0 && (rowMasks[y] & (1 << x)) == 0)
+                y--;
+            columnHeights[x] = y + 1;
+        }
+    }
+
+    /**
+     * @return row above the column's highest block, 0 if the column is empty
+     */
+    public int getColumnHeight(int column) {
+        return columnHeights[column];
+    }
+
+    /**
+     * @return occupied squares of the row, bit x for column x
+     */
+    public int getRowMask(int row) {
+        return rowMasks[row];
+    }
+
     public static char gameboardSquareToChar(int gameboardSquare) {
         if (gameboardSquare == SQUARE_EMPTY)
             return ' ';
@@ -54,11 +104,38 @@ public class Gameboard implements Json.Serializable {
     }
 
     public int getGhostPieceDistance(Tetromino activeTetromino, int horizontalMove) {
+        return getDropDistance(rowMasks, columnHeights, activeTetromino, activeTetromino.getCurrentRotation(),
+                (int) activeTetromino.getPosition().x + horizontalMove, (int) activeTetromino.getPosition().y);
+    }
+
+    /**
+     * wie weit ein Stein auf einem Spielfeld aus Bitmasken fallen kann, auch für die KI
+     *
+     * @param columnHeights Höhe je Spalte wie von {@link #calcColumnHeights(int[], int[])}
+     */
+    public static int getDropDistance(int[] rowMasks, int[] columnHeights, Tetromino tetromino, int rotation,
+                                      int posX, int posY) {
+        // liegt der Stein überall über der Oberfläche, fällt er bis zur ersten Berührung mit ihr
+        int[] columnBottoms = tetromino.getColumnBottoms(rotation);
+        int distance = GAMEBOARD_ALLROWS;
+        for (int column = 0; column < columnBottoms.length && distance >= 0; column++) {
+            if (columnBottoms[column] == Tetromino.NO_BLOCK)
+                continue;
+
+            int x = posX + column;
+            if (x < 0 || x >= GAMEBOARD_COLUMNS)
+                distance = -1;
+            else
+                distance = Math.min(distance, posY + columnBottoms[column] - columnHeights[x]);
+        }
+        if (distance >= 0 && posY + tetromino.getMaxY(rotation) < GAMEBOARD_ALLROWS)
+            return distance;
+
+        // sonst (unter Überhängen, außerhalb des Spielfelds) nach unten abtasten
+        int[] pieceRows = tetromino.getRowMasks(rotation);
         int i;
         for (i = 1; i <= GAMEBOARD_ALLROWS; i++) {
-            tempPos.set(activeTetromino.getPosition().x + horizontalMove,
-                    activeTetromino.getPosition().y - i);
-            if (!isValidPosition(activeTetromino, tempPos, activeTetromino.getCurrentRotation())) {
+            if (!isValidPosition(rowMasks, pieceRows, posX, posY - i)) {
                 break;
             }
         }
@@ -95,25 +172,56 @@ public class Gameboard implements Json.Serializable {
      * mit der übergebenen Rotation eine valide Position hätte
      */
     public boolean isValidPosition(Tetromino tetromino, Vector2 testPosition, int testRotation) {
-        for (Integer[] coord : tetromino.getBlockPositions(testPosition, testRotation)) {
-            if (isValidCoordinate(coord[0], coord[1]) != 0) {
-                return false;
-            }
-        }
+        return isValidPosition(tetromino.getRowMasks(testRotation), (int) testPosition.x, (int) testPosition.y);
+    }
 
-        return true;
+    /**
+     * prüft per Bitmasken, ob ein Stein an der Position Platz hat
+     *
+     * @param pieceRows Bitmasken der Zeilen des Steins, Bit 0 ist seine Spalte 0
+     * @param x         Position der Spalte 0 des Steins
+     * @param y         Position der Zeile 0 des Steins
+     */
+    public boolean isValidPosition(int[] pieceRows, int x, int y) {
+        return isValidPosition(rowMasks, pieceRows, x, y);
     }
 
-    public boolean isRowFull(int row) {
-        for (int j = 0; j < GAMEBOARD_COLUMNS; j++) {
-            if (gameboardSquare[row][j] == SQUARE_EMPTY) {
+    /**
+     * wie {@link #isValidPosition(int[], int, int)}, für ein Spielfeld aus Bitmasken, auch für die KI
+     */
+    public static boolean isValidPosition(int[] rowMasks, int[] pieceRows, int x, int y) {
+        // jeder Stein hat Blöcke in den Spalten 0 bis 3
+        if (x <= -Tetromino.TETROMINO_BLOCKCOUNT || x >= GAMEBOARD_COLUMNS)
+            return false;
+
+        for (int row = 0; row < pieceRows.length; row++) {
+            int pieceRow = pieceRows[row];
+            if (pieceRow == 0)
+                continue;
+
+            int boardY = y + row;
+            if (boardY < 0 || boardY >= GAMEBOARD_ALLROWS)
+                return false;
+
+            if (x < 0) {
+                // links herausragende Blöcke
+                if ((pieceRow & ((1 << -x) - 1)) != 0)
+                    return false;
+                pieceRow = pieceRow >>> -x;
+            } else
+                pieceRow = pieceRow << x;
+
+            if ((pieceRow & ~FULL_ROW) != 0 || (pieceRow & rowMasks[boardY]) != 0)
                 return false;
-            }
         }
 
         return true;
     }
 
+    public boolean isRowFull(int row) {
+        return rowMasks[row] == FULL_ROW;
+    }
+
     /**
      * Prüft ob die gegebene Koordinate einen Block aufnehmen kann
      *
@@ -128,35 +236,42 @@ public class Gameboard implements Json.Serializable {
             return -1;
         }
 
-        return (gameboardSquare[y][x] == SQUARE_EMPTY ? 0 : 1);
+        return (rowMasks[y] & (1 << x)) == 0 ? 0 : 1;
     }
 
     public void pinTetromino(Tetromino activeTetromino) {
-        for (Vector2 coord : activeTetromino.getRotationVectors(activeTetromino.getCurrentRotation())) {
-            int x = (int) activeTetromino.getPosition().x + (int) coord.x;
-            int y = (int) activeTetromino.getPosition().y + (int) coord.y;
+        int[] blocks = activeTetromino.getBlocks(activeTetromino.getCurrentRotation());
+        for (int i = 0; i < blocks.length; i += 2) {
+            int x = (int) activeTetromino.getPosition().x + blocks[i];
+            int y = (int) activeTetromino.getPosition().y + blocks[i + 1];
             gameboardSquare[y][x] = activeTetromino.getTetrominoType();
+            rowMasks[y] = rowMasks[y] | (1 << x);
+            columnHeights[x] = Math.max(columnHeights[x], y + 1);
         }
     }
 
     public void pinTetromino(Integer[][] activePiecePos, int type) {
         for (Integer[] activePiecePo : activePiecePos) {
             gameboardSquare[activePiecePo[1]][activePiecePo[0]] = type;
+            rowMasks[activePiecePo[1]] = rowMasks[activePiecePo[1]] | (1 << activePiecePo[0]);
+            columnHeights[activePiecePo[0]] = Math.max(columnHeights[activePiecePo[0]], activePiecePo[1] + 1);
         }
     }
 
     public void clearLines(IntArray linesToRemove) {
         for (int i = linesToRemove.size - 1; i >= 0; i--) {
+            // die Zeilen darüber rutschen nach, die entfernte wird oben leer wiederverwendet
+            int line = linesToRemove.get(i);
+            int[] removedRow = gameboardSquare[line];
+            System.arraycopy(gameboardSquare, line + 1, gameboardSquare, line, GAMEBOARD_ALLROWS - 1 - line);
+            System.arraycopy(rowMasks, line + 1, rowMasks, line, GAMEBOARD_ALLROWS - 1 - line);
 
-            for (int y = linesToRemove.get(i); y < GAMEBOARD_ALLROWS; y++) {
-                for (int x = 0; x < GAMEBOARD_COLUMNS; x++) {
-                    if (y == GAMEBOARD_ALLROWS - 1)
-                        gameboardSquare[y][x] = SQUARE_EMPTY;
-                    else
-                        gameboardSquare[y][x] = gameboardSquare[y + 1][x];
-                }
-            }
+            for (int x = 0; x < GAMEBOARD_COLUMNS; x++)
+                removedRow[x] = SQUARE_EMPTY;
+            gameboardSquare[GAMEBOARD_ALLROWS - 1] = removedRow;
+            rowMasks[GAMEBOARD_ALLROWS - 1] = 0;
         }
+        updateColumnHeights();
     }
 
     /**
@@ -164,20 +279,18 @@ public class Gameboard implements Json.Serializable {
      * als auch an welcher Stelle die Leerstelle ist.
      */
     public void insertLines(int[] holePosition) {
-        final int numberOfLines = holePosition.length;
-
-        // die Zeilen weiter oben hochziehen
-        for (int y = GAMEBOARD_ALLROWS - 1; y >= numberOfLines; y--) {
-            for (int x = 0; x < GAMEBOARD_COLUMNS; x++)
-                gameboardSquare[y][x] = gameboardSquare[y - numberOfLines][x];
-        }
+        for (int lineIndex = 0; lineIndex < holePosition.length; lineIndex++) {
+            // die Zeilen hochziehen, die oberste fällt heraus und wird unten als Garbage wiederverwendet
+            int[] newRow = gameboardSquare[GAMEBOARD_ALLROWS - 1];
+            System.arraycopy(gameboardSquare, 0, gameboardSquare, 1, GAMEBOARD_ALLROWS - 1);
+            System.arraycopy(rowMasks, 0, rowMasks, 1, GAMEBOARD_ALLROWS - 1);
 
-        // und unten nun die neuen rein
-        for (int y = numberOfLines - 1; y >= 0; y--) {
-            int lineIndex = numberOfLines - 1 - y;
             for (int x = 0; x < GAMEBOARD_COLUMNS; x++)
-                gameboardSquare[y][x] = (holePosition[lineIndex] == x ? SQUARE_EMPTY : SQUARE_GARBAGE);
+                newRow[x] = (holePosition[lineIndex] == x ? SQUARE_EMPTY : SQUARE_GARBAGE);
+            gameboardSquare[0] = newRow;
+            rowMasks[0] = calcRowMask(newRow);
         }
+        updateColumnHeights();
     }
 
     /**
@@ -222,6 +335,7 @@ public class Gameboard implements Json.Serializable {
                 gameboardSquare[y][x] = gameboardCharToSquare(jsonString.charAt(y * GAMEBOARD_COLUMNS + x));
             }
         }
+        updateRowMasks();
 
     }
 
@@ -231,6 +345,7 @@ public class Gameboard implements Json.Serializable {
                 gameboardSquare[y][x] = gameboard[y * GAMEBOARD_COLUMNS + x];
             }
         }
+        updateRowMasks();
     }
 
     public static Gameboard initFromArray(int[][] gameboardArray) {
@@ -240,6 +355,7 @@ public class Gameboard implements Json.Serializable {
                 gameboard.gameboardSquare[y][x] = gameboardArray[y][x];
             }
         }
+        gameboard.updateRowMasks();
         return gameboard;
     }
 
@@ -259,7 +375,9 @@ public class Gameboard implements Json.Serializable {
                 else
                     hasGap = true;
             }
+            rowMasks[y] = calcRowMask(gameboardSquare[y]);
         }
+        updateColumnHeights();
     }
 
     /**
@@ -34,7 +34,7 @@ public class GarbageModel extends MissionModel {
         int[] retVal = null;
 
         if (MathUtils.randomBoolean(garbageChance)) {
-            retVal = new int[1];
+            retVal = obtainGarbageLines(1);
             retVal[0] = 0;
         }
 
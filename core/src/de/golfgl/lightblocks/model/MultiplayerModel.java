@@ -97,7 +97,9 @@ public class MultiplayerModel extends GameModel {
             });
         }
 
-        int[] retVal = new int[numOfLines];
+        int[] retVal = obtainGarbageLines(numOfLines);
+        if (retVal == null)
+            return null;
 
         for (int garbageLine = 0; garbageLine < numOfLines; garbageLine++) {
             //System.out.println(currentGarbageHolePosIndex + ";" + currentGarbageHolePosUsed);
@@ -18,14 +18,20 @@ class TetrominoDrawyer implements Json.Serializable {
      * returns the next tetromino
      */
     public Tetromino getNextTetromino(boolean useSrs) {
+        return new Tetromino(drawNextTetromino(), useSrs);
+    }
 
-        Tetromino retVal;
+    /**
+     * returns the type of the next tetromino
+     */
+    public int drawNextTetromino() {
+        int retVal;
 
         synchronized (drawyer) {
             if (drawyer.size < 1)
                 determineNextTetrominos();
 
-            retVal = new Tetromino(drawyer.get(0), useSrs);
+            retVal = drawyer.get(0);
 
             // Position weiterschieben
             drawyer.removeIndex(0);
@@ -0,0 +1,68 @@
+package de.golfgl.lightblocks.multiplayer;
+
+/**
+ * Compact binary encoding of the in-game messages, used when the server supports it.
+ * <p>
+ * Every binary message starts with an opcode byte. Events of the opponent's game model have the
+ * {@link #FLAG_OTHER} bit set, that's the "O" prefix of the text protocol. Positions, distances
+ * and counts are single signed bytes. Match information, motivations and general messages are
+ * always sent as text.
+ * <p>
+ * Must be kept in sync with the server's BinaryProtocol
+ */
+public class BinaryProtocol {
+    public static final int VERSION = 1;
+
+    public static final int FLAG_OTHER = 0x80;
+
+    // server to client: game model events
+    public static final int MOVE = 1;
+    public static final int ROTATE = 2;
+    public static final int CLEAR_INSERT = 3;
+    public static final int GAME_OVER = 4;
+    public static final int NEXT = 5;
+    public static final int ACTIVATE_NEXT = 6;
+    public static final int SWAP_HOLD = 7;
+    public static final int PIN = 8;
+    public static final int SCORE = 9;
+    public static final int CONFLICT = 10;
+    public static final int GARBAGE = 11;
+    // batch of messages sent in one frame: u16 length, message, u16 length, message...
+    public static final int BATCH = 0x7f;
+    // same as BATCH, but FLAG_OTHER of every message has to be inverted
+    public static final int BATCH_MIRRORED = 0x7e;
+
+    // client to server: one opcode byte per input, the index of this array
+    private static final String[] INPUTS = new String[]{null,
+            "SML", "SMR", "SMH", "HAT", "ROR", "ROL", "DRN", "DRS", "DRH"};
+
+    /**
+     * @return opcode of the in game message, or 0 if it has no binary encoding
+     */
+    public static byte getInputOpcode(String message) {
+        for (byte i = 1; i < INPUTS.length; i++) {
+            if (INPUTS[i].equals(message))
+                return i;
+        }
+        return 0;
+    }
+
+    static int readInt(byte[] packet, int pos) {
+        return (packet[pos] & 0xff) << 24 | (packet[pos + 1] & 0xff) << 16
+                | (packet[pos + 2] & 0xff) << 8 | (packet[pos + 3] & 0xff);
+    }
+
+    /**
+     * reads four block positions
+     *
+     * @return position after the block positions
+     */
+    static int readPositions(byte[] packet, int pos, Integer[][] positions) {
+        for (int i = 0; i < positions.length; i++) {
+            positions[i][0] = (int) packet[pos];
+            positions[i][1] = (int) packet[pos + 1];
+            pos = pos + 2;
+        }
+        return pos;
+    }
+}
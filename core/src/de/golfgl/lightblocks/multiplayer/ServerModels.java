@@ -12,6 +12,9 @@ public class ServerModels {
         public boolean authRequired;
         public boolean privateRooms;
         public List<String> modes;
+        public int binaryProtocol;
+        public boolean batchedFrames;
+        public int sessionResume;
 
         // sent on ping pong
         public int activePlayers = -1;
@@ -18,6 +18,9 @@ public class ServerMultiplayerManager {
     public static final String ID_SERVERINFO = "HSH";
     public static final String ID_PLAYERINFO = "PIN";
     public static final String ID_MATCHINFO = "MCH";
+    public static final String ID_BATCH = "BAT";
+    public static final char BATCH_SEPARATOR = '\u001e';
+    public static final String ID_SESSION = "SES";
     private static final long SECONDS_TIMEOUT = 3000L;
     private final LightBlocksGame app;
 
@@ -33,6 +36,10 @@ public class ServerMultiplayerManager {
     private ServerMultiplayerModel gameModel;
     private long lastQueueProcessedMs;
     private long lastMessageSendMs;
+    private boolean binaryProtocol;
+    private String address;
+    private String sessionToken;
+    private boolean resuming;
 
     public ServerMultiplayerManager(LightBlocksGame app) {
         this.app = app;
@@ -43,25 +50,47 @@ public class ServerMultiplayerManager {
         state = PlayState.CLOSED;
         socket = null;
         pingMs = -1;
+        sessionToken = null;
+        resuming = false;
     }
 
     public void connect(String address) {
         if (isClosed()) {
             lastErrorMsg = null;
-            this.socket = WebSockets.newSocket(address);
-            socket.setSendGracefully(true);
-            socket.addListener(new SocketListener());
-            try {
-                socket.connect();
-                state = PlayState.CONNECTING;
-            } catch (Throwable t) {
-                lastErrorMsg = t.getMessage();
-                Gdx.app.error("WS", t.getMessage(), t);
-                clear();
-            }
+            this.address = address;
+            openSocket();
+        }
+    }
+
+    private void openSocket() {
+        this.socket = WebSockets.newSocket(address);
+        socket.setSendGracefully(true);
+        socket.addListener(new SocketListener());
+        try {
+            socket.connect();
+            state = PlayState.CONNECTING;
+        } catch (Throwable t) {
+            lastErrorMsg = t.getMessage();
+            Gdx.app.error("WS", t.getMessage(), t);
+            clear();
         }
     }
 
+    private boolean canResumeSession() {
+        return state == PlayState.IN_GAME && gameModel != null && sessionToken != null;
+    }
+
+    /**
+     * connection dropped while playing: a new connection is opened and the session on the server
+     * resumed when the server information is received
+     */
+    private void resumeSession() {
+        Gdx.app.log("WS", "Connection lost, resuming session");
+        resuming = true;
+        lastErrorMsg = null;
+        openSocket();
+    }
+
     public void disconnect() {
         if (!isClosed() && socket.isClosed()) {
             clear();
@@ -90,6 +119,13 @@ public class ServerMultiplayerManager {
         return state == PlayState.LOBBY || state == PlayState.IN_GAME;
     }
 
+    /**
+     * @return true while a dropped connection is reestablished
+     */
+    public boolean isResuming() {
+        return resuming;
+    }
+
     public void doPing() {
         if (isConnected()) {
             pingMs = -1;
@@ -133,6 +169,19 @@ public class ServerMultiplayerManager {
         if (roomName != null && !roomName.isEmpty()) {
             playerInfo.addChild("roomName", new JsonValue(roomName));
         }
+        binaryProtocol = serverInfo.binaryProtocol >= BinaryProtocol.VERSION;
+        if (binaryProtocol) {
+            playerInfo.addChild("binaryProtocol", new JsonValue(BinaryProtocol.VERSION));
+        }
+        if (serverInfo.batchedFrames) {
+            playerInfo.addChild("batchedFrames", new JsonValue(true));
+        }
+        if (resuming && sessionToken != null) {
+            playerInfo.addChild("resumeToken", new JsonValue(sessionToken));
+            playerInfo.addChild("matchInfoVersion", new JsonValue(serverMultiplayerModel.getMatchInfoVersion()));
+        }
+        resuming = false;
+        sessionToken = null;
 
         socket.send(ID_PLAYERINFO + playerInfo.toJson(JsonWriter.OutputType.json));
         lastMessageSendMs = TimeUtils.millis();
@@ -151,6 +200,7 @@ public class ServerMultiplayerManager {
 
     public void doStopGame() {
         this.gameModel = null;
+        sessionToken = null;
         if (isConnected()) {
             socket.close();
         }
@@ -176,6 +226,9 @@ public class ServerMultiplayerManager {
         serverInfo.version = jsonValue.getInt("version");
         serverInfo.modes = new ArrayList<>();
         serverInfo.privateRooms = jsonValue.getBoolean("privateRooms", false);
+        serverInfo.binaryProtocol = jsonValue.getInt("binaryProtocol", 0);
+        serverInfo.batchedFrames = jsonValue.getBoolean("batchedFrames", false);
+        serverInfo.sessionResume = jsonValue.getInt("sessionResume", 0);
 
         if (jsonValue.has("modes")) {
             for (JsonValue mode = jsonValue.get("modes").child; mode != null; mode = mode.next) {
@@ -184,7 +237,10 @@ public class ServerMultiplayerManager {
         }
 
         state = PlayState.LOBBY;
-        doPing();
+        if (resuming && gameModel != null)
+            doStartGame(gameModel);
+        else
+            doPing();
     }
 
     public int getLastPingTime() {
@@ -193,7 +249,11 @@ public class ServerMultiplayerManager {
 
     public void doSendGameMessage(String message) {
         if (state == PlayState.IN_GAME) {
-            socket.send("IGM" + message);
+            byte opcode = binaryProtocol ? BinaryProtocol.getInputOpcode(message) : 0;
+            if (opcode != 0)
+                socket.send(new byte[]{opcode});
+            else
+                socket.send("IGM" + message);
             lastMessageSendMs = TimeUtils.millis();
         }
     }
@@ -209,6 +269,15 @@ public class ServerMultiplayerManager {
         @Override
         public boolean onClose(WebSocket webSocket, int closeCode, String reason) {
             Gdx.app.debug("WS", "Closed: " + webSocket.getUrl());
+            if (webSocket != socket) {
+                // the dropped connection of a resumed session
+                return false;
+            }
+            if (canResumeSession() && closeCode != WebSocketCloseCode.NORMAL && closeCode < 4000) {
+                // not closed by server or client, so try to resume
+                resumeSession();
+                return false;
+            }
             clear();
 
             if (closeCode != WebSocketCloseCode.NORMAL && reason != null) {
@@ -234,13 +303,11 @@ public class ServerMultiplayerManager {
                     handleServerInfo(packet.substring(ID_SERVERINFO.length()));
                     return true;
                 } else if (gameModel != null) {
-                    gameModel.queueMessage(packet);
-
-                    if (TimeUtils.timeSinceMillis(lastQueueProcessedMs) > SECONDS_TIMEOUT) {
-                        socket.close(3000, "Timeout");
-                        gameModel.clearMessageQueue();
-                    }
-
+                    if (packet.startsWith(ID_BATCH))
+                        queueBatch(packet);
+                    else
+                        queueMessage(packet);
+                    checkQueueTimeout();
                     return true;
                 }
                 Gdx.app.error("Server", "Unhandled message message: " + packet);
@@ -253,16 +320,84 @@ public class ServerMultiplayerManager {
 
         @Override
         public boolean onMessage(WebSocket webSocket, byte[] packet) {
-            return false;
+            try {
+                if (gameModel != null && packet.length > 0) {
+                    if (packet[0] == BinaryProtocol.BATCH || packet[0] == BinaryProtocol.BATCH_MIRRORED)
+                        queueBatch(packet);
+                    else
+                        gameModel.queueMessage(packet);
+                    checkQueueTimeout();
+                } else {
+                    Gdx.app.error("Server", "Unhandled binary message");
+                }
+            } catch (Throwable t) {
+                Gdx.app.error("Server", "Error handling binary message of " + packet.length + " bytes", t);
+            }
+            return true;
+        }
+
+        /**
+         * splits a batch of text messages sent in one frame
+         */
+        private void queueBatch(String packet) {
+            int pos = ID_BATCH.length();
+            while (pos <= packet.length()) {
+                int nextSeparator = packet.indexOf(BATCH_SEPARATOR, pos);
+                if (nextSeparator < 0)
+                    nextSeparator = packet.length();
+                queueMessage(packet.substring(pos, nextSeparator));
+                pos = nextSeparator + 1;
+            }
+        }
+
+        private void queueMessage(String message) {
+            if (message.startsWith(ID_SESSION))
+                sessionToken = message.substring(ID_SESSION.length());
+            else
+                gameModel.queueMessage(message);
+        }
+
+        /**
+         * splits a batch of binary messages sent in one frame
+         */
+        private void queueBatch(byte[] packet) {
+            boolean mirrored = packet[0] == BinaryProtocol.BATCH_MIRRORED;
+            int pos = 1;
+            while (pos + 2 <= packet.length) {
+                int length = (packet[pos] & 0xff) << 8 | (packet[pos + 1] & 0xff);
+                if (pos + 2 + length > packet.length) {
+                    Gdx.app.error("Server", "Truncated binary batch, message of " + length + " bytes at "
+                            + pos + " exceeds " + packet.length + " bytes");
+                    break;
+                }
+                byte[] message = new byte[length];
+                System.arraycopy(packet, pos + 2, message, 0, length);
+                if (mirrored && length > 0)
+                    message[0] = (byte) (message[0] ^ BinaryProtocol.FLAG_OTHER);
+                gameModel.queueMessage(message);
+                pos = pos + 2 + length;
+            }
+        }
+
+        private void checkQueueTimeout() {
+            if (TimeUtils.timeSinceMillis(lastQueueProcessedMs) > SECONDS_TIMEOUT) {
+                socket.close(3000, "Timeout");
+                gameModel.clearMessageQueue();
+            }
         }
 
         @Override
         public boolean onError(WebSocket webSocket, Throwable error) {
             Gdx.app.error("Server", "Error received", error);
 
+            if (webSocket != socket)
+                return true;
+
             lastErrorMsg = error.getMessage();
 
-            if (socket.isClosed()) {
+            if (socket.isClosed() && canResumeSession()) {
+                resumeSession();
+            } else if (socket.isClosed()) {
                 clear();
             }
 
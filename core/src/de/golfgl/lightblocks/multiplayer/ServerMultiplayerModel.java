@@ -24,7 +24,9 @@ public class ServerMultiplayerModel extends GameModel {
     public static final String MODEL_ID = "serverMultiplayer";
     public static final String MSG_ID_PIN_TETRO = "PIN";
     public static final String MSG_ID_CLR_INS = "CLR";
-    private final Queue<String> messageQueue = new Queue<>();
+    // requests the full match information
+    public static final String MSG_RESYNC = "RSY";
+    private final Queue<Object> messageQueue = new Queue<>();
     private final ServerMultiplayerModel secondModel;
     private ServerMultiplayerManager serverMultiplayerManager;
     private ServerScore serverScore;
@@ -35,9 +37,13 @@ public class ServerMultiplayerModel extends GameModel {
     private boolean isModern;
     private boolean isClosed;
     private Gameboard gameboard;
+    // gameboard of the last match information, base for the changed rows of the next one
+    private int[][] matchInfoGameboard;
     private boolean criticalFill;
     private boolean achTurnaroundSent;
     private boolean filledOver85Perc;
+    private int matchInfoVersion;
+    private boolean resumeMessageShown;
 
     public ServerMultiplayerModel() {
         this(true);
@@ -92,9 +98,10 @@ public class ServerMultiplayerModel extends GameModel {
     public void update(float delta) {
         synchronized (messageQueue) {
             while (messageQueue.notEmpty()) {
-                String packet = messageQueue.removeFirst();
+                Object packet = messageQueue.removeFirst();
                 try {
-                    boolean processed = processMessage(packet);
+                    boolean processed = packet instanceof byte[] ? processMessage((byte[]) packet)
+                            : processMessage((String) packet);
                     if (!processed) {
                         Gdx.app.error("Server", "Unhandled message: " + packet);
                     }
@@ -105,7 +112,14 @@ public class ServerMultiplayerModel extends GameModel {
             serverMultiplayerManager.processedQueue();
         }
 
-        if (!isClosed && !serverMultiplayerManager.isConnected()) {
+        if (!isClosed && serverMultiplayerManager.isResuming() && !resumeMessageShown) {
+            resumeMessageShown = true;
+            playScreen.showFreeTextMessage("Reconnecting...");
+        } else if (!serverMultiplayerManager.isResuming()) {
+            resumeMessageShown = false;
+        }
+
+        if (!isClosed && !serverMultiplayerManager.isConnected() && !serverMultiplayerManager.isResuming()) {
             isClosed = true;
             if (serverMultiplayerManager.getLastErrorMsg() != null)
                 playScreen.showFreeTextMessage(serverMultiplayerManager.getLastErrorMsg());
@@ -161,6 +175,10 @@ public class ServerMultiplayerModel extends GameModel {
         final int dx = Integer.parseInt(sdx);
         final int dy = Integer.parseInt(sdy);
 
+        applyTetroMoved(dx, dy, ghostPieceDistance);
+    }
+
+    private void applyTetroMoved(int dx, int dy, int ghostPieceDistance) {
         if (!gameOver) {
             uiGameboard.moveTetro(ServerMultiplayerModel.this.activePiecePos, dx, dy, ghostPieceDistance);
 
@@ -172,12 +190,26 @@ public class ServerMultiplayerModel extends GameModel {
 
     }
 
+    int getMatchInfoVersion() {
+        return matchInfoVersion;
+    }
+
     /**
      * MatchInfo is sent when new game starts or player connects or disconnects
      */
     void handleMatchInfo(String matchInfo) {
         JsonValue json = new JsonReader().parse(matchInfo);
 
+        // the gameboards might only contain changes to the version we should have
+        int baseVersion = json.getInt("baseVersion", 0);
+        if (baseVersion != 0 && (baseVersion != matchInfoVersion || matchInfoGameboard == null
+                || secondModel.matchInfoGameboard == null)) {
+            Gdx.app.log("ServerMultiplayer", "Match info version " + matchInfoVersion + " outdated, resync");
+            serverMultiplayerManager.doSendGameMessage(MSG_RESYNC);
+            return;
+        }
+        matchInfoVersion = json.getInt("version", 0);
+
         isModern = json.getBoolean("isModern");
         secondModel.isModern = isModern;
 
@@ -246,7 +278,25 @@ public class ServerMultiplayerModel extends GameModel {
         }
 
         final int[][] gameboard = new int[Gameboard.GAMEBOARD_ALLROWS][Gameboard.GAMEBOARD_COLUMNS];
-        String gameboardString = playerJson.getString("gameboard");
+        String changedRows = playerJson.getString("changedRows", null);
+        if (changedRows != null)
+            applyChangedRows(changedRows, gameboard);
+        else
+            parseGameboard(playerJson.getString("gameboard"), gameboard);
+        this.gameboard = Gameboard.initFromArray(gameboard);
+        matchInfoGameboard = gameboard;
+
+        ServerMultiplayerModel.this.activePiecePos = activePiecePos;
+        uiGameboard.mergeFullInformation(gameboard, activePiecePos, activePieceType, nextPiecePos, nextPieceType,
+                holdPiecePos, holdPieceType, nickName);
+        if (gameOver && isFirst) {
+            GaHelper.startGameEvent(app, this, null);
+            playScreen.resumeMusicPlayback();
+        }
+        gameOver = false;
+    }
+
+    private void parseGameboard(String gameboardString, int[][] gameboard) {
         for (int y = 0; y < Gameboard.GAMEBOARD_ALLROWS; y++) {
             for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
                 int pos = y * Gameboard.GAMEBOARD_COLUMNS + x;
@@ -256,16 +306,28 @@ public class ServerMultiplayerModel extends GameModel {
                     gameboard[y][x] = Gameboard.SQUARE_EMPTY;
             }
         }
-        this.gameboard = Gameboard.initFromArray(gameboard);
+    }
 
-        ServerMultiplayerModel.this.activePiecePos = activePiecePos;
-        uiGameboard.mergeFullInformation(gameboard, activePiecePos, activePieceType, nextPiecePos, nextPieceType,
-                holdPiecePos, holdPieceType, nickName);
-        if (gameOver && isFirst) {
-            GaHelper.startGameEvent(app, this, null);
-            playScreen.resumeMusicPlayback();
+    /**
+     * applies the changed rows to the gameboard of the last match information. Game events received
+     * since then are not taken into account, some of them might be lost when the session was resumed
+     */
+    private void applyChangedRows(String changedRows, int[][] gameboard) {
+        // 05AA D  F DD 06...
+        for (int y = 0; y < Gameboard.GAMEBOARD_ALLROWS; y++) {
+            for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++)
+                gameboard[y][x] = matchInfoGameboard[y][x];
+        }
+
+        int pos = 0;
+        while (pos + 2 + Gameboard.GAMEBOARD_COLUMNS <= changedRows.length()) {
+            int y = Integer.parseInt(changedRows.substring(pos, pos + 2));
+            pos = pos + 2;
+            for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
+                gameboard[y][x] = Gameboard.gameboardCharToSquare(changedRows.charAt(pos));
+                pos++;
+            }
         }
-        gameOver = false;
     }
 
     private int parsePieceString(String pieceString, Integer[][] boardBlockPositions) {
@@ -281,6 +343,10 @@ public class ServerMultiplayerModel extends GameModel {
         final String strGhostDis = parseUntilNext(payload, pos, "-");
         final int ghostPieceDistance = Integer.parseInt(strGhostDis);
 
+        applyRotateTetro(boardBlockPositions, ghostPieceDistance);
+    }
+
+    private void applyRotateTetro(Integer[][] boardBlockPositions, int ghostPieceDistance) {
         if (!gameOver) {
             uiGameboard.rotateTetro(ServerMultiplayerModel.this.activePiecePos, boardBlockPositions, ghostPieceDistance);
             ServerMultiplayerModel.this.activePiecePos = boardBlockPositions;
@@ -304,8 +370,11 @@ public class ServerMultiplayerModel extends GameModel {
             gapPos = new IntArray();
         }
 
+        applyClearInsert(linesToRemove, isSpecial, gapPos.toArray());
+    }
+
+    private void applyClearInsert(IntArray linesToRemove, boolean isSpecial, int[] garbageHolePosition) {
         if (!gameOver) {
-            int[] garbageHolePosition = gapPos.toArray();
             uiGameboard.clearAndInsertLines(linesToRemove, isSpecial, garbageHolePosition);
             gameboard.clearLines(linesToRemove);
             gameboard.insertLines(garbageHolePosition);
@@ -325,10 +394,12 @@ public class ServerMultiplayerModel extends GameModel {
     }
 
     private void handleGameOver(String payload) {
+        applyGameOver(isFirst && parseUntilNext(payload, 1, "-").equals("1"));
+    }
+
+    private void applyGameOver(boolean hasWon) {
         gameOver = true;
         if (isFirst) {
-            final String wonString = parseUntilNext(payload, 1, "-");
-            boolean hasWon = wonString.equals("1");
             playScreen.setMusicGameOver();
             GaHelper.endGameEvent(app.gameAnalytics, this, hasWon);
             totalScore.incMultiPlayerMatchesWon();
@@ -343,6 +414,10 @@ public class ServerMultiplayerModel extends GameModel {
         final String blockTypeString = parseUntilNext(payload, pos, "-");
         final int blockType = Integer.parseInt(blockTypeString);
 
+        applyNextTetro(boardBlockPositions, blockType);
+    }
+
+    private void applyNextTetro(Integer[][] boardBlockPositions, int blockType) {
         if (!gameOver) {
             uiGameboard.showNextTetro(boardBlockPositions, blockType);
         }
@@ -357,6 +432,10 @@ public class ServerMultiplayerModel extends GameModel {
         final String strGhostDis = parseUntilNext(payload, pos + strBlockType.length() + 1, "-");
         final int ghostPieceDistance = Integer.parseInt(strGhostDis);
 
+        applyActivateNextTetro(boardBlockPositions, blockType, ghostPieceDistance);
+    }
+
+    private void applyActivateNextTetro(Integer[][] boardBlockPositions, int blockType, int ghostPieceDistance) {
         if (!gameOver) {
             ServerMultiplayerModel.this.activePiecePos = boardBlockPositions;
             uiGameboard.activateNextTetro(boardBlockPositions, blockType, ghostPieceDistance);
@@ -397,6 +476,10 @@ public class ServerMultiplayerModel extends GameModel {
             activePiecePos = null;
         }
 
+        applySwapHoldAndActive(holdPiecePos, ghostPieceDistance, activePiecePos);
+    }
+
+    private void applySwapHoldAndActive(Integer[][] holdPiecePos, int ghostPieceDistance, Integer[][] activePiecePos) {
         if (!gameOver) {
             uiGameboard.swapHoldAndActivePiece(holdPiecePos, ServerMultiplayerModel.this.activePiecePos, activePiecePos,
                     ghostPieceDistance, 0);
@@ -424,9 +507,14 @@ public class ServerMultiplayerModel extends GameModel {
     }
 
     private void handleScore(final String payload) {
+        JsonValue scoreJson = new JsonReader().parse(payload);
+        applyScore(scoreJson.getInt("score", 0), scoreJson.getInt("level", 0), scoreJson.getInt("lines", 0));
+    }
+
+    private void applyScore(int score, int level, int lines) {
         if (!gameOver) {
             int removedLinesBefore = serverScore.lines;
-            int gainedScore = serverScore.setScoreInformation(new JsonReader().parse(payload));
+            int gainedScore = serverScore.setScoreInformation(score, level, lines);
             uiGameboard.updateScore(serverScore, gainedScore);
 
             if (isFirst && !gameOver) {
@@ -463,6 +551,12 @@ public class ServerMultiplayerModel extends GameModel {
         }
     }
 
+    public void queueMessage(byte[] packet) {
+        synchronized (messageQueue) {
+            messageQueue.addLast(packet);
+        }
+    }
+
     public void clearMessageQueue() {
         synchronized (messageQueue) {
             messageQueue.clear();
@@ -492,6 +586,21 @@ public class ServerMultiplayerModel extends GameModel {
         return false;
     }
 
+    private boolean processMessage(byte[] packet) {
+        boolean other = (packet[0] & BinaryProtocol.FLAG_OTHER) != 0;
+        int opcode = packet[0] & ~BinaryProtocol.FLAG_OTHER & 0xff;
+
+        if (!other) {
+            return processModelMessage(opcode, packet);
+        } else {
+            boolean handled = secondModel.processModelMessage(opcode, packet);
+            if (handled && (opcode == BinaryProtocol.PIN || opcode == BinaryProtocol.CLEAR_INSERT)) {
+                updateFillLevelAmounts();
+            }
+            return handled;
+        }
+    }
+
     private void updateFillLevelAmounts() {
         if (isFirst) {
             int myGbFill = gameboard.calcGameboardFill();
@@ -563,6 +672,75 @@ public class ServerMultiplayerModel extends GameModel {
         return false;
     }
 
+    private boolean processModelMessage(int opcode, byte[] packet) {
+        switch (opcode) {
+            case BinaryProtocol.MOVE:
+                applyTetroMoved(packet[1], packet[2], packet[3]);
+                return true;
+            case BinaryProtocol.ROTATE: {
+                final Integer[][] boardBlockPositions = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
+                int pos = BinaryProtocol.readPositions(packet, 1, boardBlockPositions);
+                applyRotateTetro(boardBlockPositions, packet[pos]);
+                return true;
+            }
+            case BinaryProtocol.CLEAR_INSERT: {
+                // line num, lines, special, gap num, gaps
+                int lineNum = packet[1];
+                IntArray linesToRemove = new IntArray(lineNum);
+                for (int i = 0; i < lineNum; i++)
+                    linesToRemove.add(packet[2 + i]);
+                boolean isSpecial = packet[2 + lineNum] == 1;
+                int[] garbageHolePosition = new int[packet[3 + lineNum]];
+                for (int i = 0; i < garbageHolePosition.length; i++)
+                    garbageHolePosition[i] = packet[4 + lineNum + i];
+                applyClearInsert(linesToRemove, isSpecial, garbageHolePosition);
+                return true;
+            }
+            case BinaryProtocol.GAME_OVER:
+                applyGameOver(isFirst && packet[1] == 1);
+                return true;
+            case BinaryProtocol.NEXT: {
+                final Integer[][] boardBlockPositions = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
+                int pos = BinaryProtocol.readPositions(packet, 1, boardBlockPositions);
+                applyNextTetro(boardBlockPositions, packet[pos]);
+                return true;
+            }
+            case BinaryProtocol.ACTIVATE_NEXT: {
+                final Integer[][] boardBlockPositions = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
+                int pos = BinaryProtocol.readPositions(packet, 1, boardBlockPositions);
+                applyActivateNextTetro(boardBlockPositions, packet[pos], packet[pos + 1]);
+                return true;
+            }
+            case BinaryProtocol.SWAP_HOLD: {
+                final Integer[][] holdPiecePos = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
+                int pos = BinaryProtocol.readPositions(packet, 1, holdPiecePos);
+                final Integer[][] activePiecePos;
+                if (packet[pos + 1] == 1) {
+                    activePiecePos = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
+                    BinaryProtocol.readPositions(packet, pos + 2, activePiecePos);
+                } else {
+                    activePiecePos = null;
+                }
+                applySwapHoldAndActive(holdPiecePos, packet[pos], activePiecePos);
+                return true;
+            }
+            case BinaryProtocol.PIN:
+                handlePinTetro();
+                return true;
+            case BinaryProtocol.SCORE:
+                applyScore(BinaryProtocol.readInt(packet, 1), BinaryProtocol.readInt(packet, 5),
+                        BinaryProtocol.readInt(packet, 9));
+                return true;
+            case BinaryProtocol.CONFLICT:
+                uiGameboard.markConflict(packet[1], packet[2]);
+                return true;
+            case BinaryProtocol.GARBAGE:
+                uiGameboard.showGarbageAmount(packet[1]);
+                return true;
+        }
+        return false;
+    }
+
      private void handleMessage(String payload) {
          playScreen.showFreeTextMessage(payload.isEmpty() ? null : payload);
      }
@@ -584,11 +762,15 @@ public class ServerMultiplayerModel extends GameModel {
 
         public int setScoreInformation(JsonValue scoreJson) {
             // {"score":0,"level":0,"lines":0}
-            int newScore = scoreJson.getInt("score", 0);
+            return setScoreInformation(scoreJson.getInt("score", 0), scoreJson.getInt("level", 0),
+                    scoreJson.getInt("lines", 0));
+        }
+
+        public int setScoreInformation(int newScore, int level, int lines) {
             int gainedScore = Math.max(0, newScore - score);
             score = newScore;
-            level = scoreJson.getInt("level", 0);
-            lines = scoreJson.getInt("lines", 0);
+            this.level = level;
+            this.lines = lines;
             return gainedScore;
         }
 
@@ -106,9 +106,10 @@ public class ArtificialPlayer {
                     if (dropVerticalMove >= 0) {
                         // we have found the drop position for the current rotation
                         // and pretend to pin the tetromino here
-                        for (Vector2 coord : activePiece.getRotationVectors(rotation)) {
-                            int x = (int) activePiece.getPosition().x + (int) coord.x + horizontalMove;
-                            int y = (int) activePiece.getPosition().y + (int) coord.y - dropVerticalMove;
+                        int[] blocks = activePiece.getBlocks(rotation);
+                        for (int i = 0; i < blocks.length; i += 2) {
+                            int x = (int) activePiece.getPosition().x + blocks[i] + horizontalMove;
+                            int y = (int) activePiece.getPosition().y + blocks[i + 1] - dropVerticalMove;
                             aiGameboard.setPosition(x, y, true);
                         }
 
@@ -321,9 +322,10 @@ public class ArtificialPlayer {
         }
 
         public boolean isValidPosition(Tetromino tetromino, Vector2 testPosition, int testRotation) {
-            for (Vector2 v : tetromino.getRotationVectors(testRotation)) {
-                int posX = ((int) v.x + (int) testPosition.x);
-                int posY = ((int) v.y + (int) testPosition.y);
+            int[] blocks = tetromino.getBlocks(testRotation);
+            for (int i = 0; i < blocks.length; i += 2) {
+                int posX = blocks[i] + (int) testPosition.x;
+                int posY = blocks[i + 1] + (int) testPosition.y;
 
                 if (!isValidCoordinate(posX, posY)) {
                     return false;
@@ -0,0 +1,172 @@
+package de.golfgl.lightblocks.model;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static de.golfgl.lightblocks.model.Gameboard.GAMEBOARD_ALLROWS;
+import static de.golfgl.lightblocks.model.Gameboard.GAMEBOARD_COLUMNS;
+import static de.golfgl.lightblocks.model.Gameboard.SQUARE_EMPTY;
+
+/**
+ * Checks the bitmasks and column heights the gameboard keeps next to its squares
+ */
+public class GameboardTest {
+    private static final long SEED = 4711;
+    private static final int PIECES = 1000;
+
+    @Test
+    public void rowMasksFollowPinClearAndInsert() {
+        Random random = new Random(SEED);
+        Gameboard gameboard = new Gameboard();
+        IntArray fullRows = new IntArray();
+
+        for (int piece = 0; piece < PIECES; piece++) {
+            Tetromino tetromino = newRandomTetromino(random);
+            if (!gameboard.isValidPosition(tetromino, tetromino.getPosition(), tetromino.getCurrentRotation())) {
+                // game over, start again
+                gameboard = new Gameboard();
+                assertMatchesSquares(gameboard);
+                continue;
+            }
+
+            tetromino.getPosition().y += gameboard.checkPossibleMoveDistance(false, -GAMEBOARD_ALLROWS, tetromino);
+            if (piece % 2 == 0)
+                gameboard.pinTetromino(tetromino);
+            else
+                gameboard.pinTetromino(tetromino.getCurrentBlockPositions(), tetromino.getTetrominoType());
+            assertMatchesSquares(gameboard);
+
+            fullRows.clear();
+            for (int y = 0; y < GAMEBOARD_ALLROWS; y++) {
+                if (gameboard.isRowFull(y))
+                    fullRows.add(y);
+            }
+            if (fullRows.size > 0) {
+                gameboard.clearLines(fullRows);
+                assertMatchesSquares(gameboard);
+            }
+
+            if (piece % 7 == 0) {
+                int[] holes = new int[1 + random.nextInt(3)];
+                for (int i = 0; i < holes.length; i++)
+                    holes[i] = random.nextInt(GAMEBOARD_COLUMNS);
+                gameboard.insertLines(holes);
+                assertMatchesSquares(gameboard);
+            }
+        }
+    }
+
+    @Test
+    public void rowMasksFollowLoadedGameboard() {
+        Random random = new Random(SEED);
+        int[][] squares = new int[GAMEBOARD_ALLROWS][GAMEBOARD_COLUMNS];
+        for (int y = 0; y < GAMEBOARD_ALLROWS; y++) {
+            for (int x = 0; x < GAMEBOARD_COLUMNS; x++)
+                squares[y][x] = random.nextInt(3) == 0 ? random.nextInt(Tetromino.TETROMINO_NUMBER) : SQUARE_EMPTY;
+        }
+        assertMatchesSquares(Gameboard.initFromArray(squares));
+
+        Gameboard gameboard = new Gameboard();
+        gameboard.initGarbage(8);
+        assertMatchesSquares(gameboard);
+    }
+
+    @Test
+    public void dropDistanceMatchesProbing() {
+        Random random = new Random(SEED);
+        int[] rowMasks = new int[GAMEBOARD_ALLROWS];
+        int[] columnHeights = new int[GAMEBOARD_COLUMNS];
+        int[][] squares = new int[GAMEBOARD_ALLROWS][GAMEBOARD_COLUMNS];
+        int checked = 0;
+
+        for (int board = 0; board < 200; board++) {
+            // random surfaces with overhangs and holes, mostly in the lower rows
+            int fillHeight = random.nextInt(GAMEBOARD_ALLROWS);
+            for (int y = 0; y < GAMEBOARD_ALLROWS; y++) {
+                for (int x = 0; x < GAMEBOARD_COLUMNS; x++)
+                    squares[y][x] = y < fillHeight && random.nextInt(3) > 0 ? Gameboard.SQUARE_GARBAGE : SQUARE_EMPTY;
+            }
+            Gameboard gameboard = Gameboard.initFromArray(squares);
+            for (int y = 0; y < GAMEBOARD_ALLROWS; y++)
+                rowMasks[y] = gameboard.getRowMask(y);
+            Gameboard.calcColumnHeights(rowMasks, columnHeights);
+
+            for (int piece = 0; piece < 50; piece++) {
+                Tetromino tetromino = new Tetromino(random.nextInt(Tetromino.TETROMINO_NUMBER), random.nextBoolean());
+                int rotation = tetromino.setRotation(random.nextInt(4));
+                // also columns where the piece's empty columns are outside the board
+                int x = random.nextInt(GAMEBOARD_COLUMNS + 6) - 3;
+                int y = random.nextInt(GAMEBOARD_ALLROWS + 2) - 2;
+                tetromino.getPosition().set(x, y);
+                if (!gameboard.isValidPosition(tetromino, tetromino.getPosition(), rotation))
+                    continue;
+
+                int expected = probeDropDistance(gameboard, tetromino);
+                String name = "type " + tetromino.getTetrominoType() + "/" + rotation + " at " + x + "/" + y
+                        + " on board " + board;
+                Assert.assertEquals(name, expected, gameboard.getGhostPieceDistance(tetromino, 0));
+                Assert.assertEquals(name, expected,
+                        Gameboard.getDropDistance(rowMasks, columnHeights, tetromino, rotation, x, y));
+                checked++;
+            }
+        }
+        Assert.assertTrue("too few valid positions: " + checked, checked > 1000);
+    }
+
+    /**
+     * the drop distance found by moving the piece down one row at a time
+     */
+    private static int probeDropDistance(Gameboard gameboard, Tetromino tetromino) {
+        Vector2 position = new Vector2(tetromino.getPosition());
+        int distance = 0;
+        while (true) {
+            position.y--;
+            if (!gameboard.isValidPosition(tetromino, position, tetromino.getCurrentRotation()))
+                return distance;
+            distance++;
+        }
+    }
+
+    /**
+     * @return a piece of random type, rotation and column at the spawn row
+     */
+    static Tetromino newRandomTetromino(Random random) {
+        Tetromino tetromino = new Tetromino(random.nextInt(Tetromino.TETROMINO_NUMBER), random.nextBoolean());
+        tetromino.setRotation(random.nextInt(4));
+        int rotation = tetromino.getCurrentRotation();
+        int minX = -tetromino.getMinX(rotation);
+        int maxX = GAMEBOARD_COLUMNS - 1 - tetromino.getMaxX(rotation);
+        tetromino.getPosition().x = minX + random.nextInt(maxX - minX + 1);
+        return tetromino;
+    }
+
+    static void assertMatchesSquares(Gameboard gameboard) {
+        int[][] squares = gameboard.getGameboardSquares();
+        for (int y = 0; y < GAMEBOARD_ALLROWS; y++) {
+            int rowMask = 0;
+            for (int x = 0; x < GAMEBOARD_COLUMNS; x++) {
+                if (squares[y][x] != SQUARE_EMPTY)
+                    rowMask = rowMask | (1 << x);
+                Assert.assertEquals("square " + x + "/" + y, squares[y][x] == SQUARE_EMPTY ? 0 : 1,
+                        gameboard.isValidCoordinate(x, y));
+            }
+            Assert.assertEquals("row mask " + y, rowMask, gameboard.getRowMask(y));
+            Assert.assertEquals("full row " + y, rowMask == Gameboard.FULL_ROW, gameboard.isRowFull(y));
+            // cleared and inserted lines move row references, no row may be shared
+            for (int above = y + 1; above < GAMEBOARD_ALLROWS; above++)
+                Assert.assertNotSame("row " + y + " shared with " + above, squares[y], squares[above]);
+        }
+
+        for (int x = 0; x < GAMEBOARD_COLUMNS; x++) {
+            int height = GAMEBOARD_ALLROWS;
+            while (height > 0 && squares[height - 1][x] == SQUARE_EMPTY)
+                height--;
+            Assert.assertEquals("column height " + x, height, gameboard.getColumnHeight(x));
+        }
+    }
+}
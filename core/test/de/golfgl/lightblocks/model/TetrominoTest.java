@@ -0,0 +1,167 @@
+package de.golfgl.lightblocks.model;
+
+import com.badlogic.gdx.math.Vector2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the piece templates, the tables precomputed from them and the SRS wall kicks
+ */
+public class TetrominoTest {
+    // block positions "x,y x,y x,y x,y" per [type][rotation], as the templates were before the
+    // tables were precomputed
+    private static final String[][] NRS_BLOCKS = {
+            {"0,1 1,1 2,1 3,1", "2,0 2,1 2,2 2,3"},
+            {"1,0 0,1 1,1 2,1", "1,0 0,1 1,1 1,2", "0,1 1,1 2,1 1,2", "1,0 1,1 2,1 1,2"},
+            {"0,0 0,1 1,1 2,1", "1,0 1,1 0,2 1,2", "0,1 1,1 2,1 2,2", "1,0 2,0 1,1 1,2"},
+            {"2,0 0,1 1,1 2,1", "0,0 1,0 1,1 1,2", "0,1 1,1 2,1 0,2", "1,0 1,1 1,2 2,2"},
+            {"1,0 2,0 0,1 1,1", "1,0 1,1 2,1 2,2"},
+            {"0,0 1,0 1,1 2,1", "2,0 1,1 2,1 1,2"},
+            {"1,0 2,0 1,1 2,1"}};
+    private static final String[][] SRS_BLOCKS = {
+            {"0,2 1,2 2,2 3,2", "2,0 2,1 2,2 2,3", "0,1 1,1 2,1 3,1", "1,0 1,1 1,2 1,3"},
+            {"0,1 1,1 2,1 1,2", "1,0 1,1 2,1 1,2", "1,0 0,1 1,1 2,1", "1,0 0,1 1,1 1,2"},
+            {"0,1 1,1 2,1 2,2", "1,0 2,0 1,1 1,2", "0,0 0,1 1,1 2,1", "1,0 1,1 0,2 1,2"},
+            {"0,1 1,1 2,1 0,2", "1,0 1,1 1,2 2,2", "2,0 0,1 1,1 2,1", "0,0 1,0 1,1 1,2"},
+            {"1,1 2,1 0,2 1,2", "1,0 1,1 2,1 2,2", "1,0 2,0 0,1 1,1", "0,0 0,1 1,1 1,2"},
+            {"0,1 1,1 1,2 2,2", "2,0 1,1 2,1 1,2", "0,0 1,0 1,1 2,1", "1,0 0,1 1,1 0,2"},
+            {"1,1 2,1 1,2 2,2", "1,1 2,1 1,2 2,2", "1,1 2,1 1,2 2,2", "1,1 2,1 1,2 2,2"}};
+
+    // wall kick offsets "x,y" per [rotation][clockwise ? 1 : 0][test], as the kick switch was
+    // before the offset tables
+    private static final String[][][] SRS_KICKS_I = {
+            {{"-1,0", "2,0", "-1,2", "2,-1"}, {"-2,0", "1,0", "2,-1", "1,2"}},
+            {{"2,0", "-1,0", "-2,1", "-1,-2"}, {"-1,0", "2,0", "-1,2", "2,-1"}},
+            {{"1,0", "-2,0", "1,-2", "-2,1"}, {"2,0", "-1,0", "-2,1", "-1,-2"}},
+            {{"-2,0", "1,0", "2,-1", "1,2"}, {"1,0", "-2,0", "1,-2", "-2,1"}}};
+    private static final String[][][] SRS_KICKS_JLSTZ = {
+            {{"1,0", "1,1", "0,-2", "1,-2"}, {"-1,0", "-1,1", "0,-2", "-1,-2"}},
+            {{"1,0", "1,-1", "0,2", "1,2"}, {"1,0", "1,-1", "0,2", "1,2"}},
+            {{"-1,0", "-1,1", "0,-2", "-1,-2"}, {"1,0", "1,1", "0,-2", "1,-2"}},
+            {{"-1,0", "-1,-1", "0,2", "-1,2"}, {"-1,0", "-1,-1", "0,2", "-1,2"}}};
+
+    @Test
+    public void rotationVectorsAreUnchanged() {
+        for (int srs = 0; srs < 2; srs++) {
+            String[][] expectedBlocks = srs == 1 ? SRS_BLOCKS : NRS_BLOCKS;
+            for (int type = 0; type < Tetromino.TETROMINO_NUMBER; type++) {
+                Tetromino tetromino = new Tetromino(type, srs == 1);
+                int rotations = expectedBlocks[type].length;
+                for (int rotation = 0; rotation < rotations; rotation++) {
+                    String name = (srs == 1 ? "SRS " : "NRS ") + type + "/" + rotation;
+                    Assert.assertTrue(name, tetromino.hasRotation(rotation));
+                    Assert.assertEquals(name, expectedBlocks[type][rotation],
+                            toString(tetromino.getRotationVectors(rotation)));
+                    // rotations wrap around in both directions
+                    Assert.assertEquals(name, expectedBlocks[type][rotation],
+                            toString(tetromino.getRotationVectors(rotation - rotations)));
+                    Assert.assertEquals(name, expectedBlocks[type][rotation],
+                            toString(tetromino.getRotationVectors(rotation + rotations)));
+                }
+                Assert.assertFalse(tetromino.hasRotation(rotations));
+            }
+        }
+    }
+
+    @Test
+    public void tablesMatchRotationVectors() {
+        for (int srs = 0; srs < 2; srs++) {
+            for (int type = 0; type < Tetromino.TETROMINO_NUMBER; type++) {
+                Tetromino tetromino = new Tetromino(type, srs == 1);
+                for (int rotation = 0; tetromino.hasRotation(rotation); rotation++) {
+                    String name = (srs == 1 ? "SRS " : "NRS ") + type + "/" + rotation;
+                    Vector2[] vectors = tetromino.getRotationVectors(rotation);
+                    int[] blocks = new int[Tetromino.TETROMINO_BLOCKCOUNT * 2];
+                    int[] rowMasks = new int[Tetromino.TETROMINO_BLOCKCOUNT];
+                    int[] columnBottoms = new int[]{Tetromino.NO_BLOCK, Tetromino.NO_BLOCK,
+                            Tetromino.NO_BLOCK, Tetromino.NO_BLOCK};
+                    int[] columnTops = columnBottoms.clone();
+                    int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+                    int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+                    for (int i = 0; i < vectors.length; i++) {
+                        int x = (int) vectors[i].x;
+                        int y = (int) vectors[i].y;
+                        blocks[i * 2] = x;
+                        blocks[i * 2 + 1] = y;
+                        rowMasks[y] = rowMasks[y] | (1 << x);
+                        minX = Math.min(minX, x);
+                        maxX = Math.max(maxX, x);
+                        minY = Math.min(minY, y);
+                        maxY = Math.max(maxY, y);
+                        if (columnBottoms[x] == Tetromino.NO_BLOCK || y < columnBottoms[x])
+                            columnBottoms[x] = y;
+                        columnTops[x] = Math.max(columnTops[x], y);
+                    }
+
+                    Assert.assertArrayEquals(name, blocks, tetromino.getBlocks(rotation));
+                    Assert.assertArrayEquals(name, rowMasks, tetromino.getRowMasks(rotation));
+                    Assert.assertArrayEquals(name, columnBottoms, tetromino.getColumnBottoms(rotation));
+                    Assert.assertArrayEquals(name, columnTops, tetromino.getColumnTops(rotation));
+                    Assert.assertEquals(name, minX, tetromino.getMinX(rotation));
+                    Assert.assertEquals(name, maxX, tetromino.getMaxX(rotation));
+                    Assert.assertEquals(name, minY, tetromino.getMinY(rotation));
+                    Assert.assertEquals(name, maxY, tetromino.getMaxY(rotation));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void blockPositionsFollowPosition() {
+        Tetromino tetromino = new Tetromino(Tetromino.TETRO_IDX_L, true);
+        tetromino.getPosition().set(3, 7);
+        tetromino.setRotation(1);
+        Integer[][] positions = tetromino.getCurrentBlockPositions();
+        Vector2[] vectors = tetromino.getRotationVectors(1);
+        for (int i = 0; i < Tetromino.TETROMINO_BLOCKCOUNT; i++) {
+            Assert.assertEquals(3 + (int) vectors[i].x, (int) positions[i][0]);
+            Assert.assertEquals(7 + (int) vectors[i].y, (int) positions[i][1]);
+        }
+    }
+
+    @Test
+    public void wallkicksAreUnchanged() {
+        for (int type = 0; type < Tetromino.TETROMINO_NUMBER; type++) {
+            Tetromino tetromino = new Tetromino(type, true);
+            tetromino.getPosition().set(4, 10);
+            for (int rotation = 0; rotation < 4; rotation++) {
+                tetromino.setRotation(rotation);
+                for (int clockwise = 0; clockwise < 2; clockwise++) {
+                    for (int test = 0; test < 4; test++) {
+                        String expected;
+                        if (type == Tetromino.TETRO_IDX_O)
+                            expected = "0,0";
+                        else if (type == Tetromino.TETRO_IDX_I)
+                            expected = SRS_KICKS_I[rotation][clockwise][test];
+                        else
+                            expected = SRS_KICKS_JLSTZ[rotation][clockwise][test];
+
+                        Vector2 kicked = tetromino.getWallkickPosition(test, clockwise == 1);
+                        Assert.assertEquals(type + "/" + rotation + "/" + clockwise + "/" + test, expected,
+                                (int) (kicked.x - 4) + "," + (int) (kicked.y - 10));
+                    }
+                }
+            }
+            Assert.assertEquals(new Vector2(4, 10), tetromino.getPosition());
+        }
+    }
+
+    @Test
+    public void nrsHasNoWallkicks() {
+        for (int type = 0; type < Tetromino.TETROMINO_NUMBER; type++) {
+            Tetromino tetromino = new Tetromino(type, false);
+            Assert.assertEquals(tetromino.getPosition(), tetromino.getWallkickPosition(0, true));
+        }
+    }
+
+    private static String toString(Vector2[] vectors) {
+        StringBuilder builder = new StringBuilder();
+        for (Vector2 vector : vectors) {
+            if (builder.length() > 0)
+                builder.append(' ');
+            builder.append((int) vector.x).append(',').append((int) vector.y);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,233 @@
+package de.golfgl.lightblocks.loadtest;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import javax.annotation.Nullable;
+
+import de.golfgl.lightblocks.input.InputIdentifier;
+import de.golfgl.lightblocks.model.GameModel;
+import de.golfgl.lightblocks.model.GameScore;
+import de.golfgl.lightblocks.model.IGameModelListener;
+import de.golfgl.lightblocks.model.ServerMultiplayerModel;
+import de.golfgl.lightblocks.model.Tetromino;
+import de.golfgl.lightblocks.multiplayer.ai.AiAcessibleGameModel;
+import de.golfgl.lightblocks.multiplayer.ai.AiProfile;
+import de.golfgl.lightblocks.multiplayer.ai.ArtificialPlayer;
+import de.golfgl.lightblocks.server.model.InGameMessage;
+import de.golfgl.lightblocks.state.InitGameParameters;
+
+/**
+ * Inputs of a simulated client, played by the server's AI on a local game. The client does not
+ * know the pieces of its server side game, so the local game only gives the inputs the timing and
+ * mix of a real player. Every input the AI makes on the local game is recorded as game input
+ * opcode, see InGameMessage.INPUT_*.
+ * <p>
+ * Only used by the thread driving the client.
+ */
+class AiInputs implements AiAcessibleGameModel {
+    private final ServerMultiplayerModel gameModel = new ServerMultiplayerModel();
+    private final InitGameParameters gameParams = new InitGameParameters();
+    private final IGameModelListener listener = new NoUserInterface();
+    private final AiProfile profile;
+    private final IntArray inputs = new IntArray();
+    private ArtificialPlayer aiPlayer;
+
+    AiInputs(AiProfile profile) {
+        this.profile = profile;
+        gameParams.setModeType(InitGameParameters.TYPE_MODERN);
+        startNewGame();
+    }
+
+    private void startNewGame() {
+        gameModel.startNewGame(gameParams);
+        // the AI is its own opponent, so it never waits before a drop
+        if (aiPlayer == null)
+            aiPlayer = new ArtificialPlayer(this, this);
+        else
+            aiPlayer.reset();
+        aiPlayer.setProfile(profile);
+        gameModel.setAiPlayer(aiPlayer);
+        // this lets the AI plan the first piece
+        gameModel.setUserInterface(listener);
+        gameModel.getSecondGameModel().setUserInterface(listener);
+    }
+
+    /**
+     * plays the local game
+     *
+     * @return the inputs made, valid until the next update
+     */
+    IntArray update(float delta) {
+        inputs.clear();
+        if (gameModel.isGameOver())
+            startNewGame();
+        gameModel.update(delta);
+        return inputs;
+    }
+
+    @Override
+    public Tetromino getNextTetromino() {
+        return gameModel.getNextTetromino();
+    }
+
+    @Override
+    public Tetromino getHoldTetromino() {
+        return gameModel.getHoldTetromino();
+    }
+
+    @Override
+    public boolean isHoldMoveAllowedByModel() {
+        return gameModel.isHoldMoveAllowedByModel();
+    }
+
+    @Override
+    public boolean isComboScoreAllowedByModel() {
+        return gameModel.isComboScoreAllowedByModel();
+    }
+
+    @Override
+    public boolean inputHoldActiveTetromino(InputIdentifier inputId) {
+        inputs.add(InGameMessage.INPUT_HOLD);
+        return gameModel.inputHoldActiveTetromino(inputId);
+    }
+
+    @Override
+    public boolean isGameOver() {
+        return gameModel.isGameOver();
+    }
+
+    @Override
+    public void inputSetSoftDropFactor(InputIdentifier inputId, float newVal) {
+        if (newVal >= GameModel.FACTOR_HARD_DROP)
+            inputs.add(InGameMessage.INPUT_DROP_HARD);
+        else if (newVal >= GameModel.FACTOR_SOFT_DROP)
+            inputs.add(InGameMessage.INPUT_DROP_SOFT);
+        else
+            inputs.add(InGameMessage.INPUT_DROP_NONE);
+        gameModel.inputSetSoftDropFactor(inputId, newVal);
+    }
+
+    @Override
+    public void inputRotate(InputIdentifier inputId, boolean clockwise) {
+        inputs.add(clockwise ? InGameMessage.INPUT_ROTATE_RIGHT : InGameMessage.INPUT_ROTATE_LEFT);
+        gameModel.inputRotate(inputId, clockwise);
+    }
+
+    @Override
+    public boolean inputTimelabelTouched(InputIdentifier inputId) {
+        return gameModel.inputTimelabelTouched(inputId);
+    }
+
+    @Override
+    public void inputStartMoveHorizontal(InputIdentifier inputId, boolean isLeft) {
+        inputs.add(isLeft ? InGameMessage.INPUT_START_MOVE_LEFT : InGameMessage.INPUT_START_MOVE_RIGHT);
+        gameModel.inputStartMoveHorizontal(inputId, isLeft);
+    }
+
+    @Override
+    public void inputDoOneHorizontalMove(InputIdentifier inputId, boolean isLeft) {
+        // a client sends a single move as a started and stopped move
+        inputs.add(isLeft ? InGameMessage.INPUT_START_MOVE_LEFT : InGameMessage.INPUT_START_MOVE_RIGHT);
+        inputs.add(InGameMessage.INPUT_STOP_MOVE);
+        gameModel.inputDoOneHorizontalMove(inputId, isLeft);
+    }
+
+    @Override
+    public void inputEndMoveHorizontal(InputIdentifier inputId, boolean isLeft) {
+        inputs.add(InGameMessage.INPUT_STOP_MOVE);
+        gameModel.inputEndMoveHorizontal(inputId, isLeft);
+    }
+
+    @Override
+    public boolean isModernRotation() {
+        return gameModel.isModernRotation();
+    }
+
+    @Override
+    public int getLinesToClear() {
+        return gameModel.getLinesToClear();
+    }
+
+    @Override
+    public int getMaxBlocksToUse() {
+        return gameModel.getMaxBlocksToUse();
+    }
+
+    @Override
+    public boolean hasSecondGameboard() {
+        return gameModel.hasSecondGameboard();
+    }
+
+    @Override
+    public GameScore getScore() {
+        return gameModel.getScore();
+    }
+
+    private static class NoUserInterface implements IGameModelListener {
+        @Override
+        public void insertNewBlock(int x, int y, int blockType) {
+        }
+
+        @Override
+        public void moveTetro(Integer[][] v, int dx, int dy, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void rotateTetro(Integer[][] vOld, Integer[][] vNew, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void clearAndInsertLines(IntArray linesToRemove, boolean special, int[] garbageHolePosition) {
+        }
+
+        @Override
+        public void markAndMoveFreezedLines(boolean playSoundAndMove, IntArray removedLines, IntArray fullLines) {
+        }
+
+        @Override
+        public void setGameOver() {
+        }
+
+        @Override
+        public void showNextTetro(Integer[][] relativeBlockPositions, int blockType) {
+        }
+
+        @Override
+        public void activateNextTetro(Integer[][] boardBlockPositions, int blockType, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void swapHoldAndActivePiece(Integer[][] newHoldPiecePositions, Integer[][] oldActivePiecePositions,
+                                           Integer[][] newActivePiecePositions, int ghostPieceDistance,
+                                           int holdBlockType) {
+        }
+
+        @Override
+        public void pinTetromino(Integer[][] currentBlockPositions) {
+        }
+
+        @Override
+        public void updateScore(GameScore score, int gainedScore) {
+        }
+
+        @Override
+        public void markConflict(int x, int y) {
+        }
+
+        @Override
+        public void showMotivation(MotivationTypes achievement, @Nullable String extra) {
+        }
+
+        @Override
+        public void showGarbageAmount(int lines) {
+        }
+
+        @Override
+        public void showComboHeight(int comboHeight) {
+        }
+
+        @Override
+        public void emphasizeTimeLabel() {
+        }
+    }
+}
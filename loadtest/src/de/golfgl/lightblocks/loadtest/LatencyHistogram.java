@@ -0,0 +1,92 @@
+package de.golfgl.lightblocks.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency percentiles, recorded from any thread. Same bucketing as the server's TickLatency:
+ * every power of two is split into 16 linear sub buckets, so a percentile is off by 3% at most.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    // up to 2^40 ns, about 18 minutes
+    private static final int BUCKETS = SUB_BUCKETS + (40 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        buckets.incrementAndGet(getBucket(nanos));
+        count.incrementAndGet();
+
+        long lastMax = max.get();
+        while (nanos > lastMax && !max.compareAndSet(lastMax, nanos))
+            lastMax = max.get();
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @param percentile 0..1
+     * @return duration in ns, 0 if nothing was recorded
+     */
+    long getPercentile(float percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count = count + buckets.get(i);
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen = seen + buckets.get(i);
+            if (seen >= rank)
+                return Math.min(getValue(i), getMax());
+        }
+        return getMax();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return p50, p90, p99, p99.9 and max in milliseconds
+     */
+    String format() {
+        if (getCount() == 0)
+            return "no samples";
+
+        return String.format(Locale.ROOT, "p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms (%d samples)",
+                getPercentile(.5f) / 1000000.0, getPercentile(.9f) / 1000000.0, getPercentile(.99f) / 1000000.0,
+                getPercentile(.999f) / 1000000.0, getMax() / 1000000.0, getCount());
+    }
+
+    private static int getBucket(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) Math.max(0, nanos);
+
+        int magnitude = 64 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >> magnitude);
+        return Math.min(BUCKETS - 1, SUB_BUCKETS + (magnitude - 1) * HALF_SUB_BUCKETS + subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * @return the middle of the bucket's value range
+     */
+    private static long getValue(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int magnitude = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return (subBucket << magnitude) + (1L << magnitude) / 2;
+    }
+}
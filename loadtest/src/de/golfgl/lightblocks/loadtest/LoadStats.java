@@ -0,0 +1,37 @@
+package de.golfgl.lightblocks.loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measurements of all simulated clients. Updated lock-free from the clients' WebSocket threads and
+ * the driver threads.
+ */
+class LoadStats {
+    // from starting the connection to the server's handshake (ServerInfo)
+    final LatencyHistogram connectLatency = new LatencyHistogram();
+    // from starting the connection to the first match information
+    final LatencyHistogram joinLatency = new LatencyHistogram();
+    // from sending a hard drop to the first event of the own game model
+    final LatencyHistogram echoLatency = new LatencyHistogram();
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger playing = new AtomicInteger();
+    final AtomicLong connectFailures = new AtomicLong();
+    // connections closed by the server or dropped
+    final AtomicLong disconnects = new AtomicLong();
+    final AtomicLong inputsSent = new AtomicLong();
+    final AtomicLong framesSent = new AtomicLong();
+    final AtomicLong bytesSent = new AtomicLong();
+    final AtomicLong framesReceived = new AtomicLong();
+    final AtomicLong bytesReceived = new AtomicLong();
+
+    void frameSent(int bytes) {
+        framesSent.incrementAndGet();
+        bytesSent.addAndGet(bytes);
+    }
+
+    void frameReceived(int bytes) {
+        framesReceived.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+    }
+}
@@ -0,0 +1,225 @@
+package de.golfgl.lightblocks.loadtest;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for a local LightblocksServer: connects simulated clients speaking the game's protocol
+ * and reports latencies, throughput and the CPU usage of the server.
+ * <p>
+ * The server's CPU time is read from its metrics endpoint, so the server should be started with
+ * --metrics.port=xxxx and the same option given to the load test. Every client has its own
+ * connection threads, so thousands of clients need a high enough thread limit.
+ */
+public class LoadTest extends ApplicationAdapter {
+    // the game sends its inputs once per frame
+    private static final long DRIVE_INTERVAL_MS = 16;
+    private static final long REPORT_INTERVAL_MS = 5000;
+    private static final String SERVER_CPU_METRIC = "lightblocks_process_cpu_seconds";
+    private static final String SERVER_TICK_P99_METRIC = "lightblocks_match_tick_p99_seconds";
+
+    private final LoadTestConfiguration config;
+    private final LoadStats stats = new LoadStats();
+    private final Array<SimulatedClient> clients = new Array<>();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private ScheduledExecutorService drivers;
+    private long lastReportMs;
+    private long lastReportInputs;
+    private long lastReportFrames;
+
+    public LoadTest(LoadTestConfiguration config) {
+        this.config = config;
+    }
+
+    public static void main(String[] arg) {
+        HeadlessApplicationConfiguration appConfig = new HeadlessApplicationConfiguration();
+        // the application is only needed for logging, the clients are driven by their own threads
+        appConfig.updatesPerSecond = -1;
+        LoadTestConfiguration config = new LoadTestConfiguration(arg);
+
+        LoadTest loadTest = new LoadTest(config);
+        new HeadlessApplication(loadTest, appConfig);
+        Gdx.app.setLogLevel(config.loglevel);
+
+        boolean successful = loadTest.run();
+
+        Gdx.app.exit();
+        System.exit(successful ? 0 : 1);
+    }
+
+    /**
+     * runs the test, blocks until it is over
+     *
+     * @return true if no client failed to connect or was disconnected
+     */
+    public boolean run() {
+        URI serverUri;
+        try {
+            serverUri = new URI("ws://" + config.host + ":" + config.port + "/");
+        } catch (URISyntaxException e) {
+            Gdx.app.error("LoadTest", "Invalid server address.", e);
+            return false;
+        }
+
+        Gdx.app.log("LoadTest", "Starting " + config);
+        drivers = Executors.newScheduledThreadPool(config.driverThreadNum, new ThreadFactory() {
+            private final AtomicInteger threadNum = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Driver" + threadNum.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long rampUpStartMs = TimeUtils.millis();
+        lastReportMs = rampUpStartMs;
+        for (int i = 0; i < config.clients; i++) {
+            final SimulatedClient client = new SimulatedClient(serverUri, i, config, stats);
+            clients.add(client);
+            client.connect();
+            drivers.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    client.drive();
+                }
+            }, i % DRIVE_INTERVAL_MS, DRIVE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+            waitUntil(rampUpStartMs + config.rampUpSeconds * 1000L * (i + 1) / config.clients);
+        }
+
+        // throughput and CPU usage are measured after the ramp-up
+        long startMs = TimeUtils.millis();
+        long startInputs = stats.inputsSent.get();
+        long startFramesSent = stats.framesSent.get();
+        long startFramesReceived = stats.framesReceived.get();
+        long startBytesReceived = stats.bytesReceived.get();
+        double startServerCpu = readServerMetric(SERVER_CPU_METRIC);
+        double startOwnCpu = getOwnCpuSeconds();
+        waitUntil(startMs + config.durationSeconds * 1000L);
+        double endServerCpu = readServerMetric(SERVER_CPU_METRIC);
+        double endOwnCpu = getOwnCpuSeconds();
+        double seconds = TimeUtils.timeSinceMillis(startMs) / 1000.0;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        Gdx.app.log("LoadTest", "Finished " + config);
+        Gdx.app.log("LoadTest", "Connect latency: " + stats.connectLatency.format());
+        Gdx.app.log("LoadTest", "Join latency: " + stats.joinLatency.format());
+        Gdx.app.log("LoadTest", "Input to echo latency: " + stats.echoLatency.format());
+        Gdx.app.log("LoadTest", "Connections: " + stats.connections.get() + " open, " + stats.playing.get()
+                + " playing, " + stats.connectFailures.get() + " failed, " + stats.disconnects.get() + " disconnected");
+        Gdx.app.log("LoadTest", String.format(Locale.ROOT, "Throughput: %.0f inputs/s, %.0f frames/s sent, "
+                        + "%.0f frames/s and %.1f KB/s received", (stats.inputsSent.get() - startInputs) / seconds,
+                (stats.framesSent.get() - startFramesSent) / seconds,
+                (stats.framesReceived.get() - startFramesReceived) / seconds,
+                (stats.bytesReceived.get() - startBytesReceived) / seconds / 1024));
+        if (startServerCpu >= 0 && endServerCpu >= 0) {
+            double serverCores = (endServerCpu - startServerCpu) / seconds;
+            Gdx.app.log("LoadTest", String.format(Locale.ROOT, "Server CPU: %.2f cores (%.0f%% of %d), "
+                            + "match tick p99 %.2f ms", serverCores, serverCores * 100 / cores, cores,
+                    readServerMetric(SERVER_TICK_P99_METRIC) * 1000));
+        } else {
+            Gdx.app.log("LoadTest", "Server CPU: not available, start the server with --metrics.port=xxxx "
+                    + "and give the same option to the load test");
+        }
+        if (startOwnCpu >= 0)
+            Gdx.app.log("LoadTest", String.format(Locale.ROOT, "Load test CPU: %.2f cores",
+                    (endOwnCpu - startOwnCpu) / seconds));
+
+        drivers.shutdownNow();
+        for (int i = 0; i < clients.size; i++)
+            clients.get(i).shutdown();
+
+        return stats.connectFailures.get() == 0 && stats.disconnects.get() == 0;
+    }
+
+    /**
+     * sleeps until the given time, reporting the progress meanwhile
+     */
+    private void waitUntil(long timeMs) {
+        long sleepMs;
+        while ((sleepMs = timeMs - TimeUtils.millis()) > 0) {
+            try {
+                Thread.sleep(Math.min(sleepMs, REPORT_INTERVAL_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            reportProgress();
+        }
+    }
+
+    private void reportProgress() {
+        long nowMs = TimeUtils.millis();
+        if (nowMs - lastReportMs < REPORT_INTERVAL_MS)
+            return;
+
+        long inputs = stats.inputsSent.get();
+        long frames = stats.framesReceived.get();
+        double seconds = (nowMs - lastReportMs) / 1000.0;
+        Gdx.app.log("LoadTest", String.format(Locale.ROOT, "%d/%d connected, %d playing, %.0f inputs/s, "
+                        + "%.0f frames/s received, echo p99 %.2f ms", stats.connections.get(), clients.size,
+                stats.playing.get(), (inputs - lastReportInputs) / seconds, (frames - lastReportFrames) / seconds,
+                stats.echoLatency.getPercentile(.99f) / 1000000.0));
+        lastReportMs = nowMs;
+        lastReportInputs = inputs;
+        lastReportFrames = frames;
+    }
+
+    /**
+     * @return the value of the metric read from the server's metrics endpoint, -1 if not available
+     */
+    private double readServerMetric(String name) {
+        if (config.metricsPort <= 0)
+            return -1;
+
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL("http://" + config.host + ":" + config.metricsPort
+                    + "/metrics").openConnection();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(name + " "))
+                        return Double.parseDouble(line.substring(name.length() + 1));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | NumberFormatException e) {
+            Gdx.app.error("LoadTest", "Could not read " + name + " from the server's metrics.", e);
+        } finally {
+            if (connection != null)
+                connection.disconnect();
+        }
+        return -1;
+    }
+
+    private double getOwnCpuSeconds() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() / 1000000000.0;
+        return -1;
+    }
+}
@@ -0,0 +1,112 @@
+package de.golfgl.lightblocks.loadtest;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.utils.IntArray;
+
+import javax.annotation.Nullable;
+
+import de.golfgl.lightblocks.multiplayer.ai.AiProfile;
+import de.golfgl.lightblocks.server.model.InGameMessage;
+
+/**
+ * Options of the load test, given as --name=value arguments or system properties
+ */
+public class LoadTestConfiguration {
+    public static final String INPUTS_AI = "ai";
+    public static final String INPUTS_SCRIPT = "script";
+
+    private final String[] args;
+    public String host = "localhost";
+    public int port = 8887;
+    // port of the server's metrics endpoint to read its CPU time from, 0 if not available
+    public int metricsPort;
+    public int clients = 100;
+    // seconds to connect all clients
+    public int rampUpSeconds = 10;
+    // seconds to play after all clients were connected
+    public int durationSeconds = 60;
+    public String inputs = INPUTS_AI;
+    public AiProfile aiProfile = AiProfile.EASY;
+    // inputs played in a loop by scripted clients, one every inputIntervalMs
+    public String script = "SML,SMH,SMR,SMH,ROR,SMH,DRS,DRN,DRH";
+    public int[] scriptInputs;
+    public int inputIntervalMs = 200;
+    public boolean binaryProtocol = true;
+    public boolean batchedFrames = true;
+    // the server disconnects clients that were silent for some seconds, the game sends a keep-alive after 1.5s
+    public int keepAliveMs = 1500;
+    // threads driving the clients' inputs
+    public int driverThreadNum = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public int loglevel = Application.LOG_INFO;
+
+    public LoadTestConfiguration(String[] arg) {
+        this.args = arg;
+
+        loglevel = Math.min(findInt("verbosity", loglevel), Application.LOG_DEBUG);
+        host = findString("host", host);
+        port = findInt("port", port);
+        metricsPort = findInt("metrics.port", metricsPort);
+        clients = Math.max(1, findInt("clients", clients));
+        rampUpSeconds = Math.max(0, findInt("rampUp", rampUpSeconds));
+        durationSeconds = Math.max(1, findInt("duration", durationSeconds));
+        inputs = findString("inputs", inputs);
+        if (!INPUTS_SCRIPT.equals(inputs))
+            inputs = INPUTS_AI;
+        AiProfile profile = AiProfile.getBuiltIn(findString("aiProfile", aiProfile.name));
+        if (profile != null)
+            aiProfile = profile;
+        script = findString("script", script);
+        scriptInputs = parseScript(script);
+        inputIntervalMs = Math.max(10, findInt("inputInterval", inputIntervalMs));
+        binaryProtocol = findInt("binary", 1) != 0;
+        batchedFrames = findInt("batched", 1) != 0;
+        keepAliveMs = Math.max(100, findInt("keepAliveMs", keepAliveMs));
+        driverThreadNum = Math.max(1, findInt("threads", driverThreadNum));
+    }
+
+    /**
+     * @return the opcodes of the comma separated game inputs, unknown inputs are skipped
+     */
+    private static int[] parseScript(String script) {
+        IntArray inputs = new IntArray();
+        for (String input : script.split(",")) {
+            InGameMessage message = InGameMessage.fromText(input.trim(), 0);
+            if (message.input != InGameMessage.INPUT_NONE)
+                inputs.add(message.input);
+        }
+        if (inputs.size == 0)
+            inputs.add(InGameMessage.INPUT_DROP_HARD);
+        return inputs.toArray();
+    }
+
+    protected int findInt(String name, int defaultVal) {
+        int retVal = defaultVal;
+        try {
+            retVal = Integer.parseInt(findString(name, String.valueOf(defaultVal)));
+        } catch (Throwable ignored) {
+        }
+        return retVal;
+    }
+
+    protected String findString(String name, @Nullable String defaultVal) {
+        // first check for system property
+        String retVal = System.getProperty(name, defaultVal);
+
+        // and check for command line argument, too
+        for (String arg : args) {
+            if (arg.startsWith("--" + name + "=")) {
+                retVal = arg.substring(name.length() + 3);
+            }
+        }
+
+        return retVal;
+    }
+
+    @Override
+    public String toString() {
+        return clients + " client(s) against " + host + ":" + port + ", ramp-up " + rampUpSeconds + "s, duration "
+                + durationSeconds + "s, " + (INPUTS_AI.equals(inputs) ? "AI inputs (" + aiProfile + ")"
+                : "scripted inputs " + script + " every " + inputIntervalMs + "ms") + ", " + (binaryProtocol ? "binary" : "text")
+                + (batchedFrames ? " batched" : "") + " protocol";
+    }
+}
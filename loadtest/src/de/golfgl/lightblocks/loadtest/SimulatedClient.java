@@ -0,0 +1,258 @@
+package de.golfgl.lightblocks.loadtest;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+import de.golfgl.lightblocks.server.LightblocksServer;
+import de.golfgl.lightblocks.server.Serializer;
+import de.golfgl.lightblocks.server.model.InGameMessage;
+
+/**
+ * A client connecting to the server like the game does: it answers the handshake with its
+ * PlayerInfo, sends its game inputs while the match is running and keep-alives when idle.
+ * <p>
+ * Messages are received on the connection's WebSocket thread, inputs are sent by a driver thread
+ * calling {@link #drive()} periodically.
+ */
+class SimulatedClient extends WebSocketClient {
+    // see the server's BinaryProtocol
+    private static final int BINARY_PROTOCOL_VERSION = 1;
+    private static final byte FLAG_OTHER = (byte) 0x80;
+    private static final byte BATCH = 0x7f;
+    private static final byte BATCH_MIRRORED = 0x7e;
+    private static final String GENERAL_MESSAGE = "YMSG";
+    private static final String MATCH_INFO = "MCH";
+    private static final String[] TEXT_INPUTS = new String[InGameMessage.INPUT_DROP_HARD + 1];
+
+    static {
+        for (int input = InGameMessage.INPUT_NONE + 1; input < TEXT_INPUTS.length; input++)
+            TEXT_INPUTS[input] = Serializer.ID_IN_GAME_MSG + InGameMessage.fromInput(input).message;
+    }
+
+    private final int clientNum;
+    private final LoadTestConfiguration config;
+    private final LoadStats stats;
+    // only used by the driver thread
+    private final AiInputs aiInputs;
+    private final byte[] binaryInput = new byte[1];
+    private int scriptPos;
+    private long nextScriptInputMs;
+    private long lastDriveNanos;
+    private volatile long lastSentMs;
+    private volatile long connectStartNanos;
+    // the countdown is over, inputs are processed by the server
+    private volatile boolean playing;
+    private boolean joinedMatch;
+    // sending time of a hard drop waiting for its echo, 0 if none
+    private volatile long pendingDropNanos;
+    private volatile boolean opened;
+    private volatile boolean closing;
+
+    SimulatedClient(URI serverUri, int clientNum, LoadTestConfiguration config, LoadStats stats) {
+        super(serverUri);
+        this.clientNum = clientNum;
+        this.config = config;
+        this.stats = stats;
+        aiInputs = LoadTestConfiguration.INPUTS_AI.equals(config.inputs) ? new AiInputs(config.aiProfile) : null;
+        // spreads the scripted inputs of all clients over the interval
+        scriptPos = clientNum % config.scriptInputs.length;
+        setTcpNoDelay(true);
+    }
+
+    @Override
+    public void connect() {
+        connectStartNanos = TimeUtils.nanoTime();
+        super.connect();
+    }
+
+    /**
+     * closes the connection at the end of the test, not counted as disconnect
+     */
+    void shutdown() {
+        closing = true;
+        close();
+    }
+
+    /**
+     * sends the inputs and keep-alives. Called periodically by a driver thread
+     */
+    void drive() {
+        long nowNanos = TimeUtils.nanoTime();
+        float delta = lastDriveNanos > 0 ? (nowNanos - lastDriveNanos) / 1000000000f : 0;
+        lastDriveNanos = nowNanos;
+
+        if (!isOpen())
+            return;
+
+        try {
+            if (playing && aiInputs != null) {
+                IntArray inputs = aiInputs.update(delta);
+                for (int i = 0; i < inputs.size; i++)
+                    sendInput(inputs.get(i), nowNanos);
+            } else if (playing && TimeUtils.millis() >= nextScriptInputMs) {
+                sendInput(config.scriptInputs[scriptPos], nowNanos);
+                scriptPos = (scriptPos + 1) % config.scriptInputs.length;
+                nextScriptInputMs = TimeUtils.millis() + config.inputIntervalMs;
+            }
+
+            if (TimeUtils.timeSinceMillis(lastSentMs) >= config.keepAliveMs)
+                sendText("");
+        } catch (Throwable t) {
+            // connection closed meanwhile
+            Gdx.app.debug("Client", "Client " + clientNum + " could not send", t);
+        }
+    }
+
+    private void sendInput(int input, long nowNanos) {
+        if (input == InGameMessage.INPUT_DROP_HARD && pendingDropNanos == 0)
+            pendingDropNanos = nowNanos;
+
+        stats.inputsSent.incrementAndGet();
+        if (config.binaryProtocol) {
+            // the payload is copied into the frame, so the array is reused
+            binaryInput[0] = (byte) input;
+            stats.frameSent(binaryInput.length);
+            send(binaryInput);
+            lastSentMs = TimeUtils.millis();
+        } else {
+            sendText(TEXT_INPUTS[input]);
+        }
+    }
+
+    private void sendText(String message) {
+        stats.frameSent(message.length());
+        send(message);
+        lastSentMs = TimeUtils.millis();
+    }
+
+    private void sendPlayerInfo() {
+        // built like the game does it
+        JsonValue playerInfo = new JsonValue(JsonValue.ValueType.object);
+        playerInfo.addChild("nickName", new JsonValue("load" + clientNum));
+        playerInfo.addChild("clientVersion", new JsonValue(LightblocksServer.SERVER_VERSION));
+        if (config.binaryProtocol)
+            playerInfo.addChild("binaryProtocol", new JsonValue(BINARY_PROTOCOL_VERSION));
+        if (config.batchedFrames)
+            playerInfo.addChild("batchedFrames", new JsonValue(true));
+
+        sendText(Serializer.ID_PLAYERINFO + playerInfo.toJson(JsonWriter.OutputType.json));
+    }
+
+    @Override
+    public void onOpen(ServerHandshake handshakedata) {
+        opened = true;
+        stats.connections.incrementAndGet();
+    }
+
+    @Override
+    public void onMessage(String message) {
+        long nowNanos = TimeUtils.nanoTime();
+        stats.frameReceived(message.length());
+
+        if (message.startsWith(Serializer.ID_SERVERINFO)) {
+            stats.connectLatency.record(nowNanos - connectStartNanos);
+            sendPlayerInfo();
+        } else if (message.startsWith(Serializer.ID_BATCH)) {
+            int start = Serializer.ID_BATCH.length();
+            while (start <= message.length()) {
+                int end = message.indexOf(Serializer.BATCH_SEPARATOR, start);
+                if (end < 0)
+                    end = message.length();
+                onTextMessage(message, start, end, nowNanos);
+                start = end + 1;
+            }
+        } else {
+            onTextMessage(message, 0, message.length(), nowNanos);
+        }
+    }
+
+    private void onTextMessage(String message, int start, int end, long nowNanos) {
+        if (message.startsWith(GENERAL_MESSAGE, start)) {
+            // the countdown and wait messages are cleared with an empty message when the game starts
+            setPlaying(end - start == GENERAL_MESSAGE.length());
+        } else if (message.startsWith(MATCH_INFO, start)) {
+            if (!joinedMatch) {
+                joinedMatch = true;
+                stats.joinLatency.record(nowNanos - connectStartNanos);
+            }
+        } else if (end > start && message.charAt(start) == 'Y') {
+            ownEventReceived(nowNanos);
+        }
+    }
+
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        long nowNanos = TimeUtils.nanoTime();
+        stats.frameReceived(bytes.remaining());
+        if (!bytes.hasRemaining())
+            return;
+
+        int pos = bytes.position();
+        byte opcode = bytes.get(pos);
+        if (opcode == BATCH || opcode == BATCH_MIRRORED) {
+            byte mirror = opcode == BATCH_MIRRORED ? FLAG_OTHER : 0;
+            pos++;
+            while (pos + 2 < bytes.limit()) {
+                int length = bytes.getShort(pos) & 0xffff;
+                if (((bytes.get(pos + 2) ^ mirror) & FLAG_OTHER) == 0) {
+                    ownEventReceived(nowNanos);
+                    return;
+                }
+                pos = pos + 2 + length;
+            }
+        } else if ((opcode & FLAG_OTHER) == 0) {
+            ownEventReceived(nowNanos);
+        }
+    }
+
+    private void ownEventReceived(long nowNanos) {
+        long dropNanos = pendingDropNanos;
+        if (dropNanos != 0) {
+            pendingDropNanos = 0;
+            stats.echoLatency.record(nowNanos - dropNanos);
+        }
+    }
+
+    private void setPlaying(boolean playing) {
+        if (this.playing == playing)
+            return;
+
+        this.playing = playing;
+        // inputs sent before the countdown are dropped by the server
+        pendingDropNanos = 0;
+        if (playing)
+            stats.playing.incrementAndGet();
+        else
+            stats.playing.decrementAndGet();
+    }
+
+    @Override
+    public void onClose(int code, String reason, boolean remote) {
+        setPlaying(false);
+        if (opened)
+            stats.connections.decrementAndGet();
+
+        if (!opened) {
+            stats.connectFailures.incrementAndGet();
+            Gdx.app.debug("Client", "Client " + clientNum + " could not connect: " + reason);
+        } else if (!closing) {
+            stats.disconnects.incrementAndGet();
+            Gdx.app.log("Client", "Client " + clientNum + " disconnected: " + code + " " + reason);
+        }
+    }
+
+    @Override
+    public void onError(Exception ex) {
+        if (!closing)
+            Gdx.app.debug("Client", "Client " + clientNum + ": " + ex.getMessage());
+    }
+}
@@ -1,7 +1,5 @@
 package de.golfgl.lightblocks.model;
 
-import com.badlogic.gdx.math.MathUtils;
-
 import de.golfgl.lightblocks.state.InitGameParameters;
 
 /**
@@ -14,6 +12,8 @@ public abstract class AbstractMultiplayerModel<T extends AbstractMultiplayerMode
     ModelConnector modelConnector;
     private int currentGarbageGapPosIndex = 0;
     private int currentGarbageGapPosUsed = 0;
+    // garbage line arrays by their length
+    private int[][] garbageLinesBuffers = new int[Gameboard.GAMEBOARD_ALLROWS + 1][];
 
     @Override
     public InitGameParameters getInitParameters() {
@@ -28,6 +28,9 @@ public abstract class AbstractMultiplayerModel<T extends AbstractMultiplayerMode
     @Override
     public void startNewGame(InitGameParameters newGameParams) {
         modeType = newGameParams.getModeType();
+        currentGarbageGapPosIndex = 0;
+        currentGarbageGapPosUsed = 0;
+        // when the model is reused, the second game model is reused as well
         if (modelConnector == null) {
             secondGameModel = createSecondGameModel(newGameParams);
         }
@@ -101,8 +104,15 @@ public abstract class AbstractMultiplayerModel<T extends AbstractMultiplayerMode
         // 9 lines will get the same gap, then we switch over to the next
 
         int numOfLines = modelConnector.removeGarbage(isFirstPlayer(), removedLines);
+        if (numOfLines <= 0)
+            return null;
 
-        int[] retVal = new int[numOfLines];
+        // reused for the same number of lines, the game model only uses it until the next drop
+        if (numOfLines >= garbageLinesBuffers.length)
+            garbageLinesBuffers = new int[numOfLines + 1][];
+        if (garbageLinesBuffers[numOfLines] == null)
+            garbageLinesBuffers[numOfLines] = new int[numOfLines];
+        int[] retVal = garbageLinesBuffers[numOfLines];
 
         for (int garbageLine = 0; garbageLine < numOfLines; garbageLine++) {
             retVal[garbageLine] = modelConnector.garbageGapPos[currentGarbageGapPosIndex];
@@ -168,13 +178,13 @@ public abstract class AbstractMultiplayerModel<T extends AbstractMultiplayerMode
         public ModelConnector(int modeType, TetrominoDrawyer drawer) {
             this.modeType = modeType;
             this.firstDrawer = drawer;
-            this.secondDrawer = new TetrominoDrawyer();
+            this.secondDrawer = new TetrominoDrawyer(drawer.random);
             firstDrawer.determineNextTetrominos();
             secondDrawer.queueNextTetrominos(firstDrawer.getDrawyerQueue().toArray());
 
             garbageGapPos = new int[10];
             for (byte i = 0; i < garbageGapPos.length; i++) {
-                garbageGapPos[i] = MathUtils.random(0, Gameboard.GAMEBOARD_COLUMNS - 1);
+                garbageGapPos[i] = drawer.random.nextInt(Gameboard.GAMEBOARD_COLUMNS);
             }
         }
 
@@ -1,9 +1,14 @@
 package de.golfgl.lightblocks.model;
 
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.IntArray;
 
+import java.util.Random;
+
 import javax.annotation.Nullable;
 
 import de.golfgl.lightblocks.input.InputIdentifier;
@@ -34,6 +39,8 @@ public abstract class GameModel implements AiAcessibleGameModel {
     protected float currentSpeed;
     protected IGameModelListener uiGameboard;
     protected TetrominoDrawyer drawyer;
+    // for the drawyer, seeded if the game parameters have a seed
+    private Random random = MathUtils.random;
     private GameScore score;
     private boolean isBestScore = false;
     private Tetromino activeTetromino;
@@ -69,7 +76,13 @@ public abstract class GameModel implements AiAcessibleGameModel {
     // von removeLines geschrieben, für ui.clearAndInsertLines aufbewahrt
     private final IntArray removedLines;
     private int[] garbageLines;
+    // Puffer für Positionen, die den Listenern nach einer Änderung noch übergeben werden
+    private final Integer[][] oldBlockPositions = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
+    private final Integer[][] holdBlockPositions = new Integer[Tetromino.TETROMINO_BLOCKCOUNT][2];
     private boolean removeWasSpecial;
+    // nicht mehr benutzte Steine, werden beim Ziehen wiederverwendet
+    private final Array<Tetromino> freeTetrominos = new Array<>();
+    private Tetromino holdTetromino;
 
     public GameModel() {
 
@@ -287,7 +300,27 @@ public abstract class GameModel implements AiAcessibleGameModel {
 
     @Override
     public Tetromino getHoldTetromino() {
-        return onHoldTetromino >= 0 ? new Tetromino(onHoldTetromino, isModernRotation()) : null;
+        if (onHoldTetromino < 0)
+            return null;
+
+        // the instance is reused for the next call
+        if (holdTetromino == null || holdTetromino.isSrs() != isModernRotation())
+            holdTetromino = new Tetromino(onHoldTetromino, isModernRotation());
+        else
+            holdTetromino.init(onHoldTetromino);
+        return holdTetromino;
+    }
+
+    /**
+     * @return a tetromino in its initial state, reused if possible
+     */
+    private Tetromino obtainTetromino(int type) {
+        Tetromino tetromino = freeTetrominos.size > 0 ? freeTetrominos.pop() : null;
+        if (tetromino == null || tetromino.isSrs() != isModernRotation())
+            return new Tetromino(type, isModernRotation());
+
+        tetromino.init(type);
+        return tetromino;
     }
 
     @Override
@@ -467,7 +500,8 @@ public abstract class GameModel implements AiAcessibleGameModel {
 
             // Die Position und auch die Einzelteile darin muss geclonet werden, um nicht
             // durch die Rotation verloren zu gehen
-            Integer[][] oldBlockPositionsNewArray = cloneDoubleIntegerArray(activeTetromino.getCurrentBlockPositions());
+            Integer[][] oldBlockPositionsNewArray = copyBlockPositions(activeTetromino.getCurrentBlockPositions(),
+                    oldBlockPositions);
 
             if (wallkickPos != null)
                 activeTetromino.getPosition().set(wallkickPos);
@@ -481,13 +515,16 @@ public abstract class GameModel implements AiAcessibleGameModel {
         }
     }
 
-    private Integer[][] cloneDoubleIntegerArray(Integer[][] arrayToClone) {
-        Integer[][] clonedArray = new Integer[arrayToClone.length][2];
-        for (int i = 0; i < arrayToClone.length; i++) {
-            clonedArray[i][0] = new Integer(arrayToClone[i][0]);
-            clonedArray[i][1] = new Integer(arrayToClone[i][1]);
+    /**
+     * kopiert die Positionen in den übergebenen Puffer. Die Integer selbst sind unveränderlich und
+     * können geteilt werden
+     */
+    private static Integer[][] copyBlockPositions(Integer[][] from, Integer[][] to) {
+        for (int i = 0; i < from.length; i++) {
+            to[i][0] = from[i][0];
+            to[i][1] = from[i][1];
         }
-        return clonedArray;
+        return to;
     }
 
     /**
@@ -509,8 +546,10 @@ public abstract class GameModel implements AiAcessibleGameModel {
         if (!isHoldMoveAllowedByModel() || noDropSinceHoldMove || isGameOver)
             return false;
 
-        Integer[][] newHoldPositions = cloneDoubleIntegerArray(activeTetromino.getRelativeBlockPositions());
-        Integer[][] oldActivePositions = cloneDoubleIntegerArray(activeTetromino.getCurrentBlockPositions());
+        Integer[][] newHoldPositions = copyBlockPositions(activeTetromino.getRelativeBlockPositions(),
+                holdBlockPositions);
+        Integer[][] oldActivePositions = copyBlockPositions(activeTetromino.getCurrentBlockPositions(),
+                oldBlockPositions);
 
         if (onHoldTetromino < 0) {
             // Der erste durchgeführte Hold
@@ -522,8 +561,9 @@ public abstract class GameModel implements AiAcessibleGameModel {
             // resetMovements und replay.add... nicht nötig, ist bereits in activateNextTetro enthalten
         } else {
             Tetromino tmp = activeTetromino;
-            activeTetromino = new Tetromino(onHoldTetromino, isModernRotation());
+            activeTetromino = obtainTetromino(onHoldTetromino);
             onHoldTetromino = tmp.getTetrominoType();
+            freeTetrominos.add(tmp);
             checkActiveTetroPosBeforeUiInformed();
             int ghostPieceDistance = gameboard.getGhostPieceDistance(activeTetromino, 0);
             uiGameboard.swapHoldAndActivePiece(newHoldPositions, oldActivePositions,
@@ -551,8 +591,11 @@ public abstract class GameModel implements AiAcessibleGameModel {
             return;
         }
 
+        Tetromino droppedTetromino = activeTetromino;
         activeTetromino = nextTetromino;
-        nextTetromino = drawyer.getNextTetromino(isModernRotation());
+        nextTetromino = obtainTetromino(drawyer.drawNextTetromino());
+        if (droppedTetromino != null)
+            freeTetrominos.add(droppedTetromino);
         checkActiveTetroPosBeforeUiInformed();
 
         // ins Display mit beiden
@@ -666,19 +709,48 @@ public abstract class GameModel implements AiAcessibleGameModel {
      * starts a new game
      */
     public void startNewGame(InitGameParameters newGameParams) {
-        gameboard = new Gameboard();
+        // the model might be reused from a previous game: detach the old listener and reset
+        // everything left over, but keep the gameboard instance
+        uiGameboard = null;
+        resetGameState();
+        if (gameboard == null)
+            gameboard = new Gameboard();
+        else
+            gameboard.clear();
         initGameScore(newGameParams.getBeginningLevel());
         setCurrentSpeed();
 
         activeTetromino = null;
+        random = newGameParams.isSeeded() ? new RandomXS128(newGameParams.getRandomSeed()) : MathUtils.random;
         initDrawyer();
 
         initializeActiveAndNextTetromino();
 
     }
 
+    private void resetGameState() {
+        isBestScore = false;
+        onHoldTetromino = -1;
+        noDropSinceHoldMove = false;
+        distanceRemainder = 0;
+        freezeCountdown = 0;
+        inputFreezeCountdown = 0;
+        lastMovementMs = 0;
+        isGameOver = false;
+        softDropFactor = 0;
+        isInputRotate = 0;
+        isInputMovingLeft = 0;
+        isInputMovingRight = 0;
+        isSomeMovementDone = false;
+        movingCountdown = 0;
+        specialRowChainNum = 0;
+        removedLines.clear();
+        garbageLines = null;
+        removeWasSpecial = false;
+    }
+
     protected void initDrawyer() {
-        drawyer = new TetrominoDrawyer();
+        drawyer = new TetrominoDrawyer(random);
     }
 
     protected void initGameScore(int beginningLevel) {
@@ -687,7 +759,7 @@ public abstract class GameModel implements AiAcessibleGameModel {
     }
 
     protected void initializeActiveAndNextTetromino() {
-        nextTetromino = drawyer.getNextTetromino(isModernRotation());
+        nextTetromino = obtainTetromino(drawyer.drawNextTetromino());
         activateNextTetromino();
     }
 
@@ -6,6 +6,8 @@ import javax.annotation.Nullable;
 
 /**
  * Created by Benjamin Schulte on 23.01.2017.
+ * <p>
+ * Die übergebenen Arrays werden vom Modell wiederverwendet und sind nur während des Aufrufs gültig
  */
 
 public interface IGameModelListener {
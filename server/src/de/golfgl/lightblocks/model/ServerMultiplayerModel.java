@@ -16,6 +16,14 @@ public class ServerMultiplayerModel extends AbstractMultiplayerModel<ServerMulti
         return new ServerMultiplayerModel();
     }
 
+    @Override
+    public void startNewGame(InitGameParameters newGameParams) {
+        // AI player is set again after the game was started
+        aiPlayer = null;
+        aiEnabled = true;
+        super.startNewGame(newGameParams);
+    }
+
     public void setAiPlayer(ArtificialPlayer aiPlayer) {
         this.aiPlayer = aiPlayer;
     }
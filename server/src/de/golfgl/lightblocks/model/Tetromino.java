@@ -21,6 +21,8 @@ public class Tetromino {
     public static final int TETRO_IDX_Z = 4;
     public static final int TETRO_IDX_S = 5;
     public static final int TETRO_IDX_O = 6;
+    // Spalte ohne Block in getColumnBottoms/getColumnTops
+    public static final int NO_BLOCK = -1;
 
     //Die 7 Tetrominos
     // wiki/Nintendo_Rotation_System
@@ -109,10 +111,86 @@ public class Tetromino {
                     {new Vector2(1, 1), new Vector2(2, 1), new Vector2(1, 2), new Vector2(2, 2)}
             }};
 
+    // SRS Wallkicks als Verschiebung x/y je [aktuelle Rotation][im Uhrzeigersinn ? 1 : 0][Test]
+    // wiki/SRS#Wall_Kicks
+    private static final int[][][][] SRS_WALLKICKS_I = {
+            {{{-1, 0}, {2, 0}, {-1, 2}, {2, -1}}, {{-2, 0}, {1, 0}, {2, -1}, {1, 2}}},
+            {{{2, 0}, {-1, 0}, {-2, 1}, {-1, -2}}, {{-1, 0}, {2, 0}, {-1, 2}, {2, -1}}},
+            {{{1, 0}, {-2, 0}, {1, -2}, {-2, 1}}, {{2, 0}, {-1, 0}, {-2, 1}, {-1, -2}}},
+            {{{-2, 0}, {1, 0}, {2, -1}, {1, 2}}, {{1, 0}, {-2, 0}, {1, -2}, {-2, 1}}}};
+    // J, L, S, T, Z
+    private static final int[][][][] SRS_WALLKICKS_JLSTZ = {
+            {{{1, 0}, {1, 1}, {0, -2}, {1, -2}}, {{-1, 0}, {-1, 1}, {0, -2}, {-1, -2}}},
+            {{{1, 0}, {1, -1}, {0, 2}, {1, 2}}, {{1, 0}, {1, -1}, {0, 2}, {1, 2}}},
+            {{{-1, 0}, {-1, 1}, {0, -2}, {-1, -2}}, {{1, 0}, {1, 1}, {0, -2}, {1, -2}}},
+            {{{-1, 0}, {-1, -1}, {0, 2}, {-1, 2}}, {{-1, 0}, {-1, -1}, {0, 2}, {-1, 2}}}};
+
+    // aus den Templates vorberechnete Tabellen je [srs ? 1 : 0][Tetromino][Rotation], damit
+    // Kollisionsprüfung, Ghost und KI ohne Vector2 und Float-Umwandlungen auskommen.
+    // Die Arrays werden geteilt und dürfen nicht verändert werden
+    // Blockpositionen hintereinander als x0, y0, x1, y1...
+    private static final int[][][][] BLOCKS = new int[2][TETROMINO_NUMBER][][];
+    // Bitmaske je Zeile des Steins, Bit x für Spalte x
+    private static final int[][][][] ROW_MASKS = new int[2][TETROMINO_NUMBER][][];
+    // minX, maxX, minY, maxY
+    private static final int[][][][] BOUNDS = new int[2][TETROMINO_NUMBER][][];
+    // unterster und oberster Block je Spalte
+    private static final int[][][][] COLUMN_BOTTOMS = new int[2][TETROMINO_NUMBER][][];
+    private static final int[][][][] COLUMN_TOPS = new int[2][TETROMINO_NUMBER][][];
+
+    static {
+        for (int system = 0; system < 2; system++) {
+            Vector2[][][] templates = (system == 1 ? srsTemplates : nrsTemplates);
+            for (int type = 0; type < TETROMINO_NUMBER; type++) {
+                int rotations = templates[type].length;
+                BLOCKS[system][type] = new int[rotations][];
+                ROW_MASKS[system][type] = new int[rotations][];
+                BOUNDS[system][type] = new int[rotations][];
+                COLUMN_BOTTOMS[system][type] = new int[rotations][];
+                COLUMN_TOPS[system][type] = new int[rotations][];
+
+                for (int rotation = 0; rotation < rotations; rotation++) {
+                    int[] blocks = new int[TETROMINO_BLOCKCOUNT * 2];
+                    int[] rowMasks = new int[TETROMINO_BLOCKCOUNT];
+                    int[] bounds = new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE};
+                    int[] columnBottoms = new int[TETROMINO_BLOCKCOUNT];
+                    int[] columnTops = new int[TETROMINO_BLOCKCOUNT];
+                    for (int column = 0; column < TETROMINO_BLOCKCOUNT; column++) {
+                        columnBottoms[column] = NO_BLOCK;
+                        columnTops[column] = NO_BLOCK;
+                    }
+
+                    Vector2[] template = templates[type][rotation];
+                    for (int i = 0; i < template.length; i++) {
+                        int x = (int) template[i].x;
+                        int y = (int) template[i].y;
+                        blocks[i * 2] = x;
+                        blocks[i * 2 + 1] = y;
+                        rowMasks[y] = rowMasks[y] | (1 << x);
+                        bounds[0] = Math.min(bounds[0], x);
+                        bounds[1] = Math.max(bounds[1], x);
+                        bounds[2] = Math.min(bounds[2], y);
+                        bounds[3] = Math.max(bounds[3], y);
+                        if (columnBottoms[x] == NO_BLOCK || y < columnBottoms[x])
+                            columnBottoms[x] = y;
+                        columnTops[x] = Math.max(columnTops[x], y);
+                    }
+
+                    BLOCKS[system][type][rotation] = blocks;
+                    ROW_MASKS[system][type][rotation] = rowMasks;
+                    BOUNDS[system][type][rotation] = bounds;
+                    COLUMN_BOTTOMS[system][type][rotation] = columnBottoms;
+                    COLUMN_TOPS[system][type][rotation] = columnTops;
+                }
+            }
+        }
+    }
+
     private transient final Vector2[][][] tetrominoTemplates;
     private transient final boolean srs;
+    private transient final int system;
 
-    private final int tetrominoIndex;
+    private int tetrominoIndex;
     private final Vector2 position;
     private transient final Vector2 wallkickPos;
     // wird immer wieder verwendet um Garbage Collection zu verhindern
@@ -125,18 +203,50 @@ public class Tetromino {
     private int lowestMovementYPos;
     private int lockDelayCount;
 
-    Tetromino(int index, boolean srs) {
+    public Tetromino(int index, boolean srs) {
         this.srs = srs;
+        system = srs ? 1 : 0;
         tetrominoTemplates = srs ? srsTemplates : nrsTemplates;
-        this.tetrominoIndex = index;
         this.blockPosition = new Integer[TETROMINO_BLOCKCOUNT][2];
+        this.position = new Vector2();
+        init(index);
+
+        wallkickPos = srs ? new Vector2() : null;
+    }
+
+    /**
+     * Kopie von Typ, Position und Rotation des Steins, z.B. für die KI-Planung in einem anderen Thread
+     */
+    public Tetromino(Tetromino tetromino) {
+        this(tetromino.tetrominoIndex, tetromino.srs);
+        copyFrom(tetromino);
+    }
+
+    /**
+     * setzt den Stein auf den Anfangszustand, auch zur Wiederverwendung für einen neuen Stein
+     */
+    void init(int index) {
+        this.tetrominoIndex = index;
 
         // Die Startposition jedes Tetrominos
-        this.position = new Vector2(GAMEBOARD_COLUMNS / 2 - 2, GAMEBOARD_NORMALROWS - 2);
+        position.set(GAMEBOARD_COLUMNS / 2 - 2, GAMEBOARD_NORMALROWS - 2);
         lowestMovementYPos = (int) position.y;
         currentRotation = 0;
+        lastMovementType = 0;
+        lockDelayCount = 0;
+    }
 
-        wallkickPos = srs ? new Vector2() : null;
+    /**
+     * übernimmt Typ, Position und Rotation des Steins, der dasselbe Rotationssystem haben muss
+     */
+    public void copyFrom(Tetromino tetromino) {
+        tetrominoIndex = tetromino.tetrominoIndex;
+        position.set(tetromino.position);
+        currentRotation = tetromino.currentRotation;
+    }
+
+    public boolean isSrs() {
+        return srs;
     }
 
     public Vector2[] getRotationVectors(int rotation) {
@@ -155,6 +265,50 @@ public class Tetromino {
         return rotation;
     }
 
+    /**
+     * @return Blockpositionen relativ zum Stein als x0, y0, x1, y1...
+     */
+    public int[] getBlocks(int rotation) {
+        return BLOCKS[system][tetrominoIndex][normalizeRotation(rotation)];
+    }
+
+    /**
+     * @return Bitmaske je Zeile des Steins, Bit x für Spalte x
+     */
+    public int[] getRowMasks(int rotation) {
+        return ROW_MASKS[system][tetrominoIndex][normalizeRotation(rotation)];
+    }
+
+    public int getMinX(int rotation) {
+        return BOUNDS[system][tetrominoIndex][normalizeRotation(rotation)][0];
+    }
+
+    public int getMaxX(int rotation) {
+        return BOUNDS[system][tetrominoIndex][normalizeRotation(rotation)][1];
+    }
+
+    public int getMinY(int rotation) {
+        return BOUNDS[system][tetrominoIndex][normalizeRotation(rotation)][2];
+    }
+
+    public int getMaxY(int rotation) {
+        return BOUNDS[system][tetrominoIndex][normalizeRotation(rotation)][3];
+    }
+
+    /**
+     * @return unterster Block je Spalte des Steins, {@link #NO_BLOCK} für leere Spalten
+     */
+    public int[] getColumnBottoms(int rotation) {
+        return COLUMN_BOTTOMS[system][tetrominoIndex][normalizeRotation(rotation)];
+    }
+
+    /**
+     * @return oberster Block je Spalte des Steins, {@link #NO_BLOCK} für leere Spalten
+     */
+    public int[] getColumnTops(int rotation) {
+        return COLUMN_TOPS[system][tetrominoIndex][normalizeRotation(rotation)];
+    }
+
     public boolean hasRotation(int rotation) {
         return rotation == normalizeRotation(rotation);
     }
@@ -187,11 +341,12 @@ public class Tetromino {
     }
 
     protected Integer[][] getBlockPositions(Vector2 position, int rotation) {
-        int i = 0;
-        for (Vector2 v : getRotationVectors(rotation)) {
-            blockPosition[i][0] = ((int) v.x + (int) position.x);
-            blockPosition[i][1] = ((int) v.y + (int) position.y);
-            i++;
+        int[] blocks = getBlocks(rotation);
+        int x = (int) position.x;
+        int y = (int) position.y;
+        for (int i = 0; i < TETROMINO_BLOCKCOUNT; i++) {
+            blockPosition[i][0] = blocks[i * 2] + x;
+            blockPosition[i][1] = blocks[i * 2 + 1] + y;
         }
         return blockPosition;
 
@@ -228,144 +383,9 @@ public class Tetromino {
         if (!srs || getTetrominoType() == TETRO_IDX_O)
             return getPosition();
 
-        wallkickPos.set(getPosition());
-
-        if (getTetrominoType() == TETRO_IDX_I) {
-            switch (i) {
-                case 0:
-                    if (currentRotation == 0 && clockwise || currentRotation == 3 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 2;
-                    }
-                    if (currentRotation == 1 && !clockwise || currentRotation == 2 && clockwise) {
-                        wallkickPos.x = wallkickPos.x + 2;
-                    }
-                    if (currentRotation == 1 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                    }
-                    if (currentRotation == 3 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                    }
-                    break;
-                case 1:
-                    if (currentRotation == 0 && clockwise || currentRotation == 3 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                    }
-                    if (currentRotation == 1 && !clockwise || currentRotation == 2 && clockwise) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                    }
-                    if (currentRotation == 1 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 2;
-                    }
-                    if (currentRotation == 3 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 2;
-                    }
-                    break;
-                case 2:
-                    if (currentRotation == 0 && clockwise || currentRotation == 3 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 2;
-                        wallkickPos.y = wallkickPos.y - 1;
-                    }
-                    if (currentRotation == 1 && !clockwise || currentRotation == 2 && clockwise) {
-                        wallkickPos.x = wallkickPos.x - 2;
-                        wallkickPos.y = wallkickPos.y + 1;
-                    }
-                    if (currentRotation == 1 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                        wallkickPos.y = wallkickPos.y + 2;
-                    }
-                    if (currentRotation == 3 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                        wallkickPos.y = wallkickPos.y - 2;
-                    }
-                    break;
-                case 3:
-                    if (currentRotation == 0 && clockwise || currentRotation == 3 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                        wallkickPos.y = wallkickPos.y + 2;
-                    }
-                    if (currentRotation == 1 && !clockwise || currentRotation == 2 && clockwise) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                        wallkickPos.y = wallkickPos.y - 2;
-                    }
-                    if (currentRotation == 1 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 2;
-                        wallkickPos.y = wallkickPos.y - 1;
-                    }
-                    if (currentRotation == 3 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 2;
-                        wallkickPos.y = wallkickPos.y + 1;
-                    }
-                    break;
-            }
-        } else {
-            // J, L, S, T, Z
-            switch (i) {
-                case 0:
-                    if (currentRotation == 0 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                    }
-                    if (currentRotation == 1) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                    }
-                    if (currentRotation == 2 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                    }
-                    if (currentRotation == 3) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                    }
-                    break;
-                case 1:
-                    if (currentRotation == 0 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                        wallkickPos.y = wallkickPos.y + 1;
-                    }
-                    if (currentRotation == 1) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                        wallkickPos.y = wallkickPos.y - 1;
-                    }
-                    if (currentRotation == 2 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                        wallkickPos.y = wallkickPos.y + 1;
-                    }
-                    if (currentRotation == 3) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                        wallkickPos.y = wallkickPos.y - 1;
-                    }
-                    break;
-                case 2:
-                    if (currentRotation == 0 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.y = wallkickPos.y - 2;
-                    }
-                    if (currentRotation == 1) {
-                        wallkickPos.y = wallkickPos.y + 2;
-                    }
-                    if (currentRotation == 2 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.y = wallkickPos.y - 2;
-                    }
-                    if (currentRotation == 3) {
-                        wallkickPos.y = wallkickPos.y + 2;
-                    }
-                    break;
-                case 3:
-                    if (currentRotation == 0 && clockwise || currentRotation == 2 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                        wallkickPos.y = wallkickPos.y - 2;
-                    }
-                    if (currentRotation == 1) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                        wallkickPos.y = wallkickPos.y + 2;
-                    }
-                    if (currentRotation == 2 && clockwise || currentRotation == 0 && !clockwise) {
-                        wallkickPos.x = wallkickPos.x + 1;
-                        wallkickPos.y = wallkickPos.y - 2;
-                    }
-                    if (currentRotation == 3) {
-                        wallkickPos.x = wallkickPos.x - 1;
-                        wallkickPos.y = wallkickPos.y + 2;
-                    }
-                    break;
-            }
-        }
+        int[] offset = (getTetrominoType() == TETRO_IDX_I ? SRS_WALLKICKS_I : SRS_WALLKICKS_JLSTZ)
+                [currentRotation][clockwise ? 1 : 0][i];
+        wallkickPos.set(getPosition().x + offset[0], getPosition().y + offset[1]);
 
         return wallkickPos;
     }
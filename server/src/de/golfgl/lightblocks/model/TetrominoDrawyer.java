@@ -5,6 +5,8 @@ import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 
+import java.util.Random;
+
 /**
  * This is the Tetromino draywer
  * <p>
@@ -13,19 +15,37 @@ import com.badlogic.gdx.utils.JsonValue;
 
 class TetrominoDrawyer implements Json.Serializable {
     protected final IntArray drawyer = new IntArray();
+    final Random random;
+
+    TetrominoDrawyer() {
+        this(MathUtils.random);
+    }
+
+    /**
+     * @param random Zufallsgenerator für die Reihenfolge der Steine, geseedet für wiederholbare Spiele
+     */
+    TetrominoDrawyer(Random random) {
+        this.random = random;
+    }
 
     /**
      * returns the next tetromino
      */
     public Tetromino getNextTetromino(boolean useSrs) {
+        return new Tetromino(drawNextTetromino(), useSrs);
+    }
 
-        Tetromino retVal;
+    /**
+     * returns the type of the next tetromino
+     */
+    public int drawNextTetromino() {
+        int retVal;
 
         synchronized (drawyer) {
             if (drawyer.size < 1)
                 determineNextTetrominos();
 
-            retVal = new Tetromino(drawyer.get(0), useSrs);
+            retVal = drawyer.get(0);
 
             // Position weiterschieben
             drawyer.removeIndex(0);
@@ -43,7 +63,7 @@ class TetrominoDrawyer implements Json.Serializable {
                 drawyer.add(i);
 
             for (int i = sizeBeforeAdding; i < drawyer.size - 2; i++) {
-                int swapWith = MathUtils.random(i, drawyer.size - 1);
+                int swapWith = i + random.nextInt(drawyer.size - i);
                 drawyer.swap(i, swapWith);
             }
         }
@@ -0,0 +1,65 @@
+package de.golfgl.lightblocks.multiplayer.ai;
+
+import java.util.Locale;
+
+/**
+ * Difficulty of an {@link ArtificialPlayer}: how far it looks ahead, how many placements it follows
+ * per piece, how it evaluates a board and how fast it reacts. Profiles are immutable.
+ */
+public class AiProfile {
+    // active or hold piece, next piece and up to two unknown pieces
+    public static final int MAX_DEPTH = 4;
+
+    public static final AiProfile EASY = new AiProfile("easy", 1, 0, .2f, .4f);
+    public static final AiProfile NORMAL = new AiProfile("normal", 2, 0, .1f, .2f);
+    public static final AiProfile HARD = new AiProfile("hard", 3, 6, .05f, .1f);
+    public static final AiProfile EXPERT = new AiProfile("expert", 4, 4, .03f, .05f);
+
+    public final String name;
+    // pieces placed per planning: 1 only the active one, 2 with the next one, more with pieces
+    // not known yet. These are rated by the average over all pieces
+    public final int depth;
+    // placements followed to the next piece, the best rated first. 0 follows all
+    public final int beamWidth;
+    // seconds between two moves and before the first move of a new piece
+    public final float moveDelay;
+    public final float planDelay;
+    public final float heightFactor;
+    public final float completeLinesFactor;
+    public final float holesFactor;
+    public final float bumpinessFactor;
+
+    public AiProfile(String name, int depth, int beamWidth, float moveDelay, float planDelay) {
+        // 0.510066, 0.760666, 0.35663, 0.184483
+        this(name, depth, beamWidth, moveDelay, planDelay, 5.1f, 7.6f, 3.66f, 1.8f);
+    }
+
+    public AiProfile(String name, int depth, int beamWidth, float moveDelay, float planDelay,
+                     float heightFactor, float completeLinesFactor, float holesFactor, float bumpinessFactor) {
+        this.name = name.toLowerCase(Locale.ROOT);
+        this.depth = Math.max(1, Math.min(MAX_DEPTH, depth));
+        this.beamWidth = Math.max(0, beamWidth);
+        this.moveDelay = Math.max(0, moveDelay);
+        this.planDelay = Math.max(0, planDelay);
+        this.heightFactor = heightFactor;
+        this.completeLinesFactor = completeLinesFactor;
+        this.holesFactor = holesFactor;
+        this.bumpinessFactor = bumpinessFactor;
+    }
+
+    /**
+     * @return the built-in profile with the given name, or null
+     */
+    public static AiProfile getBuiltIn(String name) {
+        for (AiProfile profile : new AiProfile[]{EASY, NORMAL, HARD, EXPERT}) {
+            if (profile.name.equalsIgnoreCase(name))
+                return profile;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (depth " + depth + ", beam " + beamWidth + ", move delay " + moveDelay + "s)";
+    }
+}
@@ -1,10 +1,16 @@
 package de.golfgl.lightblocks.multiplayer.ai;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Queue;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
 
 import de.golfgl.lightblocks.model.GameModel;
 import de.golfgl.lightblocks.model.Gameboard;
@@ -14,241 +20,201 @@ import de.golfgl.lightblocks.model.Tetromino;
  * An AI based on https://github.com/LeeYiyuan/tetrisai /
  * https://codemyroad.wordpress.com/2013/04/14/tetris-ai-the-near-perfect-player/
  * arranged with the intent to let the opponent human have fun
+ * <p>
+ * The search works on bitboards: every depth has its own preallocated row masks and column
+ * heights, so planning a piece does not allocate. It runs on a copy of the board, optionally on an
+ * executor so it does not stall the match.
  */
 public class ArtificialPlayer {
+    private static final int MAX_DEPTH = AiProfile.MAX_DEPTH;
+    // rotations times horizontal moves
+    private static final int MAX_PLACEMENTS = 4 * (2 * Gameboard.GAMEBOARD_COLUMNS + 1);
+    // pos weight 0123454321 => 1.0, 1.07, 1.14, ...
+    // the more the column is centered, the more it is avoided drop pieces
+    private static final float[] COLUMN_WEIGHTS = new float[Gameboard.GAMEBOARD_COLUMNS];
+    // weight of a hole by the number of blocks above it: 1 + log2(blocks)
+    private static final float[] HOLE_WEIGHTS = new float[Gameboard.GAMEBOARD_ALLROWS + 1];
+
+    static {
+        for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++)
+            COLUMN_WEIGHTS[x] = 1f + Math.abs(Math.abs(x - (Gameboard.GAMEBOARD_COLUMNS / 2f)) - Gameboard.GAMEBOARD_COLUMNS / 2f) / 15f;
+        for (int blocks = 1; blocks <= Gameboard.GAMEBOARD_ALLROWS; blocks++)
+            HOLE_WEIGHTS[blocks] = 1 + (MathUtils.log2(blocks));
+    }
+
     private final AiAcessibleGameModel aiGameModel;
     private final AiAcessibleGameModel opponentGameModel;
 
-    private final Vector2 tempPos = new Vector2();
+    private final Executor planningExecutor;
     private final Queue<Movement> movementArrayList = new Queue<>();
-    private final Queue<Movement> holdArrayList = new Queue<>();
-    private final float heightFactor;
-    private final float completeLinesFactor;
-    private final float holesFactor;
-    private final float bumpinessFactor;
+    // plannings are only obtained and freed by the match's thread
+    private final Array<Planning> freePlannings = new Array<>(false, 2);
+    private final Array<Planning> finishedPlannings = new Array<>(false, 2);
+    // increased for every new piece, cancels the plannings for older pieces
+    private volatile int planGeneration;
+    private long planningNanos;
+    private AiProfile profile = AiProfile.NORMAL;
+    // seeds the plannings' tie breaks
+    private Random random = MathUtils.random;
     private float slowDown;
     private int drawnTetrominoBaseDifference;
 
     public ArtificialPlayer(AiAcessibleGameModel aiGameModel, AiAcessibleGameModel opponentGameModel) {
+        this(aiGameModel, opponentGameModel, null);
+    }
+
+    /**
+     * @param planningExecutor executor to plan the moves on, or null to plan on the calling thread
+     */
+    public ArtificialPlayer(AiAcessibleGameModel aiGameModel, AiAcessibleGameModel opponentGameModel,
+                            Executor planningExecutor) {
         this.aiGameModel = aiGameModel;
         this.opponentGameModel = opponentGameModel;
-
-        // 0.510066, 0.760666, 0.35663, 0.184483
-        heightFactor = 5.1f;
-        completeLinesFactor = 7.6f;
-        holesFactor = 3.66f;
-        bumpinessFactor = 1.8f;
+        this.planningExecutor = planningExecutor;
 
         setDrawnTetrominoBaseDiff();
     }
 
-    public void onNextPiece(Gameboard gameboard, Tetromino activePiece) {
-        // we have a new active piece. check how to place it best and add the needed movements to
-        // the movement queue
-
-        // future AI improvement possibilities:
-        // - take waiting garbage into account by adding it to board for next piece, but not for clears (when modern)
-        // - go for singles after a certain height is reached
-        // - at the moment, line clears are not considered on their own but for all next pieces together - improve
-
-        float bestScore = Float.NEGATIVE_INFINITY;
-
-        Tetromino nextPiece = aiGameModel.getNextTetromino();
-
-        Array<Tetromino> nextPieces = new Array<>();
-        nextPieces.add(activePiece);
-        nextPieces.add(nextPiece);
-
-        bestScore = checkAllRotationsAndDropPlaces(new AiGameboard(gameboard), nextPieces, 0, bestScore, movementArrayList);
+    public AiProfile getProfile() {
+        return profile;
+    }
 
-        if (aiGameModel.isHoldMoveAllowedByModel()) {
-            // compare found best movement with hold piece
-            Tetromino holdTetromino = aiGameModel.getHoldTetromino();
+    /**
+     * sets the difficulty, used from the next piece on
+     */
+    public void setProfile(AiProfile profile) {
+        this.profile = profile;
+    }
 
-            nextPieces.clear();
-            if (holdTetromino != null) {
-                nextPieces.add(holdTetromino);
-            }
-            nextPieces.add(nextPiece);
+    /**
+     * seeds the AI, so it makes the same moves in a game with the same pieces. Should be called on
+     * the match's thread before the first piece is planned
+     */
+    public void setRandomSeed(long seed) {
+        random = new RandomXS128(seed);
+    }
 
-            float holdMoveScore = checkAllRotationsAndDropPlaces(new AiGameboard(gameboard), nextPieces, 0, bestScore, holdArrayList);
+    /**
+     * resets the AI for reusage after a new game was started on its game models
+     */
+    public void reset() {
+        planGeneration++;
+        freeFinishedPlannings();
+        movementArrayList.clear();
+        slowDown = 0;
+        setDrawnTetrominoBaseDiff();
+    }
 
-            if (holdMoveScore > bestScore) {
-                Gdx.app.debug("AI", "Hold the piece");
-                movementArrayList.clear();
-                movementArrayList.addFirst(Movement.HOLD);
-                while (holdArrayList.notEmpty())
-                    movementArrayList.addLast(holdArrayList.removeFirst());
-            }
-        }
-        slowDown = .2f;
+    /**
+     * @return nanoseconds spent planning on the match's thread since the last call
+     */
+    public long takePlanningNanos() {
+        long nanos = planningNanos;
+        planningNanos = 0;
+        return nanos;
     }
 
-    private float checkAllRotationsAndDropPlaces(AiGameboard gameboard, Array<Tetromino> nextPieces, int depth, float overallBestScore, Queue<Movement> movementArrayList) {
-        Tetromino activePiece = nextPieces.get(depth);
-        int bestRotation = 0;
-        int bestHorizontalMove = 0;
-        float bestScore = Float.NEGATIVE_INFINITY;
-
-        // check all rotations and all drop places
-        for (int rotation = 0; rotation < 4; rotation++) {
-            if (activePiece.hasRotation(rotation)) {
-                for (int horizontalMove = -Gameboard.GAMEBOARD_COLUMNS; horizontalMove <= Gameboard.GAMEBOARD_COLUMNS; horizontalMove++) {
-                    AiGameboard aiGameboard = new AiGameboard(gameboard);
-                    int dropVerticalMove = -1;
-
-                    for (int verticalMove = 0; verticalMove <= Gameboard.GAMEBOARD_ALLROWS &&
-                            dropVerticalMove + 1 == verticalMove; verticalMove++) {
-                        tempPos.set(activePiece.getPosition().x + horizontalMove,
-                                activePiece.getPosition().y - verticalMove);
-                        if (aiGameboard.isValidPosition(activePiece, tempPos, rotation)) {
-                            dropVerticalMove = verticalMove;
-                        }
-                    }
-
-                    if (dropVerticalMove >= 0) {
-                        // we have found the drop position for the current rotation
-                        // and pretend to pin the tetromino here
-                        for (Vector2 coord : activePiece.getRotationVectors(rotation)) {
-                            int x = (int) activePiece.getPosition().x + (int) coord.x + horizontalMove;
-                            int y = (int) activePiece.getPosition().y + (int) coord.y - dropVerticalMove;
-                            aiGameboard.setPosition(x, y, true);
-                        }
-
-                        float score;
-                        if (depth == nextPieces.size - 1) {
-                            score = calculateScoreOfPosition(aiGameboard);
-                        } else {
-                            score = checkAllRotationsAndDropPlaces(aiGameboard, nextPieces, depth + 1, 0, null);
-                        }
-
-                        if (score > bestScore ||
-                                // if we found an equal score, use it to prevent a left-hang
-                                MathUtils.isEqual(score, bestScore) && MathUtils.randomBoolean()
-                                        // but avoid unnecessary rotations
-                                        && bestHorizontalMove != horizontalMove) {
-                            bestRotation = rotation;
-                            bestHorizontalMove = horizontalMove;
-                            bestScore = score;
-                        }
-                    }
+    /**
+     * plans the moves for the new active piece. The planning runs on the executor and its result is
+     * applied by a later {@link #update(float, Tetromino)}, a planning for a previous piece is cancelled
+     */
+    public void onNextPiece(Gameboard gameboard, Tetromino activePiece) {
+        long startNanos = TimeUtils.nanoTime();
+        planGeneration++;
+        movementArrayList.clear();
+        slowDown = profile.planDelay;
+
+        Planning planning = freePlannings.size > 0 ? freePlannings.pop() : new Planning();
+        planning.init(planGeneration, gameboard, activePiece);
+        if (planningExecutor != null)
+            planningExecutor.execute(planning);
+        else
+            planning.run();
+        planningNanos = planningNanos + TimeUtils.nanoTime() - startNanos;
+    }
 
+    private void applyFinishedPlannings() {
+        synchronized (finishedPlannings) {
+            for (int i = 0; i < finishedPlannings.size; i++) {
+                Planning planning = finishedPlannings.get(i);
+                if (!planning.isCancelled()) {
+                    movementArrayList.clear();
+                    for (int j = 0; j < planning.movements.size; j++)
+                        movementArrayList.addLast(planning.movements.get(j));
                 }
+                freePlannings.add(planning);
             }
+            finishedPlannings.clear();
         }
+    }
 
-
-        // now we found the best position, add the necessary movements to the queue
-        if (movementArrayList != null && bestScore > overallBestScore) {
-            Gdx.app.debug("AI", "Move: h " + bestHorizontalMove + ", rotate " + bestRotation);
-            movementArrayList.clear();
-
-            switch (bestRotation) {
-                case 2:
-                    movementArrayList.addLast(Movement.ROTATE_RIGHT);
-                    movementArrayList.addLast(Movement.ROTATE_RIGHT);
-                    break;
-                case 1:
-                    movementArrayList.addLast(Movement.ROTATE_RIGHT);
-                    break;
-                case 3:
-                    movementArrayList.addLast(Movement.ROTATE_LEFT);
-                    break;
-            }
-
-            for (int i = 0; i < Math.abs(bestHorizontalMove); i++) {
-                movementArrayList.addLast(bestHorizontalMove < 0 ? Movement.MOVE_LEFT : Movement.MOVE_RIGHT);
-            }
-
-            movementArrayList.addLast(Movement.DROP);
+    private void freeFinishedPlannings() {
+        synchronized (finishedPlannings) {
+            freePlannings.addAll(finishedPlannings);
+            finishedPlannings.clear();
         }
-
-        return bestScore;
     }
 
-    private float calculateScoreOfPosition(AiGameboard gameboard) {
-
-        // calculate the different dimensions
-        int completedLines = gameboard.clearFullLines();
-
-        float completedLinesVal;
-        if (completedLines == 1) {
-            // we don't want to go for single lines, but they are rewarded because of lower height
-            // of 10. So counterbalance this here
-            completedLinesVal = -10;
-        } else {
-            completedLinesVal = Math.max(0, (completedLines - 1) * (completedLines - 1));
+    /**
+     * removes the full rows, the rows above move down
+     *
+     * @return number of removed rows
+     */
+    private static int clearFullLines(int[] rows) {
+        int keptRows = 0;
+        for (int y = 0; y < Gameboard.GAMEBOARD_ALLROWS; y++) {
+            if (rows[y] != Gameboard.FULL_ROW) {
+                rows[keptRows] = rows[y];
+                keptRows++;
+            }
         }
 
-        float aggregatedHeight = aggregateWeightedHeight(gameboard);
-        float countHoles = countHoles(gameboard);
-        int bumpiness = computeBumpiness(gameboard);
+        for (int y = keptRows; y < Gameboard.GAMEBOARD_ALLROWS; y++)
+            rows[y] = 0;
 
-        return -heightFactor * aggregatedHeight + completeLinesFactor * completedLinesVal - holesFactor * countHoles - bumpinessFactor * bumpiness;
+        return Gameboard.GAMEBOARD_ALLROWS - keptRows;
     }
 
-    private int computeBumpiness(AiGameboard gameboard) {
+    private static int computeBumpiness(int[] heights) {
         int bumpiness = 0;
-        int lastHeight = 0;
-
-        for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
-            int y = gameboard.getColumnHeight(x);
 
-            if (x > 0)
-                bumpiness = bumpiness + Math.abs(y - lastHeight);
-
-            lastHeight = y;
-        }
+        for (int x = 1; x < Gameboard.GAMEBOARD_COLUMNS; x++)
+            bumpiness = bumpiness + Math.abs(heights[x] - heights[x - 1]);
 
         return bumpiness;
     }
 
-    private float countHoles(AiGameboard gameboard) {
+    private static float countHoles(int[] rows, int[] heights) {
         float holes = 0;
         for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
             // multiply holes with the number of blocks above the holes
             // this takes into account that it is more difficult to fill them the more to clear there is
+            int columnMask = 1 << x;
             int numFull = 0;
 
-            for (int y = Gameboard.GAMEBOARD_ALLROWS - 1; y >= 0; y--) {
-                if (gameboard.isPositionFull(x, y))
+            for (int y = heights[x] - 1; y >= 0; y--) {
+                if ((rows[y] & columnMask) != 0)
                     numFull++;
-
-                if (!gameboard.isPositionFull(x, y) && numFull > 0)
-                    holes = holes + 1 + (MathUtils.log2(numFull));
+                else
+                    holes = holes + HOLE_WEIGHTS[numFull];
             }
         }
 
         return holes;
     }
 
-    private int aggregateHeight(AiGameboard gameboard) {
-        int aggregateHeight = 0;
-
-        for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
-            int y = gameboard.getColumnHeight(x);
-            aggregateHeight = aggregateHeight + y;
-        }
-
-        return aggregateHeight;
-    }
-
-    private float aggregateWeightedHeight(AiGameboard gameboard) {
+    private static float aggregateWeightedHeight(int[] heights) {
         float aggregateHeight = 0;
 
-        for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
-            // pos weight 0123454321 => 1.0, 1.07, 1.14, ...
-            // the more the column is centered, the more it is avoided drop pieces
-            float posWeight = 1f + Math.abs(Math.abs(x - (Gameboard.GAMEBOARD_COLUMNS / 2f)) - Gameboard.GAMEBOARD_COLUMNS / 2f) / 15f;
-            int y = gameboard.getColumnHeight(x);
-
-            aggregateHeight = aggregateHeight + y * posWeight;
-        }
+        for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++)
+            aggregateHeight = aggregateHeight + heights[x] * COLUMN_WEIGHTS[x];
 
         return aggregateHeight;
     }
 
     public void update(float delta, Tetromino activePiece) {
+        applyFinishedPlannings();
+
         // process the queue, but slow down
 
         slowDown -= delta;
@@ -281,7 +247,7 @@ public class ArtificialPlayer {
                     break;
             }
 
-            slowDown = .1f;
+            slowDown = profile.moveDelay;
         }
     }
 
@@ -289,94 +255,337 @@ public class ArtificialPlayer {
         drawnTetrominoBaseDifference = 10 + aiGameModel.getScore().getDrawnTetrominos() - opponentGameModel.getScore().getDrawnTetrominos();
     }
 
-    enum Movement {MOVE_LEFT, MOVE_RIGHT, ROTATE_LEFT, ROTATE_RIGHT, DROP, HOLD}
 
-    static class AiGameboard {
-        final boolean[][] fullSquares = new boolean[Gameboard.GAMEBOARD_ALLROWS][Gameboard.GAMEBOARD_COLUMNS];
+    /**
+     * A planning for a piece, working on a copy of the board and the pieces so it can run on an
+     * AI worker while the match goes on. Plannings are reused.
+     */
+    private class Planning implements Runnable {
+        // search stack: the board before the piece of a depth is placed, the last one is the leaf
+        private final int[][] rowsStack = new int[MAX_DEPTH + 1][Gameboard.GAMEBOARD_ALLROWS];
+        private final int[][] heightsStack = new int[MAX_DEPTH + 1][Gameboard.GAMEBOARD_COLUMNS];
+        private final Tetromino[] searchPieces = new Tetromino[MAX_DEPTH];
+        // legal placements of the piece per depth
+        private final int[][] placementRotations = new int[MAX_DEPTH][MAX_PLACEMENTS];
+        private final int[][] placementMoves = new int[MAX_DEPTH][MAX_PLACEMENTS];
+        private final int[][] placementYs = new int[MAX_DEPTH][MAX_PLACEMENTS];
+        private final float[][] placementScores = new float[MAX_DEPTH][MAX_PLACEMENTS];
+        private final float[] sortedScores = new float[MAX_PLACEMENTS];
+        private final int[] scratchRows = new int[Gameboard.GAMEBOARD_ALLROWS];
+        private final int[] scratchHeights = new int[Gameboard.GAMEBOARD_COLUMNS];
+        // all pieces in spawn position, for the pieces not known yet
+        private final Tetromino[] previewPieces = new Tetromino[Tetromino.TETROMINO_NUMBER];
+        private final Queue<Movement> movements = new Queue<>();
+        private final Queue<Movement> holdMovements = new Queue<>();
+        private final RandomXS128 random = new RandomXS128();
+        private AiProfile profile;
+        private int searchPieceNum;
+        private int knownPieceNum;
+        private int generation;
+        private Tetromino activePiece;
+        private Tetromino nextPiece;
+        private Tetromino holdPiece;
+        private Tetromino holdTetromino;
+        private boolean holdAllowed;
+
+        /**
+         * copies everything the search needs. Called on the match's thread
+         */
+        void init(int generation, Gameboard gameboard, Tetromino activePiece) {
+            this.generation = generation;
+            profile = ArtificialPlayer.this.profile;
+            movements.clear();
+            holdMovements.clear();
+            random.setSeed(ArtificialPlayer.this.random.nextLong());
+
+            for (int y = 0; y < Gameboard.GAMEBOARD_ALLROWS; y++)
+                rowsStack[0][y] = gameboard.getRowMask(y);
+            for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++)
+                heightsStack[0][x] = gameboard.getColumnHeight(x);
+
+            this.activePiece = copyPiece(this.activePiece, activePiece);
+            nextPiece = copyPiece(nextPiece, aiGameModel.getNextTetromino());
+            holdAllowed = aiGameModel.isHoldMoveAllowedByModel();
+            Tetromino hold = holdAllowed ? aiGameModel.getHoldTetromino() : null;
+            if (hold != null)
+                holdPiece = copyPiece(holdPiece, hold);
+            holdTetromino = (hold != null ? holdPiece : null);
+
+            if (profile.depth > 2 && (previewPieces[0] == null || previewPieces[0].isSrs() != activePiece.isSrs())) {
+                for (int type = 0; type < Tetromino.TETROMINO_NUMBER; type++)
+                    previewPieces[type] = new Tetromino(type, activePiece.isSrs());
+            }
+        }
+
+        private Tetromino copyPiece(Tetromino copy, Tetromino piece) {
+            if (copy == null || copy.isSrs() != piece.isSrs())
+                return new Tetromino(piece);
+
+            copy.copyFrom(piece);
+            return copy;
+        }
 
-        AiGameboard(Gameboard gameboard) {
-            int[][] gameboardSquares = gameboard.getGameboardSquares();
-            for (int i = 0; i < Gameboard.GAMEBOARD_ALLROWS; i++) {
-                for (int j = 0; j < Gameboard.GAMEBOARD_COLUMNS; j++) {
-                    fullSquares[i][j] = gameboardSquares[i][j] != Gameboard.SQUARE_EMPTY;
+        boolean isCancelled() {
+            return generation != planGeneration;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!isCancelled())
+                    planMoves();
+            } finally {
+                synchronized (finishedPlannings) {
+                    finishedPlannings.add(this);
                 }
             }
         }
 
-        AiGameboard(AiGameboard gameboard) {
-            for (int y = 0; y < Gameboard.GAMEBOARD_ALLROWS; y++) {
-                for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
-                    fullSquares[y][x] = gameboard.isPositionFull(x, y);
+        private void planMoves() {
+            // we have a new active piece. check how to place it best and add the needed movements to
+            // the movement queue
+
+            // future AI improvement possibilities:
+            // - take waiting garbage into account by adding it to board for next piece, but not for clears (when modern)
+            // - go for singles after a certain height is reached
+            // - at the moment, line clears are not considered on their own but for all next pieces together - improve
+
+            float bestScore = Float.NEGATIVE_INFINITY;
+
+            knownPieceNum = 0;
+            searchPieces[knownPieceNum++] = activePiece;
+            searchPieces[knownPieceNum++] = nextPiece;
+            initSearchPieceNum();
+
+            bestScore = checkAllRotationsAndDropPlaces(0, bestScore, movements);
+
+            if (holdAllowed && !isCancelled()) {
+                // compare found best movement with hold piece
+                knownPieceNum = 0;
+                if (holdTetromino != null) {
+                    searchPieces[knownPieceNum++] = holdTetromino;
+                }
+                searchPieces[knownPieceNum++] = nextPiece;
+                initSearchPieceNum();
+
+                float holdMoveScore = checkAllRotationsAndDropPlaces(0, bestScore, holdMovements);
+
+                if (holdMoveScore > bestScore) {
+                    Gdx.app.debug("AI", "Hold the piece");
+                    movements.clear();
+                    movements.addFirst(Movement.HOLD);
+                    while (holdMovements.notEmpty())
+                        movements.addLast(holdMovements.removeFirst());
                 }
             }
         }
 
-        boolean isPositionFull(int x, int y) {
-            return fullSquares[y][x];
+        /**
+         * the known pieces are placed up to the profile's depth, the pieces after the next one are unknown
+         */
+        private void initSearchPieceNum() {
+            knownPieceNum = Math.min(knownPieceNum, profile.depth);
+            searchPieceNum = knownPieceNum + Math.max(0, profile.depth - 2);
         }
 
-        boolean isValidCoordinate(int x, int y) {
-            if (x < 0 || x >= Gameboard.GAMEBOARD_COLUMNS) {
-                return false;
+        private float checkAllRotationsAndDropPlaces(int depth, float overallBestScore, Queue<Movement> movementArrayList) {
+            Tetromino activePiece = searchPieces[depth];
+            boolean isLeaf = (depth == searchPieceNum - 1);
+            int placementNum = findPlacements(depth, activePiece);
+            float beamScore = (isLeaf ? Float.NEGATIVE_INFINITY : rateForBeam(depth, activePiece, placementNum));
+            int[] rotations = placementRotations[depth];
+            int[] moves = placementMoves[depth];
+            int[] ys = placementYs[depth];
+            int spawnX = (int) activePiece.getPosition().x;
+            int bestRotation = 0;
+            int bestHorizontalMove = 0;
+            float bestScore = Float.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < placementNum; i++) {
+                // the piece changed in the meantime, the result won't be used
+                if (depth == 0 && isCancelled())
+                    return Float.NEGATIVE_INFINITY;
+                if (placementScores[depth][i] < beamScore)
+                    continue;
+
+                int rotation = rotations[i];
+                int horizontalMove = moves[i];
+                // pretend to pin the tetromino at its drop position
+                placePiece(depth, activePiece, rotation, spawnX + horizontalMove, ys[i]);
+
+                float score;
+                if (isLeaf) {
+                    score = calculateScoreOfPosition(rowsStack[depth + 1], heightsStack[depth + 1]);
+                } else {
+                    score = checkNextPiece(depth + 1);
+                }
+
+                if (score > bestScore ||
+                        // if we found an equal score, use it to prevent a left-hang
+                        MathUtils.isEqual(score, bestScore) && random.nextBoolean()
+                                // but avoid unnecessary rotations
+                                && bestHorizontalMove != horizontalMove) {
+                    bestRotation = rotation;
+                    bestHorizontalMove = horizontalMove;
+                    bestScore = score;
+                }
             }
 
-            if (y < 0 || y >= Gameboard.GAMEBOARD_ALLROWS) {
-                return false;
+
+            // now we found the best position, add the necessary movements to the queue
+            if (movementArrayList != null && bestScore > overallBestScore) {
+                if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG)
+                    Gdx.app.debug("AI", "Move: h " + bestHorizontalMove + ", rotate " + bestRotation);
+                movementArrayList.clear();
+
+                switch (bestRotation) {
+                    case 2:
+                        movementArrayList.addLast(Movement.ROTATE_RIGHT);
+                        movementArrayList.addLast(Movement.ROTATE_RIGHT);
+                        break;
+                    case 1:
+                        movementArrayList.addLast(Movement.ROTATE_RIGHT);
+                        break;
+                    case 3:
+                        movementArrayList.addLast(Movement.ROTATE_LEFT);
+                        break;
+                }
+
+                for (int i = 0; i < Math.abs(bestHorizontalMove); i++) {
+                    movementArrayList.addLast(bestHorizontalMove < 0 ? Movement.MOVE_LEFT : Movement.MOVE_RIGHT);
+                }
+
+                movementArrayList.addLast(Movement.DROP);
             }
 
-            return (!isPositionFull(x, y));
+            return bestScore;
         }
 
-        public boolean isValidPosition(Tetromino tetromino, Vector2 testPosition, int testRotation) {
-            for (Vector2 v : tetromino.getRotationVectors(testRotation)) {
-                int posX = ((int) v.x + (int) testPosition.x);
-                int posY = ((int) v.y + (int) testPosition.y);
+        /**
+         * pieces not known yet are rated with the average of the best placements of all pieces
+         */
+        private float checkNextPiece(int depth) {
+            if (depth < knownPieceNum)
+                return checkAllRotationsAndDropPlaces(depth, 0, null);
+
+            float scoreSum = 0;
+            for (int type = 0; type < Tetromino.TETROMINO_NUMBER; type++) {
+                searchPieces[depth] = previewPieces[type];
+                scoreSum = scoreSum + checkAllRotationsAndDropPlaces(depth, 0, null);
+            }
+            return scoreSum / Tetromino.TETROMINO_NUMBER;
+        }
 
-                if (!isValidCoordinate(posX, posY)) {
-                    return false;
+        /**
+         * finds all rotations and drop places. Only horizontal moves keeping the piece inside the
+         * board are tried
+         *
+         * @return number of placements
+         */
+        private int findPlacements(int depth, Tetromino activePiece) {
+            int[] rows = rowsStack[depth];
+            int[] heights = heightsStack[depth];
+            int spawnX = (int) activePiece.getPosition().x;
+            int spawnY = (int) activePiece.getPosition().y;
+            int placementNum = 0;
+
+            for (int rotation = 0; rotation < 4; rotation++) {
+                if (!activePiece.hasRotation(rotation))
+                    continue;
+
+                int[] pieceRows = activePiece.getRowMasks(rotation);
+                int minMove = Math.max(-Gameboard.GAMEBOARD_COLUMNS, -activePiece.getMinX(rotation) - spawnX);
+                int maxMove = Math.min(Gameboard.GAMEBOARD_COLUMNS,
+                        Gameboard.GAMEBOARD_COLUMNS - 1 - activePiece.getMaxX(rotation) - spawnX);
+
+                for (int horizontalMove = minMove; horizontalMove <= maxMove; horizontalMove++) {
+                    int x = spawnX + horizontalMove;
+                    if (!Gameboard.isValidPosition(rows, pieceRows, x, spawnY))
+                        continue;
+
+                    placementRotations[depth][placementNum] = rotation;
+                    placementMoves[depth][placementNum] = horizontalMove;
+                    placementYs[depth][placementNum] = spawnY - Gameboard.getDropDistance(rows, heights, activePiece, rotation, x, spawnY);
+                    placementScores[depth][placementNum] = 0;
+                    placementNum++;
                 }
             }
 
-            return true;
+            return placementNum;
         }
 
-        void setPosition(int x, int y, boolean full) {
-            fullSquares[y][x] = full;
+        /**
+         * rates the placements of the depth on their own if the profile limits the placements to follow
+         *
+         * @return the lowest rating of the placements to follow
+         */
+        private float rateForBeam(int depth, Tetromino activePiece, int placementNum) {
+            int beamWidth = profile.beamWidth;
+            if (beamWidth <= 0 || placementNum <= beamWidth)
+                return Float.NEGATIVE_INFINITY;
+
+            int spawnX = (int) activePiece.getPosition().x;
+            for (int i = 0; i < placementNum; i++) {
+                placePiece(depth, activePiece, placementRotations[depth][i], spawnX + placementMoves[depth][i],
+                        placementYs[depth][i]);
+                System.arraycopy(rowsStack[depth + 1], 0, scratchRows, 0, Gameboard.GAMEBOARD_ALLROWS);
+                System.arraycopy(heightsStack[depth + 1], 0, scratchHeights, 0, Gameboard.GAMEBOARD_COLUMNS);
+                float score = calculateScoreOfPosition(scratchRows, scratchHeights);
+                placementScores[depth][i] = score;
+                sortedScores[i] = score;
+            }
+
+            Arrays.sort(sortedScores, 0, placementNum);
+            return sortedScores[placementNum - beamWidth];
         }
 
-        int clearFullLines() {
-            int fullLines = 0;
-            for (int y = Gameboard.GAMEBOARD_ALLROWS - 1; y >= 0; y--) {
-                boolean hasBlank = false;
-                for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS && !hasBlank; x++) {
-                    if (!isPositionFull(x, y))
-                        hasBlank = true;
-                }
-                if (!hasBlank) {
-                    fullLines++;
-
-                    // move everything down
-                    for (int y2 = y; y2 < Gameboard.GAMEBOARD_ALLROWS; y2++) {
-                        for (int x = 0; x < Gameboard.GAMEBOARD_COLUMNS; x++) {
-                            if (y2 < Gameboard.GAMEBOARD_ALLROWS - 1) {
-                                fullSquares[y2][x] = fullSquares[y2 + 1][x];
-                            } else {
-                                fullSquares[y2][x] = false;
-
-                            }
-                        }
-                    }
-                }
+        /**
+         * copies the board of the depth to the next one and pins the piece there. The column heights
+         * are updated incrementally
+         */
+        private void placePiece(int depth, Tetromino piece, int rotation, int x, int y) {
+            int[] rows = rowsStack[depth + 1];
+            int[] heights = heightsStack[depth + 1];
+            System.arraycopy(rowsStack[depth], 0, rows, 0, Gameboard.GAMEBOARD_ALLROWS);
+            System.arraycopy(heightsStack[depth], 0, heights, 0, Gameboard.GAMEBOARD_COLUMNS);
+
+            int[] pieceRows = piece.getRowMasks(rotation);
+            for (int row = 0; row < pieceRows.length; row++) {
+                if (pieceRows[row] != 0)
+                    rows[y + row] = rows[y + row] | (x >= 0 ? pieceRows[row] << x : pieceRows[row] >>> -x);
             }
 
-            return fullLines;
+            int[] columnTops = piece.getColumnTops(rotation);
+            for (int column = 0; column < columnTops.length; column++) {
+                if (columnTops[column] != Tetromino.NO_BLOCK)
+                    heights[x + column] = Math.max(heights[x + column], y + columnTops[column] + 1);
+            }
         }
 
-        public int getColumnHeight(int x) {
-            int y = Gameboard.GAMEBOARD_ALLROWS;
-            while (y > 0 && !isPositionFull(x, y - 1))
-                y--;
-            return y;
+        private float calculateScoreOfPosition(int[] rows, int[] heights) {
+
+            // calculate the different dimensions
+            int completedLines = clearFullLines(rows);
+            if (completedLines > 0)
+                Gameboard.calcColumnHeights(rows, heights);
+
+            float completedLinesVal;
+            if (completedLines == 1) {
+                // we don't want to go for single lines, but they are rewarded because of lower height
+                // of 10. So counterbalance this here
+                completedLinesVal = -10;
+            } else {
+                completedLinesVal = Math.max(0, (completedLines - 1) * (completedLines - 1));
+            }
+
+            float aggregatedHeight = aggregateWeightedHeight(heights);
+            float countHoles = countHoles(rows, heights);
+            int bumpiness = computeBumpiness(heights);
+
+            return -profile.heightFactor * aggregatedHeight + profile.completeLinesFactor * completedLinesVal
+                    - profile.holesFactor * countHoles - profile.bumpinessFactor * bumpiness;
         }
     }
+
+    enum Movement {MOVE_LEFT, MOVE_RIGHT, ROTATE_LEFT, ROTATE_RIGHT, DROP, HOLD}
 }
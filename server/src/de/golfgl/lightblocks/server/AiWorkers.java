@@ -0,0 +1,66 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads the AI players of all matches plan their moves on, so the search does not stall the
+ * match ticks. The queue is bounded: when it is full, the planning runs on the submitting tick
+ * worker like it would without the pool.
+ */
+class AiWorkers extends ThreadPoolExecutor {
+    static final int QUEUE_SIZE_PER_THREAD = 32;
+
+    private final Metrics metrics;
+
+    AiWorkers(int threadNum, final Metrics metrics) {
+        super(threadNum, threadNum, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threadNum * QUEUE_SIZE_PER_THREAD));
+        this.metrics = metrics;
+
+        setThreadFactory(new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                AiThread thread = new AiThread(r, "AI" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        setRejectedExecutionHandler(new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                if (executor.isShutdown())
+                    return;
+
+                metrics.aiPlansOnTick.inc();
+                r.run();
+            }
+        });
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        ((AiThread) t).startNanos = TimeUtils.nanoTime();
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        metrics.aiWorkerTime.observeNanos(TimeUtils.nanoTime() - ((AiThread) Thread.currentThread()).startNanos);
+    }
+
+    private static class AiThread extends Thread {
+        private long startNanos;
+
+        AiThread(Runnable r, String name) {
+            super(r, name);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package de.golfgl.lightblocks.server;
+
+import java.nio.ByteBuffer;
+
+import de.golfgl.lightblocks.server.model.InGameMessage;
+
+/**
+ * Compact binary encoding of the in-game messages, used for players that request it in their
+ * PlayerInfo. The server reports the supported version in ServerInfo.
+ * <p>
+ * Every binary message starts with an opcode byte. Events of the opponent's game model have the
+ * {@link #FLAG_OTHER} bit set, that's the "O" prefix of the text protocol. Positions, distances
+ * and counts are single signed bytes. Rarely sent messages (match information, motivations and
+ * general messages) are always sent as text.
+ * <p>
+ * Must be kept in sync with the client's de.golfgl.lightblocks.multiplayer.BinaryProtocol
+ */
+class BinaryProtocol {
+    static final int VERSION = 1;
+
+    static final byte FLAG_OTHER = (byte) 0x80;
+
+    // server to client: game model events
+    static final byte MOVE = 1;             // dx, dy, ghost distance
+    static final byte ROTATE = 2;           // 4 block positions, ghost distance
+    static final byte CLEAR_INSERT = 3;     // line num, lines, special, gap num, gaps
+    static final byte GAME_OVER = 4;        // won
+    static final byte NEXT = 5;             // 4 relative block positions, block type
+    static final byte ACTIVATE_NEXT = 6;    // 4 block positions, block type, ghost distance
+    static final byte SWAP_HOLD = 7;        // 4 hold block positions, ghost distance, has active [, 4 active block positions]
+    static final byte PIN = 8;
+    static final byte SCORE = 9;            // score, level, lines as int
+    static final byte CONFLICT = 10;        // x, y
+    static final byte GARBAGE = 11;         // lines
+    // batch of messages sent in one frame: u16 length, message, u16 length, message...
+    static final byte BATCH = 0x7f;
+    // same as BATCH, but FLAG_OTHER of every message has to be inverted
+    static final byte BATCH_MIRRORED = 0x7e;
+
+    /**
+     * client to server: one opcode byte per input, see InGameMessage.INPUT_*
+     *
+     * @return the (shared) in game message for the input opcode, or null if the opcode is unknown
+     */
+    static InGameMessage decodeInput(byte opcode) {
+        return InGameMessage.fromInput(opcode);
+    }
+
+    static void writePositions(ByteBuffer buffer, Integer[][] positions) {
+        for (Integer[] position : positions) {
+            buffer.put(position[0].byteValue()).put(position[1].byteValue());
+        }
+    }
+}
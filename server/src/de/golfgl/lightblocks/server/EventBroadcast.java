@@ -0,0 +1,208 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.utils.BooleanArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.java_websocket.WebSocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fan-out of the game events of a match to its subscribers. Every event is encoded only once per
+ * protocol, from the view of player 1, into buffers that are reused for every tick. Subscribers
+ * enqueue the event numbers and get views of the encoded events when their queue is sent. For the
+ * mirrored view of player 2, "Y" and "O" are swapped and the binary FLAG_OTHER is inverted in place.
+ * <p>
+ * Only used by the tick worker of the match.
+ */
+class EventBroadcast {
+    private static final int ENCODING_NONE = 0;
+    private static final int ENCODING_TEXT = 1;
+    private static final int ENCODING_BINARY = 2;
+
+    // binary events with length prefix. The first byte is kept free for the batch opcode
+    private ByteBuffer binary = ByteBuffer.allocate(2048);
+    private ByteBuffer binaryView = binary.duplicate();
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder textFrame = new StringBuilder();
+    // per event: position of the binary length prefix and text range, -1 if not encoded
+    private final IntArray binaryPositions = new IntArray();
+    private final IntArray textStarts = new IntArray();
+    private final IntArray textEnds = new IntArray();
+    private final BooleanArray firstModel = new BooleanArray();
+    private int binaryStart = -1;
+    private int textStart = -1;
+    private int tick;
+    private final Metrics metrics;
+
+    EventBroadcast(Metrics metrics) {
+        this.metrics = metrics;
+        binary.position(1);
+    }
+
+    /**
+     * @return number of the current tick. Events enqueued in earlier ticks are not available anymore
+     */
+    int getTick() {
+        return tick;
+    }
+
+    /**
+     * @return number of events published in the current tick
+     */
+    int getEventNum() {
+        return firstModel.size;
+    }
+
+    /**
+     * starts the text encoding of the next event
+     *
+     * @return builder to append the event to, without Y/O prefix
+     */
+    StringBuilder startText() {
+        textStart = text.length();
+        return text;
+    }
+
+    /**
+     * starts the binary encoding of the next event
+     *
+     * @return buffer to write the event to, opcode is already written
+     */
+    ByteBuffer startBinary(byte opcode) {
+        if (binary.remaining() < 256) {
+            ByteBuffer grown = ByteBuffer.allocate(binary.capacity() * 2);
+            binary.flip();
+            grown.put(binary);
+            binary = grown;
+            binaryView = binary.duplicate();
+        }
+        binaryStart = binary.position();
+        binary.putShort((short) 0);
+        binary.put(opcode);
+        return binary;
+    }
+
+    /**
+     * completes the event encoded after startText and startBinary
+     *
+     * @param first true if the event belongs to the game model of player 1
+     * @return number of the event, or -1 if nothing was encoded
+     */
+    int publish(boolean first) {
+        if (binaryStart < 0 && textStart < 0)
+            return -1;
+
+        if (binaryStart >= 0) {
+            binary.putShort(binaryStart, (short) (binary.position() - binaryStart - 2));
+            if (!first)
+                toggleOther(binaryStart + 2);
+        }
+        binaryPositions.add(binaryStart);
+        textStarts.add(textStart);
+        textEnds.add(textStart >= 0 ? text.length() : -1);
+        firstModel.add(first);
+        binaryStart = -1;
+        textStart = -1;
+        return firstModel.size - 1;
+    }
+
+    /**
+     * drops all events, called after every subscriber's queue was sent
+     */
+    void clear() {
+        binary.clear();
+        binary.position(1);
+        text.setLength(0);
+        binaryPositions.clear();
+        textStarts.clear();
+        textEnds.clear();
+        firstModel.clear();
+        binaryStart = -1;
+        textStart = -1;
+        tick++;
+    }
+
+    /**
+     * sends the events firstEvent to lastEvent to a subscriber. Binary subscribers get events without
+     * binary encoding as text.
+     *
+     * @param mirrored true for the view of player 2
+     * @param batched  true if the subscriber supports batched frames
+     */
+    void send(WebSocket conn, int firstEvent, int lastEvent, boolean mirrored, boolean binaryProtocol, boolean batched) {
+        int event = firstEvent;
+        while (event <= lastEvent) {
+            int encoding = getEncoding(event, binaryProtocol);
+            int runEnd = event;
+            if (batched) {
+                while (runEnd < lastEvent && getEncoding(runEnd + 1, binaryProtocol) == encoding)
+                    runEnd++;
+            }
+
+            if (encoding == ENCODING_BINARY)
+                sendBinary(conn, event, runEnd, mirrored);
+            else if (encoding == ENCODING_TEXT)
+                sendText(conn, event, runEnd, mirrored);
+
+            event = runEnd + 1;
+        }
+    }
+
+    private int getEncoding(int event, boolean binaryProtocol) {
+        if (binaryProtocol && binaryPositions.get(event) >= 0)
+            return ENCODING_BINARY;
+        else if (textStarts.get(event) >= 0)
+            return ENCODING_TEXT;
+        else
+            return ENCODING_NONE;
+    }
+
+    private void sendBinary(WebSocket conn, int firstEvent, int lastEvent, boolean mirrored) {
+        int lastPos = binaryPositions.get(lastEvent);
+        int end = lastPos + 2 + (binary.getShort(lastPos) & 0xffff);
+
+        // send() copies the payload into the frame, so the buffer is changed in place and restored afterwards
+        if (firstEvent == lastEvent) {
+            int start = lastPos + 2;
+            if (mirrored)
+                toggleOther(start);
+            sendBinaryView(conn, start, end);
+            if (mirrored)
+                toggleOther(start);
+        } else {
+            // the byte in front of the events is kept free or belongs to the previous event
+            int start = binaryPositions.get(firstEvent) - 1;
+            byte previous = binary.get(start);
+            binary.put(start, mirrored ? BinaryProtocol.BATCH_MIRRORED : BinaryProtocol.BATCH);
+            sendBinaryView(conn, start, end);
+            binary.put(start, previous);
+        }
+    }
+
+    private void sendBinaryView(WebSocket conn, int start, int end) {
+        binaryView.limit(end);
+        binaryView.position(start);
+        metrics.frameSent(end - start);
+        conn.send(binaryView);
+    }
+
+    private void toggleOther(int opcodePos) {
+        binary.put(opcodePos, (byte) (binary.get(opcodePos) ^ BinaryProtocol.FLAG_OTHER));
+    }
+
+    private void sendText(WebSocket conn, int firstEvent, int lastEvent, boolean mirrored) {
+        textFrame.setLength(0);
+        if (firstEvent != lastEvent)
+            textFrame.append(Serializer.ID_BATCH);
+
+        for (int event = firstEvent; event <= lastEvent; event++) {
+            if (event != firstEvent)
+                textFrame.append(Serializer.BATCH_SEPARATOR);
+            textFrame.append(firstModel.get(event) != mirrored ? 'Y' : 'O')
+                    .append(text, textStarts.get(event), textEnds.get(event));
+        }
+        metrics.frameSent(Metrics.utf8Length(textFrame));
+        conn.send(textFrame.toString());
+    }
+}
@@ -0,0 +1,65 @@
+package de.golfgl.lightblocks.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.golfgl.lightblocks.server.model.InGameMessage;
+
+/**
+ * Bounded ring buffer of the game input opcodes of a player slot, handed from the WebSocket thread
+ * receiving the player's messages to the match's tick worker. There must be one producer and one
+ * consumer at a time, adding and removing inputs doesn't allocate.
+ * <p>
+ * The read and write positions are kept on cache lines of their own, so producer and consumer
+ * don't invalidate each other's line on every input.
+ */
+class InputQueue {
+    static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+    // longs per 64 byte cache line, the positions are two lines apart from each other and the array header
+    private static final int PADDING = 8;
+    private static final int HEAD = 2 * PADDING;
+    private static final int TAIL = 4 * PADDING;
+
+    private final int[] inputs = new int[CAPACITY];
+    // HEAD: next position to read, only written by the consumer. TAIL: next position to write,
+    // only written by the producer
+    private final AtomicLongArray positions = new AtomicLongArray(6 * PADDING);
+    // the producer's last seen read position, it only has to look again when the queue seems full
+    private long headCache;
+
+    /**
+     * @return false if the queue is full and the input was dropped
+     */
+    boolean offer(int input) {
+        long writePos = positions.get(TAIL);
+        if (writePos - headCache >= CAPACITY) {
+            headCache = positions.get(HEAD);
+            if (writePos - headCache >= CAPACITY)
+                return false;
+        }
+
+        inputs[(int) writePos & MASK] = input;
+        positions.lazySet(TAIL, writePos + 1);
+        return true;
+    }
+
+    /**
+     * @return the oldest input, or {@link InGameMessage#INPUT_NONE} if the queue is empty
+     */
+    int poll() {
+        long readPos = positions.get(HEAD);
+        if (readPos >= positions.get(TAIL))
+            return InGameMessage.INPUT_NONE;
+
+        int input = inputs[(int) readPos & MASK];
+        positions.lazySet(HEAD, readPos + 1);
+        return input;
+    }
+
+    /**
+     * drops all queued inputs. Called by the consumer
+     */
+    void clear() {
+        positions.lazySet(HEAD, positions.get(TAIL));
+    }
+}
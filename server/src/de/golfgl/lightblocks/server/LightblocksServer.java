@@ -5,44 +5,128 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.backends.headless.HeadlessApplication;
 import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
 import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
-import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.JsonWriter;
-import com.badlogic.gdx.utils.Queue;
-import com.badlogic.gdx.utils.TimeUtils;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.jmdns.JmDNS;
 import javax.jmdns.ServiceInfo;
 
 import de.golfgl.lightblocks.server.model.ServerInfo;
+import de.golfgl.lightblocks.state.InitGameParameters;
 
 public class LightblocksServer extends WebSocketServer implements ApplicationListener {
     public static final int SERVER_VERSION = 2112; // reported to the clients, don't mess with it
     public static final int STATS_AGGREGATION_TIME_HRS = 24;
 
     final ServerConfiguration serverConfig;
-    final Serializer serializer = new Serializer();
+    final Metrics metrics = new Metrics();
+    final Serializer serializer = new Serializer(metrics);
     final ServerStats serverStats = new ServerStats();
+    final TickLatency tickLatency = new TickLatency();
+    private final MetricsEndpoint metricsEndpoint = new MetricsEndpoint(metrics);
     private final ServerInfo serverInfo;
-    private final Match[] matches;
-    private final Queue<Player> playerToConnectQueue = new Queue<>();
-    private boolean running = true;
+    private final MatchScheduler matchScheduler;
+    // null if the AI plans on the tick workers
+    final AiWorkers aiWorkers;
+    private final MatchPool matchPool;
+    private final Array<Match> matches = new Array<>();
+    // private rooms by their lower case name, maintained by the matches
+    final ConcurrentHashMap<String, Match> rooms = new ConcurrentHashMap<>();
+    // matches by the session tokens of their players, maintained by the matches
+    final ConcurrentHashMap<String, Match> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final Matchmaker matchmaker = new Matchmaker(this);
     private JmDNS jmdns;
 
     public LightblocksServer(InetSocketAddress address, ServerConfiguration serverConfiguration) {
         super(address, Math.max(1, serverConfiguration.threadNum / 2), null);
         this.serverConfig = serverConfiguration;
         this.serverInfo = serverConfiguration.getServerInfo();
-        this.matches = new Match[serverConfig.threadNum - 1];
+        this.matchScheduler = new MatchScheduler(this, serverConfig.threadNum - 1);
+        this.matchPool = new MatchPool(this, serverConfig.matchPoolMax);
+        this.aiWorkers = serverConfig.aiThreadNum > 0 ? new AiWorkers(serverConfig.aiThreadNum, metrics) : null;
+        addGauges();
+    }
+
+    private void addGauges() {
+        metrics.gauge("players_connected", "Players connected to a match", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return serverStats.getPlayersCurrentlyConnected();
+            }
+        });
+        metrics.gauge("players_waiting", "Players in the matchmaking queue", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return matchmaker.getQueueDepth();
+            }
+        });
+        metrics.gauge("connections", "Open WebSocket connections", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return getConnections().size();
+            }
+        });
+        metrics.gauge("matches_scheduled", "Matches driven by the tick workers", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return matchScheduler.getScheduledMatchNum();
+            }
+        });
+        metrics.gauge("matches_pooled", "Released matches kept for reuse", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return matchPool.getFree();
+            }
+        });
+        metrics.gauge("ai_plans_queued", "AI plannings waiting for an AI worker", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return aiWorkers != null ? aiWorkers.getQueue().size() : 0;
+            }
+        });
+        metrics.gauge("match_tick_p50_seconds", "Median match update duration of the last 30 to 60 seconds", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return tickLatency.getPercentile(.5f) / 1000000000.0;
+            }
+        });
+        metrics.gauge("match_tick_p99_seconds", "99th percentile match update duration of the last 30 to 60 seconds", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return tickLatency.getPercentile(.99f) / 1000000000.0;
+            }
+        });
+        metrics.gauge("match_tick_max_seconds", "Longest match update of the last 30 to 60 seconds", new Metrics.Gauge() {
+            @Override
+            public double get() {
+                return tickLatency.getMax() / 1000000000.0;
+            }
+        });
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            metrics.gauge("process_cpu_seconds", "CPU time used by the server process", new Metrics.Gauge() {
+                @Override
+                public double get() {
+                    return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() / 1000000000.0;
+                }
+            });
+        }
     }
 
     public static void main(String[] arg) {
@@ -53,7 +137,10 @@ public class LightblocksServer extends WebSocketServer implements ApplicationLis
         new HeadlessApplication(server, config) {
             @Override
             public void exit() {
-                server.running = false;
+                server.matchScheduler.stop();
+                if (server.aiWorkers != null)
+                    server.aiWorkers.shutdownNow();
+                server.metricsEndpoint.stop();
                 // Unregister all services
                 if (server.jmdns != null) {
                     server.jmdns.unregisterAllServices();
@@ -72,47 +159,11 @@ public class LightblocksServer extends WebSocketServer implements ApplicationLis
     }
 
     private void startThreads() {
-        // thread 1 was started by HeadlessApplication - start up the other threads
-        final long renderInterval = ((MockGraphics) Gdx.graphics).getTargetRenderInterval();
-        for (int i = 1; i < serverConfig.threadNum; i++) {
-            final int threadNum = i;
-            matches[i - 1] = new Match(this);
-            new Thread("Render" + i) {
-                @Override
-                public void run() {
-                    try {
-                        long lastTime = TimeUtils.nanoTime();
-                        long nextTime = TimeUtils.nanoTime() + renderInterval;
-                        if (renderInterval >= 0f) {
-                            while (running) {
-                                final long n = TimeUtils.nanoTime();
-                                if (nextTime > n) {
-                                    try {
-                                        long sleep = nextTime - n;
-                                        Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
-                                    } catch (InterruptedException ignored) {
-                                    }
-                                    nextTime = nextTime + renderInterval;
-                                } else {
-                                    nextTime = n + renderInterval;
-                                }
-
-                                long now = System.nanoTime();
-                                float deltaTime = (now - lastTime) / 1000000000.0f;
-                                lastTime = now;
-
-                                renderThread(threadNum, deltaTime);
-                            }
-                        }
-                    } catch (Throwable t) {
-                        if (t instanceof RuntimeException)
-                            throw (RuntimeException) t;
-                        else
-                            throw new GdxRuntimeException(t);
-                    }
-                }
-            }.start();
-        }
+        // thread 1 was started by HeadlessApplication - start up the tick workers driving the matches
+        final long tickInterval = ((MockGraphics) Gdx.graphics).getTargetRenderInterval();
+        matchScheduler.start(tickInterval);
+        Gdx.app.log("Server", "Started " + matchScheduler.getWorkerNum() + " tick worker(s), "
+                + serverConfig.aiThreadNum + " AI worker(s).");
     }
 
     @Override
@@ -124,6 +175,9 @@ public class LightblocksServer extends WebSocketServer implements ApplicationLis
     public void onStart() {
         Gdx.app.log("Server", "server started successfully, listening on port " + getPort());
 
+        if (serverConfig.metricsPort > 0)
+            metricsEndpoint.start(serverConfig.metricsPort);
+
         if (serverConfig.enableNsd) {
             try {
                 jmdns = JmDNS.create(InetAddress.getLocalHost());
@@ -148,7 +202,8 @@ public class LightblocksServer extends WebSocketServer implements ApplicationLis
     public void render() {
         // update game state here
         try {
-            connectWaitingPlayers();
+            matchmaker.connectWaitingPlayers();
+            tickLatency.rotate();
 
             serverStats.outputAndResetAfter(60 * 60 * STATS_AGGREGATION_TIME_HRS);
         } catch (Throwable t) {
@@ -156,96 +211,151 @@ public class LightblocksServer extends WebSocketServer implements ApplicationLis
         }
     }
 
-    public void renderThread(int thread, float delta) {
-        try {
-            // update corresponding game model
-            // Gdx.app.debug("Match" + thread, "update with delta " + delta);
-            matches[thread - 1].update(delta);
-        } catch (Throwable t) {
-            Gdx.app.error("Server", "Uncaught error ", t);
-        }
+    /**
+     * enqueues the player to the waitlist. Matchmaker will call addPlayerToMatch eventually
+     *
+     * @return false if the player can't be added to a match on this server
+     */
+    public boolean enqueueToFindMatchForPlayer(Player player) {
+        if (!matchmaker.enqueue(player))
+            return false;
+
+        player.sendMessageToPlayer("Matchmaking...");
+        return true;
     }
 
-    public void enqueueToFindMatchForPlayer(Player player) {
-        synchronized (playerToConnectQueue) {
-            // enqueue the player to the waitlist
-            playerToConnectQueue.addLast(player);
-            player.sendMessageToPlayer("Matchmaking...");
+    boolean connectPlayerToPrivateRoom(Player player) {
+        // is there a room with the name?
+        Match match = rooms.get(Match.getRoomKey(player.roomName));
+        if (match != null) {
+            if (match.checkIfPlayerFitsMatch(player) && match.connectPlayer(player)) {
+                Gdx.app.log("Server", "Connected " + player.nickName + " to room on match " + match.matchId);
+                return true;
+            }
+            if (!player.roomFailureLogged) {
+                Gdx.app.log("Server", "Room requested by " + player.nickName + " not connected, waiting.");
+                player.roomFailureLogged = true;
+            }
+            return false;
         }
+
+        // room does not exist yet, assign a fitting and empty match
+        match = connectToEmptyMatch(player, player.roomName);
+        if (match != null) {
+            Gdx.app.log("Server", "Created room and connected " + player.nickName + " on match " + match.matchId);
+            return true;
+        }
+        return false;
     }
 
-    private void connectWaitingPlayers() {
-        synchronized (playerToConnectQueue) {
-            if (playerToConnectQueue.isEmpty())
-                return;
+    /**
+     * reconnects the player to the match of its dropped session
+     *
+     * @return false if the session doesn't exist anymore
+     */
+    boolean resumeSession(Player player, String token, int matchInfoVersion) {
+        Match match = sessions.get(token);
+        if (match != null && match.resumePlayer(player, token, matchInfoVersion)) {
+            Gdx.app.log("Server", "Resumed session of " + player.nickName + " on match " + match.matchId);
+            return true;
+        }
+        Gdx.app.log("Server", "Session of " + player.nickName + " not resumable.");
+        return false;
+    }
 
-            Player first = playerToConnectQueue.first();
-            if (first.state != Player.ConnectionState.WAITING) {
-                playerToConnectQueue.removeFirst();
-                Gdx.app.log("Server", "Removed player in state " + first.state + " from connect queue");
-                return;
-            }
+    String createSessionToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            token.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return token.toString();
+    }
 
-            boolean connected;
-            if (serverInfo.privateRooms && first.roomName != null) {
-                // connect to a private room
-                connected = connectPlayerToPrivateRoom(first);
-
-            } else {
-                // try to connect to occupied matches first...
-                connected = connectWaitingPlayer(first, false);
-                //... if not successful, use empty matches
-                if (!connected)
-                    connected = connectWaitingPlayer(first, true);
+    /**
+     * adds the player as a spectator to a private room or a public match
+     */
+    void spectateMatch(Player player, String roomName, int matchId) {
+        Match match = null;
+        if (roomName != null) {
+            if (serverInfo.privateRooms)
+                match = rooms.get(Match.getRoomKey(roomName));
+        } else synchronized (matches) {
+            for (int i = 0; i < matches.size && match == null; i++) {
+                if (matches.get(i).matchId == matchId && matches.get(i).getRoomName() == null)
+                    match = matches.get(i);
             }
-
-            if (connected)
-                playerToConnectQueue.removeFirst();
         }
+
+        if (match == null || !match.addSpectator(player))
+            Gdx.app.log("Server", "Match to spectate requested by " + player.nickName + " not available.");
     }
 
-    private boolean connectPlayerToPrivateRoom(Player player) {
-        boolean connected = false;
-        // is there a room with the name?
-        int roomNum = -1;
-        for (int i = 1; i < serverConfig.threadNum; i++) {
-            if (!connected && roomNum < 0 && player.roomName.equalsIgnoreCase(matches[i - 1].roomName)) {
-                roomNum = i - 1;
-                if (matches[i - 1].checkIfPlayerFitsMatch(player) && matches[i - 1].connectPlayer(player)) {
-                    Gdx.app.log("Server", "Connected " + player.nickName + " to room on match " + i);
-                    connected = true;
-                } else {
-                    Gdx.app.log("Server", "Room requested by " + player.nickName + " not connected.");
+    /**
+     * collects all public matches with one connected player, by their game mode
+     */
+    void findOpenMatches(Array<Match> openClassicMatches, Array<Match> openModernMatches) {
+        synchronized (matches) {
+            for (int i = 0; i < matches.size; i++) {
+                Match match = matches.get(i);
+                if (match.getConnectedPlayerNum() == 1 && match.getRoomName() == null) {
+                    if (match.getModeType() == InitGameParameters.TYPE_MODERN)
+                        openModernMatches.add(match);
+                    else
+                        openClassicMatches.add(match);
                 }
             }
         }
+    }
 
-        if (!connected && roomNum < 0) {
-            // room does not exist yet, assign a fitting and empty room
-            for (int i = 1; i < serverConfig.threadNum; i++) {
-                if (!connected && matches[i - 1].getConnectedPlayerNum() == 0
-                        && matches[i - 1].checkIfPlayerFitsMatch(player)
-                        && matches[i - 1].connectPlayer(player)) {
-                    Gdx.app.log("Server", "Created room and connected " + player.nickName + " on match " + i);
-                    matches[i - 1].roomName = player.roomName;
-                    connected = true;
+    /**
+     * connects the player to an empty match. An idle match is reused if one is left over, otherwise
+     * one is obtained from the match pool and scheduled.
+     *
+     * @param roomName private room to create with the match, or null for a public match
+     * @return the match the player was connected to, or null if this was not possible
+     */
+    Match connectToEmptyMatch(Player player, String roomName) {
+        synchronized (matches) {
+            for (int i = 0; i < matches.size; i++) {
+                Match match = matches.get(i);
+                // room and player are set under the match's lock, so its tick worker can't clear the room in between
+                synchronized (match) {
+                    if (!match.isIdle() || !match.checkIfPlayerFitsMatch(player))
+                        continue;
+                    if (roomName != null && !match.setRoomName(roomName))
+                        return null;
+                    if (match.connectPlayer(player))
+                        return match;
                 }
             }
+
+            Match match = matchPool.obtain();
+            match.reuse();
+            match.chooseModeTypeFor(player);
+            // the room is set before the match is scheduled, so its tick worker can't clear it before the player is connected
+            if (!match.checkIfPlayerFitsMatch(player) || roomName != null && !match.setRoomName(roomName)
+                    || !match.connectPlayer(player)) {
+                matchPool.free(match);
+                return null;
+            }
+
+            matches.add(match);
+            matchScheduler.schedule(match);
+            return match;
         }
-        return connected;
     }
 
-    private boolean connectWaitingPlayer(Player player, boolean useEmptyMatches) {
-        boolean connected = false;
-        for (int i = 1; i < serverConfig.threadNum; i++) {
-            if (!connected && (useEmptyMatches || matches[i - 1].getConnectedPlayerNum() > 0)
-                    && matches[i - 1].checkIfPlayerFitsMatch(player)
-                    && matches[i - 1].connectPlayer(player)) {
-                Gdx.app.log("Server", "Connected " + player.nickName + " to match " + i);
-                connected = true;
-            }
+    /**
+     * called by the tick worker when a match has no players anymore and was removed from the schedule
+     */
+    void matchReleased(Match match) {
+        synchronized (matches) {
+            matches.removeValue(match, true);
+            matchPool.free(match);
+            Gdx.app.debug("Server", "Released match " + match.matchId + ", " + matches.size
+                    + " active, " + matchPool.getFree() + " pooled");
         }
-        return connected;
     }
 
     @Override
@@ -281,13 +391,16 @@ public class LightblocksServer extends WebSocketServer implements ApplicationLis
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
         Gdx.app.debug("Server", "closed " + conn.getRemoteSocketAddress() + " with exit code " + code + " additional info: " + reason);
         if (conn.getAttachment() != null) {
-            conn.<Player>getAttachment().disconnected();
+            // closed by the server or the player, or dropped?
+            conn.<Player>getAttachment().disconnected(code != CloseFrame.NORMAL && code < 4000);
         }
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
         Gdx.app.debug("Server", "received message from " + conn.getRemoteSocketAddress() + ": " + message);
+        metrics.messagesIn.inc();
+        metrics.bytesIn.add(Metrics.utf8Length(message));
         if (message.equals("PING")) {
             conn.send("PONG");
         } else if (message.startsWith("PING-")) {
@@ -315,12 +428,20 @@ public class LightblocksServer extends WebSocketServer implements ApplicationLis
     private String sendServerStats(int clientVersion) {
         JsonValue json = new JsonValue(JsonValue.ValueType.object);
         json.addChild("activePlayers", new JsonValue(serverStats.getPlayersCurrentlyConnected()));
+        json.addChild("waitingPlayers", new JsonValue(matchmaker.getQueueDepth()));
         return json.toJson(JsonWriter.OutputType.json);
     }
 
     @Override
     public void onMessage(WebSocket conn, ByteBuffer message) {
-        Gdx.app.debug("Server", "received ByteBuffer from " + conn.getRemoteSocketAddress());
+        metrics.messagesIn.inc();
+        metrics.bytesIn.add(message.remaining());
+        if (conn.getAttachment() != null) try {
+            conn.<Player>getAttachment().onMessage(message);
+        } catch (Player.UnexpectedException e) {
+            Gdx.app.error("Server", "Unexpected binary message for player from " + conn.getRemoteSocketAddress());
+            conn.close(4101, "Message unexpected.");
+        }
     }
 
     @Override
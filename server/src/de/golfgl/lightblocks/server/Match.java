@@ -3,16 +3,21 @@ package de.golfgl.lightblocks.server;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.TimeUtils;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.nio.ByteBuffer;
+import java.util.Locale;
 
 import javax.annotation.Nullable;
 
 import de.golfgl.lightblocks.model.GameModel;
 import de.golfgl.lightblocks.model.GameScore;
+import de.golfgl.lightblocks.model.Gameboard;
 import de.golfgl.lightblocks.model.IGameModelListener;
 import de.golfgl.lightblocks.model.ServerMultiplayerModel;
 import de.golfgl.lightblocks.model.Tetromino;
+import de.golfgl.lightblocks.multiplayer.ai.AiProfile;
 import de.golfgl.lightblocks.multiplayer.ai.ArtificialPlayer;
 import de.golfgl.lightblocks.server.model.InGameMessage;
 import de.golfgl.lightblocks.server.model.MatchInfo;
@@ -21,26 +26,60 @@ import de.golfgl.lightblocks.state.InitGameParameters;
 /**
  * Manages match between to players: Links game model and Player classes and manages state of the
  * game model based on the connection states.
+ * <p>
+ * Matches are pooled: the game model, AI players and listeners are kept and reused for every new
+ * round and for the next usage of the match after it was released.
  */
-public class Match {
+public class Match implements Pool.Poolable {
     public static final float WAIT_TIME_GAME_OVER = 4f;
     public static final float WAIT_TIME_START_PLAYNG = 3f;
+    private static final int PHASE_INPUT = 0;
+    private static final int PHASE_MODEL = 1;
+    private static final int PHASE_AI = 2;
+    private static final int PHASE_SEND = 3;
+    private static final String[] PHASE_NAMES = new String[]{"input", "model", "ai", "send"};
+    private static final long SLOW_TICK_LOG_INTERVAL_MS = 5000;
+    public final int matchId;
     private final InitGameParameters gameParams;
     private final LightblocksServer server;
-    private final ConcurrentLinkedQueue<InGameMessage> p1IncomingQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<InGameMessage> p2IncomingQueue = new ConcurrentLinkedQueue<>();
-    String roomName;
+    private final InputQueue p1IncomingQueue = new InputQueue();
+    private final InputQueue p2IncomingQueue = new InputQueue();
+    private final ServerMultiplayerModel reusableGameModel = new ServerMultiplayerModel();
+    private final Listener listener1 = new Listener(true);
+    private final Listener listener2 = new Listener(false);
+    private final EventBroadcast events;
+    // duration of the phases of the last tick
+    private final long[] phaseNanos = new long[PHASE_NAMES.length];
+    private long lastSlowTickLogMs;
+    private final Spectators spectators = new Spectators(this);
+    private ArtificialPlayer aiPlayer1;
+    private ArtificialPlayer aiPlayer2;
+    private String roomName;
     private Player player1;
     private float player1WaitTime;
     private Player player2;
     private float player2WaitTime;
+    // players whose connection dropped keep their slot until the given time to resume their session
+    private Player player1Dropped;
+    private long player1ResumeUntilMs;
+    private Player player2Dropped;
+    private long player2ResumeUntilMs;
     private ServerMultiplayerModel gameModel;
     private float waitGameOver = WAIT_TIME_GAME_OVER;
+    private boolean released;
+    // counts the games, match information of another game can't be based on the former one
+    private int gameNum;
 
-    public Match(LightblocksServer server) {
+    public Match(LightblocksServer server, int matchId) {
         this.server = server;
+        this.matchId = matchId;
+        events = new EventBroadcast(server.metrics);
         gameParams = new InitGameParameters();
         gameParams.setBeginningLevel(server.serverConfig.beginningLevel);
+        initModeType();
+    }
+
+    private void initModeType() {
         int modeType = server.serverConfig.modeType;
         if (modeType == InitGameParameters.TYPE_MIX) {
             modeType = MathUtils.randomBoolean() ? InitGameParameters.TYPE_CLASSIC : InitGameParameters.TYPE_MODERN;
@@ -48,9 +87,53 @@ public class Match {
         gameParams.setModeType(modeType);
     }
 
+    /**
+     * Resets the match when it is given back to the pool. Game model and AI players are kept. The
+     * match stays released while it is pooled, as old references to it may still be around.
+     */
+    @Override
+    public void reset() {
+        synchronized (this) {
+            released = true;
+            clearRoomName();
+            endSession(player1Dropped);
+            endSession(player2Dropped);
+            player1Dropped = null;
+            player2Dropped = null;
+            player1 = null;
+            player2 = null;
+            player1WaitTime = 0;
+            player2WaitTime = 0;
+            p1IncomingQueue.clear();
+            p2IncomingQueue.clear();
+            events.clear();
+            spectators.closeAll("Match ended");
+            gameModel = null;
+            waitGameOver = WAIT_TIME_GAME_OVER;
+            initModeType();
+        }
+    }
+
+    /**
+     * Called when the match was obtained from the pool, before its first player connects and it is
+     * scheduled
+     */
+    void reuse() {
+        synchronized (this) {
+            released = false;
+        }
+    }
+
     public void update(float delta) {
+        long tickStart = TimeUtils.nanoTime();
+        if (hasDroppedPlayer()) synchronized (this) {
+            expireDroppedPlayers();
+        }
         if (getConnectedPlayerNum() == 0) {
-            roomName = null;
+            // paused until the dropped players resume or their slots expire
+            if (hasDroppedPlayer())
+                return;
+            clearRoomName();
             if (server.serverConfig.resetEmptyRooms)
                 gameModel = null;
             return;
@@ -69,17 +152,40 @@ public class Match {
 
         // update game model
         if (gameModel == null) synchronized (this) {
-            server.serverStats.matchesStarted++;
+            server.serverStats.incMatchesStarted();
+            server.metrics.matchesStarted.inc();
             initGameModel();
             sendFullInformation();
+            // the full information just sent answers the requests queued by the connects
+            if (player1 != null)
+                player1.takeMatchInfoRequest();
+            if (player2 != null)
+                player2.takeMatchInfoRequest();
             sendWaitMessageP1 = true;
             sendWaitMessageP2 = true;
         }
+        // match information requested after players (dis)connected or by clients that couldn't
+        // apply the changes of a match information
+        int matchInfoP1 = player1 != null ? player1.takeMatchInfoRequest() : Player.MATCH_INFO_NONE;
+        int matchInfoP2 = player2 != null ? player2.takeMatchInfoRequest() : Player.MATCH_INFO_NONE;
+        if (matchInfoP1 != Player.MATCH_INFO_NONE || matchInfoP2 != Player.MATCH_INFO_NONE) synchronized (this) {
+            if (matchInfoP1 == matchInfoP2) {
+                sendMatchInfo(true, true, matchInfoP1 == Player.MATCH_INFO_FULL);
+            } else {
+                if (matchInfoP1 != Player.MATCH_INFO_NONE)
+                    sendMatchInfo(true, false, matchInfoP1 == Player.MATCH_INFO_FULL);
+                if (matchInfoP2 != Player.MATCH_INFO_NONE)
+                    sendMatchInfo(false, true, matchInfoP2 == Player.MATCH_INFO_FULL);
+            }
+        }
         if (sendWaitMessageP1)
             sendGeneralMessageToPlayer(getWaitTimeMsg(player1WaitTime, player2), player1);
         if (sendWaitMessageP2)
             sendGeneralMessageToPlayer(getWaitTimeMsg(player2WaitTime, player1), player2);
 
+        // the AI plans when a new piece is activated: on game start, by an input or by the game model
+        long setupAiNanos = aiPlayer1.takePlanningNanos() + aiPlayer2.takePlanningNanos();
+        long inputStart = TimeUtils.nanoTime();
         boolean player1Disabled = player1 == null || player1WaitTime > 0;
         boolean player2Disabled = player2 == null || player2WaitTime > 0;
         gameModel.setAiEnabled(player1Disabled);
@@ -94,19 +200,32 @@ public class Match {
             p2IncomingQueue.clear();
         else
             processQueue(gameModel.getSecondGameModel(), p2IncomingQueue);
+        long inputAiNanos = aiPlayer1.takePlanningNanos() + aiPlayer2.takePlanningNanos();
 
+        long modelStart = TimeUtils.nanoTime();
         gameModel.update(delta);
+        long modelAiNanos = aiPlayer1.takePlanningNanos() + aiPlayer2.takePlanningNanos();
 
+        long sendStart = TimeUtils.nanoTime();
         if (player1 != null)
-            player1.sendQueue();
+            player1.sendQueue(events, false);
         if (player2 != null)
-            player2.sendQueue();
+            player2.sendQueue(events, true);
+        spectators.send(events);
+        events.clear();
+        long sendEnd = TimeUtils.nanoTime();
+
+        phaseNanos[PHASE_INPUT] = modelStart - inputStart - inputAiNanos;
+        phaseNanos[PHASE_MODEL] = sendStart - modelStart - modelAiNanos;
+        phaseNanos[PHASE_AI] = setupAiNanos + inputAiNanos + modelAiNanos;
+        phaseNanos[PHASE_SEND] = sendEnd - sendStart;
+        recordPhases();
 
         if (gameModel.isGameOver()) {
             boolean sendMessage;
             if (waitGameOver > 0) {
                 if (waitGameOver == WAIT_TIME_GAME_OVER)
-                    server.serverStats.matchesEnded++;
+                    server.serverStats.incMatchesEnded();
                 sendMessage = (MathUtils.floor(waitGameOver) != MathUtils.floor(waitGameOver - delta));
                 waitGameOver = waitGameOver - delta;
             } else {
@@ -124,6 +243,165 @@ public class Match {
 
         checkPlayerActivity(player1);
         checkPlayerActivity(player2);
+
+        checkSlowTick(TimeUtils.nanoTime() - tickStart);
+    }
+
+    private void recordPhases() {
+        server.metrics.matchInputTime.observeNanos(phaseNanos[PHASE_INPUT]);
+        server.metrics.matchModelTime.observeNanos(phaseNanos[PHASE_MODEL]);
+        server.metrics.matchSendTime.observeNanos(phaseNanos[PHASE_SEND]);
+        if (phaseNanos[PHASE_AI] > 0)
+            server.metrics.aiPlanningTime.observeNanos(phaseNanos[PHASE_AI]);
+    }
+
+    /**
+     * logs the phases and gameboards if the tick took longer than configured, at most every
+     * {@link #SLOW_TICK_LOG_INTERVAL_MS} per match
+     */
+    private void checkSlowTick(long tickNanos) {
+        long thresholdNanos = server.serverConfig.slowTickMs * 1000000L;
+        if (thresholdNanos <= 0 || tickNanos < thresholdNanos
+                || TimeUtils.timeSinceMillis(lastSlowTickLogMs) < SLOW_TICK_LOG_INTERVAL_MS)
+            return;
+
+        lastSlowTickLogMs = TimeUtils.millis();
+        long otherNanos = tickNanos;
+        StringBuilder log = new StringBuilder();
+        log.append("Match ").append(matchId).append(" took ");
+        appendMs(log, tickNanos).append(" ms (");
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            log.append(PHASE_NAMES[phase]).append(' ');
+            appendMs(log, phaseNanos[phase]).append(", ");
+            otherNanos = otherNanos - phaseNanos[phase];
+        }
+        log.append("other ");
+        appendMs(log, otherNanos).append(')');
+
+        if (gameModel != null) {
+            String gameboard1 = gameModel.getSerializedGameboard();
+            String gameboard2 = gameModel.getSecondGameModel().getSerializedGameboard();
+            for (int row = Gameboard.GAMEBOARD_ALLROWS - 1; row >= 0; row--) {
+                log.append('\n');
+                appendGameboardRow(log, gameboard1, row).append(" | ");
+                appendGameboardRow(log, gameboard2, row);
+            }
+        }
+        Gdx.app.log("SlowTick", log.toString());
+    }
+
+    private static StringBuilder appendMs(StringBuilder builder, long nanos) {
+        long hundredths = nanos / 10000;
+        builder.append(hundredths / 100).append('.');
+        if (hundredths % 100 < 10)
+            builder.append('0');
+        return builder.append(hundredths % 100);
+    }
+
+    private static StringBuilder appendGameboardRow(StringBuilder builder, String gameboard, int row) {
+        for (int pos = row * Gameboard.GAMEBOARD_COLUMNS; pos < (row + 1) * Gameboard.GAMEBOARD_COLUMNS; pos++) {
+            char square = pos < gameboard.length() ? gameboard.charAt(pos) : ' ';
+            builder.append(square == ' ' ? '.' : square);
+        }
+        return builder;
+    }
+
+    /**
+     * Called by the tick worker after every update. An unused match is marked as released, so no
+     * player can connect to it anymore, and should be dropped by the caller.
+     *
+     * @return true if the match was released
+     */
+    boolean releaseIfUnused() {
+        boolean releasedNow = false;
+        synchronized (this) {
+            if (!released && getConnectedPlayerNum() == 0 && !hasDroppedPlayer() && server.serverConfig.resetEmptyRooms) {
+                released = true;
+                releasedNow = true;
+                clearRoomName();
+            }
+        }
+
+        // connections are closed outside the lock, no spectator can be added anymore
+        if (releasedNow)
+            spectators.closeAll("Match ended");
+
+        return released;
+    }
+
+    /**
+     * adds a spectator to the match. It gets a snapshot of the match on the next tick, and all
+     * events afterwards.
+     *
+     * @return false if the match was released or has too many spectators
+     */
+    boolean addSpectator(Player player) {
+        synchronized (this) {
+            if (released || !spectators.add(player, server.serverConfig.spectatorsMax))
+                return false;
+
+            player.addSpectatorToMatch(this);
+            return true;
+        }
+    }
+
+    void removeSpectator(Player player) {
+        spectators.remove(player);
+    }
+
+    /**
+     * Called for a newly created match before the first player connects: if the server mixes game
+     * modes, the mode requested by the player is used
+     */
+    void chooseModeTypeFor(Player player) {
+        if (server.serverConfig.modeType != InitGameParameters.TYPE_MIX)
+            return;
+
+        if (player.modeType != InitGameParameters.TYPE_MIX)
+            gameParams.setModeType(player.modeType);
+    }
+
+    public int getModeType() {
+        return gameParams.getModeType();
+    }
+
+    String getRoomName() {
+        return roomName;
+    }
+
+    /**
+     * makes this unused match a private room and adds it to the server's room index
+     *
+     * @return false if another match already uses the room name
+     */
+    boolean setRoomName(String roomName) {
+        synchronized (this) {
+            if (released || this.roomName != null
+                    || server.rooms.putIfAbsent(getRoomKey(roomName), this) != null)
+                return false;
+
+            this.roomName = roomName;
+            return true;
+        }
+    }
+
+    /**
+     * removes the match from the server's room index, if it is a private room
+     */
+    private void clearRoomName() {
+        synchronized (this) {
+            if (roomName != null) {
+                server.rooms.remove(getRoomKey(roomName), this);
+                roomName = null;
+            }
+        }
+    }
+
+    /**
+     * @return key for room names in the room index, room names are case insensitive
+     */
+    static String getRoomKey(String roomName) {
+        return roomName.toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -156,23 +434,23 @@ public class Match {
             player.sendMessageToPlayer(s);
     }
 
-    private void processQueue(ServerMultiplayerModel gameModel, ConcurrentLinkedQueue<InGameMessage> queue) {
+    private void processQueue(ServerMultiplayerModel gameModel, InputQueue queue) {
         // ensure to make a single column move for movements that ended in same processing cycle
         boolean rightMoveStartedBefore = false;
         boolean leftMoveStartedBefore = false;
 
-        while (!queue.isEmpty()) {
-            InGameMessage igm = queue.remove();
-            switch (igm.message) {
-                case "SML":
+        int input;
+        while ((input = queue.poll()) != InGameMessage.INPUT_NONE) {
+            switch (input) {
+                case InGameMessage.INPUT_START_MOVE_LEFT:
                     gameModel.inputStartMoveHorizontal(null, true);
                     leftMoveStartedBefore = true;
                     break;
-                case "SMR":
+                case InGameMessage.INPUT_START_MOVE_RIGHT:
                     gameModel.inputStartMoveHorizontal(null, false);
                     rightMoveStartedBefore = true;
                     break;
-                case "SMH":
+                case InGameMessage.INPUT_STOP_MOVE:
                     gameModel.inputEndMoveHorizontal(null, true);
                     gameModel.inputEndMoveHorizontal(null, false);
                     if (leftMoveStartedBefore) {
@@ -184,40 +462,52 @@ public class Match {
                         gameModel.inputDoOneHorizontalMove(null, false);
                     }
                     break;
-                case "HAT":
+                case InGameMessage.INPUT_HOLD:
                     gameModel.inputHoldActiveTetromino(null);
                     break;
-                case "ROR":
+                case InGameMessage.INPUT_ROTATE_RIGHT:
                     gameModel.inputRotate(null, true);
                     break;
-                case "ROL":
+                case InGameMessage.INPUT_ROTATE_LEFT:
                     gameModel.inputRotate(null, false);
                     break;
-                case "DRN":
+                case InGameMessage.INPUT_DROP_NONE:
                     gameModel.inputSetSoftDropFactor(null, GameModel.FACTOR_NO_DROP);
                     break;
-                case "DRS":
+                case InGameMessage.INPUT_DROP_SOFT:
                     gameModel.inputSetSoftDropFactor(null, GameModel.FACTOR_SOFT_DROP);
                     break;
-                case "DRH":
+                case InGameMessage.INPUT_DROP_HARD:
                     gameModel.inputSetSoftDropFactor(null, GameModel.FACTOR_HARD_DROP);
                     break;
-                default:
-                    Gdx.app.log("Match", "Unrecognized game message: " + igm.message);
             }
         }
     }
 
     private void initGameModel() {
-        gameModel = new ServerMultiplayerModel();
+        // the model resets itself on a new game, so it is reused instead of allocating a new one for every round
+        gameModel = reusableGameModel;
+        gameNum++;
         gameModel.startNewGame(gameParams);
         ServerMultiplayerModel secondGameModel = gameModel.getSecondGameModel();
 
-        gameModel.setAiPlayer(new ArtificialPlayer(gameModel, secondGameModel));
-        secondGameModel.setAiPlayer(new ArtificialPlayer(secondGameModel, gameModel));
+        if (aiPlayer1 == null) {
+            aiPlayer1 = new ArtificialPlayer(gameModel, secondGameModel, server.aiWorkers);
+            aiPlayer2 = new ArtificialPlayer(secondGameModel, gameModel, server.aiWorkers);
+        } else {
+            aiPlayer1.reset();
+            aiPlayer2.reset();
+        }
+        AiProfile aiProfile = server.serverConfig.getAiProfile(roomName);
+        aiPlayer1.setProfile(aiProfile);
+        aiPlayer2.setProfile(aiProfile);
+        gameModel.setAiPlayer(aiPlayer1);
+        secondGameModel.setAiPlayer(aiPlayer2);
 
-        gameModel.setUserInterface(new Listener(true));
-        secondGameModel.setUserInterface(new Listener(false));
+        listener1.reset();
+        listener2.reset();
+        gameModel.setUserInterface(listener1);
+        secondGameModel.setUserInterface(listener2);
 
         gameModel.setFreezeInterval(WAIT_TIME_START_PLAYNG);
         secondGameModel.setFreezeInterval(WAIT_TIME_START_PLAYNG);
@@ -228,9 +518,7 @@ public class Match {
 
     public boolean checkIfPlayerFitsMatch(Player player) {
         // check if player has special needs for the mode
-        String playerParams = player.params;
-        if (playerParams.contains("/modern") && gameParams.getModeType() != InitGameParameters.TYPE_MODERN
-                || playerParams.contains("/classic") && gameParams.getModeType() != InitGameParameters.TYPE_CLASSIC)
+        if (player.modeType != InitGameParameters.TYPE_MIX && gameParams.getModeType() != player.modeType)
             return false;
 
         // check if we have a room name
@@ -242,12 +530,17 @@ public class Match {
 
     public boolean connectPlayer(Player player) {
         synchronized (this) {
+            // a released match was already dropped by its tick worker
+            if (released)
+                return false;
+
+            expireDroppedPlayers();
             boolean connected = false;
-            if (player1 == null) {
+            if (player1 == null && player1Dropped == null) {
                 player1 = player;
                 player1WaitTime = WAIT_TIME_START_PLAYNG;
                 connected = true;
-            } else if (player2 == null) {
+            } else if (player2 == null && player2Dropped == null) {
                 player2 = player;
                 player2WaitTime = WAIT_TIME_START_PLAYNG;
                 connected = true;
@@ -255,46 +548,210 @@ public class Match {
 
             if (connected) {
                 player.addPlayerToMatch(this);
-                sendFullInformation();
+                requestFullInformation();
             }
 
             return connected;
         }
     }
 
-    public void playerDisconnected(Player player) {
+    /**
+     * @param resumable true if the player's slot should be kept for it to resume the session
+     */
+    public void playerDisconnected(Player player, boolean resumable) {
         synchronized (this) {
+            boolean keepSlot = resumable && player.sessionToken != null && !released;
+            long resumeUntilMs = TimeUtils.millis() + server.serverConfig.resumeGraceSeconds * 1000L;
             if (player == player1) {
                 player1 = null;
+                if (keepSlot) {
+                    player1Dropped = player;
+                    player1ResumeUntilMs = resumeUntilMs;
+                }
             } else if (player == player2) {
                 player2 = null;
+                if (keepSlot) {
+                    player2Dropped = player;
+                    player2ResumeUntilMs = resumeUntilMs;
+                }
+            } else {
+                // was replaced by its resumed session already
+                keepSlot = false;
             }
-            sendFullInformation();
+            if (!keepSlot)
+                endSession(player);
+            requestFullInformation();
         }
     }
 
+    /**
+     * reconnects a player to the slot of its dropped session. If the dropped connection was not
+     * detected yet, it is closed now.
+     *
+     * @param matchInfoVersion version of the last match information the client applied
+     * @return false if the session is not known anymore
+     */
+    boolean resumePlayer(Player player, String token, int matchInfoVersion) {
+        Player replaced = null;
+        synchronized (this) {
+            if (released)
+                return false;
+
+            expireDroppedPlayers();
+            Player dropped;
+            if (isSession(player1Dropped, token)) {
+                dropped = player1Dropped;
+                player1Dropped = null;
+                player1 = player;
+            } else if (isSession(player2Dropped, token)) {
+                dropped = player2Dropped;
+                player2Dropped = null;
+                player2 = player;
+            } else if (isSession(player1, token)) {
+                dropped = replaced = player1;
+                player1 = player;
+            } else if (isSession(player2, token)) {
+                dropped = replaced = player2;
+                player2 = player;
+            } else {
+                return false;
+            }
+
+            endSession(dropped);
+            // the catch up only contains changes if the client got the last match information
+            if (dropped.sentGameboards.getVersion() == matchInfoVersion)
+                player.sentGameboards = dropped.sentGameboards;
+            player.addPlayerToMatch(this);
+            // dismisses the client's reconnect message
+            player.sendMessageToPlayer("");
+            player.requestMatchInfo(false);
+        }
+
+        if (replaced != null)
+            replaced.close("Session resumed on another connection");
+        return true;
+    }
+
+    private boolean isSession(Player player, String token) {
+        return player != null && token.equals(player.sessionToken);
+    }
+
+    private boolean hasDroppedPlayer() {
+        return player1Dropped != null || player2Dropped != null;
+    }
+
+    private void expireDroppedPlayers() {
+        long now = TimeUtils.millis();
+        if (player1Dropped != null && now > player1ResumeUntilMs) {
+            endSession(player1Dropped);
+            player1Dropped = null;
+        }
+        if (player2Dropped != null && now > player2ResumeUntilMs) {
+            endSession(player2Dropped);
+            player2Dropped = null;
+        }
+    }
+
+    private void endSession(Player player) {
+        if (player != null && player.sessionToken != null)
+            server.sessions.remove(player.sessionToken, this);
+    }
+
     public int getConnectedPlayerNum() {
         return (player1 != null ? 1 : 0) + (player2 != null ? 1 : 0);
     }
 
+    /**
+     * @return true if the match is scheduled but unused: no players, no dropped players that may
+     * resume and no private room. Check it while holding the match's lock to connect to it
+     */
+    boolean isIdle() {
+        synchronized (this) {
+            return !released && getConnectedPlayerNum() == 0 && !hasDroppedPlayer() && roomName == null;
+        }
+    }
+
+    /**
+     * the players get the match information and the spectators a snapshot on the next tick. Used
+     * when players (dis)connect, so the match information is only built and enqueued by the tick worker
+     */
+    private void requestFullInformation() {
+        spectators.requestSnapshot();
+        if (player1 != null)
+            player1.requestMatchInfo(false);
+        if (player2 != null)
+            player2.requestMatchInfo(false);
+    }
+
     private void sendFullInformation() {
+        // spectators get their snapshot with the next tick
+        spectators.requestSnapshot();
+
+        // send the full match information to the players after a connect or disconnect
+        sendMatchInfo(true, true, false);
+    }
+
+    /**
+     * sends the match information: gameboard, score, nick names, ... The gameboards only
+     * contain the rows changed since the last match information the player got, if not full is set.
+     */
+    private void sendMatchInfo(boolean toPlayer1, boolean toPlayer2, boolean full) {
         if (gameModel == null || getConnectedPlayerNum() == 0)
             return;
 
-        // send the full match information to the players after a connect or disconnect
-        // gameboard, score, nick names, ...
-        MatchInfo matchInfo1 = new MatchInfo();
-        MatchInfo matchInfo2 = new MatchInfo();
+        MatchInfo.PlayerInfo player1 = new MatchInfo.PlayerInfo();
+        MatchInfo.PlayerInfo player2 = new MatchInfo.PlayerInfo();
+        fillPlayerInfos(player1, player2);
+        String gameboard1 = player1.gameboard;
+        String gameboard2 = player2.gameboard;
+
+        if (this.player1 != null && toPlayer1)
+            sendMatchInfo(this.player1, player1, player2, gameboard1, gameboard2, full);
+        if (this.player2 != null && toPlayer2)
+            sendMatchInfo(this.player2, player2, player1, gameboard2, gameboard1, full);
+    }
+
+    private void sendMatchInfo(Player player, MatchInfo.PlayerInfo you, MatchInfo.PlayerInfo opponent,
+                               String yourGameboard, String opponentGameboard, boolean full) {
+        SentGameboards sentGameboards = player.sentGameboards;
+        MatchInfo matchInfo = createMatchInfo(you, opponent);
+        matchInfo.baseVersion = full ? 0 : sentGameboards.getBaseVersion(gameNum);
+        setGameboard(you, yourGameboard, sentGameboards.update(0, yourGameboard, matchInfo.baseVersion > 0));
+        setGameboard(opponent, opponentGameboard, sentGameboards.update(1, opponentGameboard, matchInfo.baseVersion > 0));
+        matchInfo.version = sentGameboards.nextVersion(gameNum);
+
+        // the player infos are shared by both players' match information, so it is serialized immediately
+        player.enqueueMessage(server.serializer.serialize(matchInfo));
+    }
+
+    private void setGameboard(MatchInfo.PlayerInfo playerInfo, String gameboard, String changedRows) {
+        playerInfo.gameboard = changedRows == null ? gameboard : null;
+        playerInfo.changedRows = changedRows;
+    }
+
+    /**
+     * @return serialized match information from the view of player 1 for spectators, or null if no game is running
+     */
+    String getSnapshot() {
+        if (gameModel == null)
+            return null;
 
         MatchInfo.PlayerInfo player1 = new MatchInfo.PlayerInfo();
         MatchInfo.PlayerInfo player2 = new MatchInfo.PlayerInfo();
-        matchInfo1.player1 = player1;
-        matchInfo1.player2 = player2;
-        matchInfo1.isModern = gameModel.isModernRotation();
-        matchInfo2.player1 = player2;
-        matchInfo2.player2 = player1;
-        matchInfo2.isModern = gameModel.isModernRotation();
+        fillPlayerInfos(player1, player2);
+        return server.serializer.serialize(createMatchInfo(player1, player2));
+    }
 
+    private MatchInfo createMatchInfo(MatchInfo.PlayerInfo you, MatchInfo.PlayerInfo opponent) {
+        MatchInfo matchInfo = new MatchInfo();
+        matchInfo.player1 = you;
+        matchInfo.player2 = opponent;
+        matchInfo.isModern = gameModel.isModernRotation();
+        matchInfo.matchId = matchId;
+        return matchInfo;
+    }
+
+    private void fillPlayerInfos(MatchInfo.PlayerInfo player1, MatchInfo.PlayerInfo player2) {
         player1.score = new MatchInfo.ScoreInfo(gameModel.getScore());
         player2.score = new MatchInfo.ScoreInfo(gameModel.getSecondGameModel().getScore());
 
@@ -312,11 +769,6 @@ public class Match {
 
         player1.nextPiece = serializeTetromino(gameModel.getNextTetromino(), true);
         player2.nextPiece = serializeTetromino(gameModel.getSecondGameModel().getNextTetromino(), true);
-
-        if (this.player1 != null)
-            this.player1.enqueueMessage(server.serializer.serialize(matchInfo1));
-        if (this.player2 != null)
-            this.player2.enqueueMessage(server.serializer.serialize(matchInfo2));
     }
 
     protected String getPlayerNickname(Player p) {
@@ -335,43 +787,73 @@ public class Match {
 
     protected void sendPiecePositions(Integer[][] piecePos, StringBuilder builder) {
         for (Integer[] piece : piecePos) {
-            builder.append(piece[0]).append('-').append(piece[1]).append('-');
+            builder.append(piece[0].intValue()).append('-').append(piece[1].intValue()).append('-');
         }
     }
 
+    /**
+     * queues the game input of the player for the next tick. Called by the WebSocket thread of the player
+     */
     public void gotMessage(Player player, InGameMessage igm) {
-        if (player == player1)
-            p1IncomingQueue.add(igm);
-        else if (player == player2)
-            p2IncomingQueue.add(igm);
+        if (igm.input == InGameMessage.INPUT_NONE) {
+            Gdx.app.log("Match", "Unrecognized game message: " + igm.message);
+            return;
+        }
+
+        InputQueue queue = (player == player1 ? p1IncomingQueue : player == player2 ? p2IncomingQueue : null);
+        if (queue != null && !queue.offer(igm.input)) {
+            server.metrics.inputsDropped.inc();
+            Gdx.app.debug("Match", "Input queue full, dropped game message " + igm.message);
+        }
     }
 
     private class Listener implements IGameModelListener {
         private final boolean first;
         private int lastGarbageAmountReported = 0;
-        private String lastSentScore;
+        private int lastSentScore;
+        private int lastSentLevel;
+        private int lastSentLines;
         private boolean hasWon = false;
 
         public Listener(boolean first) {
             this.first = first;
+            reset();
         }
 
-        private void sendPlayer(String msg) {
-            if (first) {
-                if (player1 != null)
-                    player1.enqueueMessage("Y" + msg);
-                if (player2 != null)
-                    player2.enqueueMessage("O" + msg);
-            } else {
-                if (player1 != null)
-                    player1.enqueueMessage("O" + msg);
-                if (player2 != null)
-                    player2.enqueueMessage("Y" + msg);
-            }
+        void reset() {
+            lastGarbageAmountReported = 0;
+            lastSentScore = -1;
+            lastSentLevel = -1;
+            lastSentLines = -1;
+            hasWon = false;
+        }
+
+        /**
+         * publishes the event encoded to the broadcast and enqueues it for both players
+         */
+        private void publish() {
+            int event = events.publish(first);
+            if (event < 0)
+                return;
+
+            if (player1 != null)
+                player1.enqueueEvent(events.getTick(), event);
+            if (player2 != null)
+                player2.enqueueEvent(events.getTick(), event);
         }
 
         private boolean hasPlayer() {
-            return player1 != null || player2 != null;
+            return player1 != null || player2 != null || spectators.size() > 0;
+        }
+
+        private boolean hasTextPlayer() {
+            return player1 != null && !player1.binaryProtocol || player2 != null && !player2.binaryProtocol
+                    || spectators.hasTextSpectator();
+        }
+
+        private boolean hasBinaryPlayer() {
+            return player1 != null && player1.binaryProtocol || player2 != null && player2.binaryProtocol
+                    || spectators.hasBinarySpectator();
         }
 
         @Override
@@ -381,20 +863,29 @@ public class Match {
 
         @Override
         public void moveTetro(Integer[][] v, int dx, int dy, int ghostPieceDistance) {
-            if (hasPlayer()) {
-                sendPlayer("MOV|" + dx + "|" + dy + "|" + ghostPieceDistance);
+            if (hasTextPlayer()) {
+                events.startText().append("MOV|").append(dx).append('|').append(dy).append('|').append(ghostPieceDistance);
+            }
+            if (hasBinaryPlayer()) {
+                events.startBinary(BinaryProtocol.MOVE).put((byte) dx).put((byte) dy).put((byte) ghostPieceDistance);
             }
+            publish();
         }
 
         @Override
         public void rotateTetro(Integer[][] vOld, Integer[][] vNew, int ghostPieceDistance) {
-            if (hasPlayer()) {
-                StringBuilder builder = new StringBuilder();
+            if (hasTextPlayer()) {
+                StringBuilder builder = events.startText();
                 builder.append("ROT-");
                 sendPiecePositions(vNew, builder);
                 builder.append(ghostPieceDistance);
-                sendPlayer(builder.toString());
             }
+            if (hasBinaryPlayer()) {
+                ByteBuffer buffer = events.startBinary(BinaryProtocol.ROTATE);
+                BinaryProtocol.writePositions(buffer, vNew);
+                buffer.put((byte) ghostPieceDistance);
+            }
+            publish();
         }
 
         @Override
@@ -403,8 +894,8 @@ public class Match {
             if (linesToRemove.size <= 0 && linesToInsert <= 0)
                 return;
 
-            if (hasPlayer()) {
-                StringBuilder builder = new StringBuilder();
+            if (hasTextPlayer()) {
+                StringBuilder builder = events.startText();
                 builder.append("CLR-");
                 for (int i = 0; i < linesToRemove.size; i++) {
                     builder.append(linesToRemove.get(i));
@@ -412,11 +903,20 @@ public class Match {
                         builder.append('|');
                 }
                 builder.append('-').append(special ? 'S' : 'N');
-                for (int gap : garbageHolePosition) {
-                    builder.append('|').append(gap);
+                for (int i = 0; i < linesToInsert; i++) {
+                    builder.append('|').append(garbageHolePosition[i]);
                 }
-                sendPlayer(builder.toString());
             }
+            if (hasBinaryPlayer()) {
+                ByteBuffer buffer = events.startBinary(BinaryProtocol.CLEAR_INSERT);
+                buffer.put((byte) linesToRemove.size);
+                for (int i = 0; i < linesToRemove.size; i++)
+                    buffer.put((byte) linesToRemove.get(i));
+                buffer.put((byte) (special ? 1 : 0)).put((byte) linesToInsert);
+                for (int i = 0; i < linesToInsert; i++)
+                    buffer.put((byte) garbageHolePosition[i]);
+            }
+            publish();
         }
 
         @Override
@@ -426,71 +926,108 @@ public class Match {
 
         @Override
         public void setGameOver() {
-            if (hasPlayer()) {
-                sendPlayer("GOV-" + (hasWon ? "1" : "0"));
+            if (hasTextPlayer()) {
+                events.startText().append("GOV-").append(hasWon ? '1' : '0');
+            }
+            if (hasBinaryPlayer()) {
+                events.startBinary(BinaryProtocol.GAME_OVER).put((byte) (hasWon ? 1 : 0));
             }
+            publish();
         }
 
         @Override
         public void showNextTetro(Integer[][] relativeBlockPositions, int blockType) {
-            if (hasPlayer()) {
-                StringBuilder builder = new StringBuilder();
+            if (hasTextPlayer()) {
+                StringBuilder builder = events.startText();
                 builder.append("NXT-");
                 sendPiecePositions(relativeBlockPositions, builder);
                 builder.append(blockType);
-                sendPlayer(builder.toString());
             }
+            if (hasBinaryPlayer()) {
+                ByteBuffer buffer = events.startBinary(BinaryProtocol.NEXT);
+                BinaryProtocol.writePositions(buffer, relativeBlockPositions);
+                buffer.put((byte) blockType);
+            }
+            publish();
         }
 
         @Override
         public void activateNextTetro(Integer[][] boardBlockPositions, int blockType, int ghostPieceDistance) {
-            if (hasPlayer()) {
-                StringBuilder builder = new StringBuilder();
+            if (hasTextPlayer()) {
+                StringBuilder builder = events.startText();
                 builder.append("ANT-");
                 sendPiecePositions(boardBlockPositions, builder);
                 builder.append(blockType).append('-').append(ghostPieceDistance);
-                sendPlayer(builder.toString());
             }
+            if (hasBinaryPlayer()) {
+                ByteBuffer buffer = events.startBinary(BinaryProtocol.ACTIVATE_NEXT);
+                BinaryProtocol.writePositions(buffer, boardBlockPositions);
+                buffer.put((byte) blockType).put((byte) ghostPieceDistance);
+            }
+            publish();
         }
 
         @Override
         public void swapHoldAndActivePiece(Integer[][] newHoldPiecePositions, Integer[][] oldActivePiecePositions, Integer[][] newActivePiecePositions, int ghostPieceDistance, int holdBlockType) {
-            if (hasPlayer()) {
-                StringBuilder builder = new StringBuilder();
+            if (hasTextPlayer()) {
+                StringBuilder builder = events.startText();
                 builder.append("HLD-");
                 sendPiecePositions(newHoldPiecePositions, builder);
                 builder.append(ghostPieceDistance).append('-');
                 if (newActivePiecePositions != null) {
                     sendPiecePositions(newActivePiecePositions, builder);
                 }
-                sendPlayer(builder.toString());
             }
+            if (hasBinaryPlayer()) {
+                ByteBuffer buffer = events.startBinary(BinaryProtocol.SWAP_HOLD);
+                BinaryProtocol.writePositions(buffer, newHoldPiecePositions);
+                buffer.put((byte) ghostPieceDistance).put((byte) (newActivePiecePositions != null ? 1 : 0));
+                if (newActivePiecePositions != null)
+                    BinaryProtocol.writePositions(buffer, newActivePiecePositions);
+            }
+            publish();
         }
 
         @Override
         public void pinTetromino(Integer[][] currentBlockPositions) {
-            if (hasPlayer()) {
-                sendPlayer("PIN");
+            if (hasTextPlayer()) {
+                events.startText().append("PIN");
+            }
+            if (hasBinaryPlayer()) {
+                events.startBinary(BinaryProtocol.PIN);
             }
+            publish();
         }
 
         @Override
         public void updateScore(GameScore score, int gainedScore) {
             if (hasPlayer()) {
-                MatchInfo.ScoreInfo scoreInfo = new MatchInfo.ScoreInfo(score);
-                String serialized = server.serializer.serialize(scoreInfo);
-                if (!serialized.equals(lastSentScore)) {
-                    lastSentScore = serialized;
-                    sendPlayer(serialized);
+                if (score.getScore() == lastSentScore && score.getCurrentLevel() == lastSentLevel
+                        && score.getClearedLines() == lastSentLines)
+                    return;
+
+                lastSentScore = score.getScore();
+                lastSentLevel = score.getCurrentLevel();
+                lastSentLines = score.getClearedLines();
+                if (hasTextPlayer()) {
+                    events.startText().append(server.serializer.serialize(new MatchInfo.ScoreInfo(score)));
+                }
+                if (hasBinaryPlayer()) {
+                    events.startBinary(BinaryProtocol.SCORE).putInt(lastSentScore).putInt(lastSentLevel).putInt(lastSentLines);
                 }
+                publish();
             }
         }
 
         @Override
         public void markConflict(int x, int y) {
-            if (hasPlayer()) {
-                sendPlayer("CNF-" + x + "-" + y);
+            if (hasTextPlayer()) {
+                events.startText().append("CNF-").append(x).append('-').append(y);
+            }
+            if (hasBinaryPlayer()) {
+                events.startBinary(BinaryProtocol.CONFLICT).put((byte) x).put((byte) y);
             }
+            publish();
         }
 
         @Override
@@ -517,15 +1054,24 @@ public class Match {
                 default:
                     motivationMessage = null;
             }
-            if (motivationMessage != null)
-                sendPlayer("MTV-" + motivationMessage);
+            // no binary encoding, binary players get the text message
+            if (motivationMessage != null && hasPlayer()) {
+                events.startText().append("MTV-").append(motivationMessage);
+                publish();
+            }
         }
 
         @Override
         public void showGarbageAmount(int lines) {
             if (hasPlayer()) {
                 if (lines != lastGarbageAmountReported) {
-                    sendPlayer("GBG-" + lines);
+                    if (hasTextPlayer()) {
+                        events.startText().append("GBG-").append(lines);
+                    }
+                    if (hasBinaryPlayer()) {
+                        events.startBinary(BinaryProtocol.GARBAGE).put((byte) lines);
+                    }
+                    publish();
                     lastGarbageAmountReported = lines;
                 }
             } else {
@@ -0,0 +1,26 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Pool of idle matches. Matches are created when no idle one is left and given back when they were
+ * released by their tick worker, including their game models and AI players. At most
+ * {@link ServerConfiguration#matchPoolMax} idle matches are kept, additional ones are left to the GC.
+ * <p>
+ * Not thread safe, the server synchronizes access with its match list.
+ */
+class MatchPool extends Pool<Match> {
+    private final LightblocksServer server;
+    private int lastMatchId;
+
+    MatchPool(LightblocksServer server, int max) {
+        super(16, max);
+        this.server = server;
+    }
+
+    @Override
+    protected Match newObject() {
+        lastMatchId++;
+        return new Match(server, lastMatchId);
+    }
+}
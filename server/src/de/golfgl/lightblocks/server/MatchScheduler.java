@@ -0,0 +1,153 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Drives all matches of the server with a fixed number of tick worker threads. A new match is
+ * handed to the worker with the fewest matches and stays there until it is released.
+ * <p>
+ * The workers tick with a fixed timestep: ticks are due at fixed times and every tick advances the
+ * matches by the same delta, so late ticks don't add up and don't speed up the game. After a stall,
+ * a worker catches up with at most {@link #MAX_CATCH_UP_TICKS} extra ticks, further missed ticks
+ * are dropped. Both are reported to the server stats.
+ */
+class MatchScheduler {
+    static final int MAX_CATCH_UP_TICKS = 4;
+
+    private final LightblocksServer server;
+    private final TickWorker[] workers;
+    private volatile boolean running;
+
+    MatchScheduler(LightblocksServer server, int workerNum) {
+        this.server = server;
+        workers = new TickWorker[Math.max(1, workerNum)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new TickWorker(i + 1);
+        }
+    }
+
+    void start(long tickInterval) {
+        running = true;
+        for (TickWorker worker : workers) {
+            worker.tickInterval = tickInterval;
+            worker.start();
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    int getWorkerNum() {
+        return workers.length;
+    }
+
+    /**
+     * adds the match to the worker with the lowest load. The match is updated from the next tick on.
+     */
+    void schedule(Match match) {
+        TickWorker leastLoaded = workers[0];
+        for (int i = 1; i < workers.length; i++) {
+            if (workers[i].getLoad() < leastLoaded.getLoad())
+                leastLoaded = workers[i];
+        }
+        leastLoaded.add(match);
+    }
+
+    int getScheduledMatchNum() {
+        int matchNum = 0;
+        for (TickWorker worker : workers)
+            matchNum = matchNum + worker.getLoad();
+        return matchNum;
+    }
+
+    private class TickWorker extends Thread {
+        private final Array<Match> matches = new Array<>(false, 16);
+        private final Array<Match> added = new Array<>(false, 4);
+        private volatile int load;
+        private long tickInterval;
+
+        TickWorker(int workerNum) {
+            super("Render" + workerNum);
+            setDaemon(true);
+        }
+
+        int getLoad() {
+            return load;
+        }
+
+        void add(Match match) {
+            synchronized (added) {
+                added.add(match);
+                load++;
+            }
+        }
+
+        @Override
+        public void run() {
+            final float delta = tickInterval / 1000000000.0f;
+            long nextTickTime = TimeUtils.nanoTime() + tickInterval;
+            while (running) {
+                long waitTime = nextTickTime - TimeUtils.nanoTime();
+                if (waitTime > 0) {
+                    try {
+                        Thread.sleep(waitTime / 1000000, (int) (waitTime % 1000000));
+                    } catch (InterruptedException ignored) {
+                    }
+                    continue;
+                }
+
+                int ticks = 0;
+                do {
+                    tick(delta);
+                    nextTickTime = nextTickTime + tickInterval;
+                    ticks++;
+                } while (ticks <= MAX_CATCH_UP_TICKS && nextTickTime <= TimeUtils.nanoTime());
+
+                long behind = TimeUtils.nanoTime() - nextTickTime;
+                if (behind >= 0) {
+                    // still behind after catching up, drop the missed ticks
+                    long skipped = behind / tickInterval + 1;
+                    nextTickTime = nextTickTime + skipped * tickInterval;
+                    server.serverStats.tickOverrun(skipped);
+                    server.metrics.tickOverruns.inc();
+                    server.metrics.ticksSkipped.add(skipped);
+                } else if (ticks > 1) {
+                    server.serverStats.tickOverrun(0);
+                    server.metrics.tickOverruns.inc();
+                }
+            }
+        }
+
+        private void tick(float delta) {
+            synchronized (added) {
+                matches.addAll(added);
+                added.clear();
+            }
+
+            for (int i = matches.size - 1; i >= 0; i--) {
+                Match match = matches.get(i);
+                long startNanos = TimeUtils.nanoTime();
+                try {
+                    match.update(delta);
+                } catch (Throwable t) {
+                    Gdx.app.error("Server", "Uncaught error ", t);
+                }
+                long tickNanos = TimeUtils.nanoTime() - startNanos;
+                server.metrics.matchTickTime.observeNanos(tickNanos);
+                server.tickLatency.record(tickNanos);
+
+                if (match.releaseIfUnused()) {
+                    matches.removeIndex(i);
+                    server.matchReleased(match);
+                }
+            }
+
+            synchronized (added) {
+                load = matches.size + added.size;
+            }
+        }
+    }
+}
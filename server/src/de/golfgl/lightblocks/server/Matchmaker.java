@@ -0,0 +1,178 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.Queue;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import de.golfgl.lightblocks.state.InitGameParameters;
+
+/**
+ * Matches waiting players to matches. Players are put into buckets by the game mode they requested
+ * and by their private room, so a player that can't be connected at the moment does not block
+ * players in other buckets. All waiting players are processed on every main thread tick.
+ */
+class Matchmaker {
+    private static final String BUCKET_CLASSIC = "classic";
+    private static final String BUCKET_MODERN = "modern";
+    private static final String BUCKET_ANY = "any";
+    private static final String BUCKET_ROOM_PREFIX = "room/";
+
+    private final LightblocksServer server;
+    // written by the WebSocket threads, moved to the buckets on the main thread
+    private final Array<Player> enqueuedPlayers = new Array<>();
+    // only used by the main thread
+    private final ObjectMap<String, Queue<Player>> buckets = new ObjectMap<>();
+    private final Array<Player> tempPlayers = new Array<>();
+    private final Array<Match> openClassicMatches = new Array<>(false, 16);
+    private final Array<Match> openModernMatches = new Array<>(false, 16);
+    private volatile int queueDepth;
+
+    Matchmaker(LightblocksServer server) {
+        this.server = server;
+    }
+
+    /**
+     * adds the player to the waiting list
+     *
+     * @return false if the player requested a game mode the server does not provide
+     */
+    boolean enqueue(Player player) {
+        int serverModeType = server.serverConfig.modeType;
+        if (player.modeType != InitGameParameters.TYPE_MIX && serverModeType != InitGameParameters.TYPE_MIX
+                && player.modeType != serverModeType) {
+            Gdx.app.log("Matchmaker", "Mode requested by " + player.nickName + " not available.");
+            return false;
+        }
+
+        player.waitingSinceMs = TimeUtils.millis();
+        player.roomFailureLogged = false;
+        synchronized (enqueuedPlayers) {
+            enqueuedPlayers.add(player);
+            queueDepth++;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of players waiting for a match
+     */
+    int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * tries to connect all waiting players. Called on every main thread tick.
+     */
+    void connectWaitingPlayers() {
+        synchronized (enqueuedPlayers) {
+            tempPlayers.addAll(enqueuedPlayers);
+            enqueuedPlayers.clear();
+        }
+
+        for (int i = 0; i < tempPlayers.size; i++) {
+            Player player = tempPlayers.get(i);
+            String bucketKey = getBucketKey(player);
+            Queue<Player> bucket = buckets.get(bucketKey);
+            if (bucket == null) {
+                bucket = new Queue<>();
+                buckets.put(bucketKey, bucket);
+            }
+            bucket.addLast(player);
+        }
+        tempPlayers.clear();
+
+        if (buckets.size == 0)
+            return;
+
+        server.findOpenMatches(openClassicMatches, openModernMatches);
+
+        int waitingPlayers = 0;
+        ObjectMap.Entries<String, Queue<Player>> iterator = buckets.entries();
+        while (iterator.hasNext()) {
+            ObjectMap.Entry<String, Queue<Player>> bucket = iterator.next();
+            boolean privateRoom = bucket.key.startsWith(BUCKET_ROOM_PREFIX);
+            Queue<Player> players = bucket.value;
+
+            // players are processed in order of their arrival. Connected and disconnected players
+            // are removed from the bucket
+            int i = 0;
+            while (i < players.size) {
+                Player player = players.get(i);
+                boolean remove;
+                if (player.state != Player.ConnectionState.WAITING) {
+                    Gdx.app.log("Matchmaker", "Removed player in state " + player.state + " from connect queue");
+                    remove = true;
+                } else if (privateRoom) {
+                    remove = server.connectPlayerToPrivateRoom(player);
+                } else {
+                    remove = connectToOpenMatch(player);
+                }
+
+                if (remove) {
+                    if (player.state == Player.ConnectionState.PLAYING)
+                        server.serverStats.playerMatched(TimeUtils.millis() - player.waitingSinceMs);
+                    players.removeIndex(i);
+                } else {
+                    i++;
+                }
+            }
+
+            if (players.isEmpty())
+                iterator.remove();
+            else
+                waitingPlayers = waitingPlayers + players.size;
+        }
+
+        openClassicMatches.clear();
+        openModernMatches.clear();
+
+        synchronized (enqueuedPlayers) {
+            queueDepth = waitingPlayers + enqueuedPlayers.size;
+        }
+    }
+
+    private boolean connectToOpenMatch(Player player) {
+        // try to connect to occupied matches first...
+        if (player.modeType != InitGameParameters.TYPE_MODERN && connectToOpenMatch(player, openClassicMatches)
+                || player.modeType != InitGameParameters.TYPE_CLASSIC && connectToOpenMatch(player, openModernMatches))
+            return true;
+
+        //... if not successful, use an empty match. The next waiting player can join it
+        Match match = server.connectToEmptyMatch(player, null);
+        if (match != null) {
+            Gdx.app.log("Server", "Connected " + player.nickName + " to match " + match.matchId);
+            if (match.getModeType() == InitGameParameters.TYPE_MODERN)
+                openModernMatches.add(match);
+            else
+                openClassicMatches.add(match);
+        }
+        return match != null;
+    }
+
+    private boolean connectToOpenMatch(Player player, Array<Match> openMatches) {
+        while (openMatches.size > 0) {
+            Match match = openMatches.pop();
+            if (match.checkIfPlayerFitsMatch(player) && match.connectPlayer(player)) {
+                Gdx.app.log("Server", "Connected " + player.nickName + " to match " + match.matchId);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getBucketKey(Player player) {
+        if (server.serverConfig.getServerInfo().privateRooms && player.roomName != null)
+            return BUCKET_ROOM_PREFIX + Match.getRoomKey(player.roomName);
+
+        switch (player.modeType) {
+            case InitGameParameters.TYPE_CLASSIC:
+                return BUCKET_CLASSIC;
+            case InitGameParameters.TYPE_MODERN:
+                return BUCKET_MODERN;
+            default:
+                return BUCKET_ANY;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.utils.Array;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of the server, written in the Prometheus text format by {@link MetricsEndpoint}.
+ * <p>
+ * All metrics are registered on startup. Updating them is lock-free, so they can be used from the
+ * tick workers and WebSocket threads. Other than {@link ServerStats}, metrics are never reset.
+ */
+public class Metrics {
+    private static final String PREFIX = "lightblocks_";
+    // seconds, from 10 µs to 1 s
+    private static final double[] DURATION_BUCKETS = new double[]{.00001, .00005, .0001, .00025, .0005,
+            .001, .0025, .005, .01, .025, .05, .1, .25, .5, 1};
+
+    private final Array<Metric> metrics = new Array<>();
+
+    final Counter messagesIn = counter("messages_received_total", "WebSocket messages received");
+    final Counter bytesIn = counter("received_bytes_total", "Payload bytes received");
+    final Counter messagesOut = counter("messages_sent_total", "WebSocket frames sent to players");
+    final Counter bytesOut = counter("sent_bytes_total", "Payload bytes sent to players");
+    final Counter matchesStarted = counter("matches_started_total", "Games started");
+    final Counter tickOverruns = counter("tick_overruns_total", "Tick workers that fell behind their schedule");
+    final Counter ticksSkipped = counter("ticks_skipped_total", "Ticks dropped after a tick worker fell behind");
+    final Counter inputsDropped = counter("inputs_dropped_total", "Game inputs dropped because the input queue of the player was full");
+    final Counter messagesDropped = counter("messages_dropped_total", "Messages to players dropped because the player fell behind");
+    final Histogram matchTickTime = histogram("match_tick_seconds", "Duration of a match update");
+    final Histogram matchInputTime = histogram("match_input_seconds", "Duration of processing the player inputs of a match update");
+    final Histogram matchModelTime = histogram("match_model_seconds", "Duration of the game model update of a match update, without AI planning");
+    final Histogram matchSendTime = histogram("match_send_seconds", "Duration of sending the events of a match update");
+    final Histogram serializationTime = histogram("serialization_seconds", "Duration of a JSON serialization");
+    final Histogram aiPlanningTime = histogram("ai_planning_seconds", "Duration of the AI planning of a match tick");
+    final Histogram aiWorkerTime = histogram("ai_worker_planning_seconds", "Duration of an AI planning on the AI workers");
+    final Counter aiPlansOnTick = counter("ai_plans_on_tick_total", "AI plannings run on the tick worker because the AI workers were busy");
+
+    /**
+     * counts a frame sent to a player. Text frames are counted with {@link #utf8Length(CharSequence)}
+     */
+    void frameSent(int bytes) {
+        messagesOut.inc();
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * @return the length of the text encoded as UTF-8, the payload size of a text frame. Doesn't
+     * encode the text, so it does not allocate
+     */
+    static int utf8Length(CharSequence text) {
+        int length = text.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // surrogate pairs are two chars and four bytes
+                bytes = bytes + (Character.isSurrogate(c) ? 1 : 2);
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    Counter counter(String name, String help) {
+        Counter counter = new Counter(PREFIX + name, help);
+        metrics.add(counter);
+        return counter;
+    }
+
+    void gauge(String name, String help, Gauge gauge) {
+        metrics.add(new GaugeMetric(PREFIX + name, help, gauge));
+    }
+
+    Histogram histogram(String name, String help) {
+        Histogram histogram = new Histogram(PREFIX + name, help, DURATION_BUCKETS);
+        metrics.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * writes all metrics in the Prometheus text exposition format
+     */
+    void write(StringBuilder out) {
+        for (int i = 0; i < metrics.size; i++) {
+            Metric metric = metrics.get(i);
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+            metric.write(out);
+        }
+    }
+
+    public interface Gauge {
+        double get();
+    }
+
+    private abstract static class Metric {
+        final String name;
+        final String help;
+        final String type;
+
+        Metric(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        abstract void write(StringBuilder out);
+    }
+
+    public static class Counter extends Metric {
+        private final AtomicLong value = new AtomicLong();
+
+        Counter(String name, String help) {
+            super(name, help, "counter");
+        }
+
+        public void inc() {
+            value.incrementAndGet();
+        }
+
+        public void add(long amount) {
+            value.addAndGet(amount);
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(name).append(' ').append(value.get()).append('\n');
+        }
+    }
+
+    private static class GaugeMetric extends Metric {
+        private final Gauge gauge;
+
+        GaugeMetric(String name, String help, Gauge gauge) {
+            super(name, help, "gauge");
+            this.gauge = gauge;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(name).append(' ').append(gauge.get()).append('\n');
+        }
+    }
+
+    /**
+     * histogram of durations, observed in nanoseconds and written in seconds
+     */
+    public static class Histogram extends Metric {
+        private final double[] bounds;
+        private final long[] boundsNanos;
+        // the last bucket counts the observations above all bounds
+        private final AtomicLongArray buckets;
+        private final AtomicLong sumNanos = new AtomicLong();
+
+        Histogram(String name, String help, double[] bounds) {
+            super(name, help, "histogram");
+            this.bounds = bounds;
+            boundsNanos = new long[bounds.length];
+            for (int i = 0; i < bounds.length; i++)
+                boundsNanos[i] = (long) (bounds[i] * 1000000000L);
+            buckets = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void observeNanos(long nanos) {
+            int bucket = 0;
+            while (bucket < boundsNanos.length && nanos > boundsNanos[bucket])
+                bucket++;
+            buckets.incrementAndGet(bucket);
+            sumNanos.addAndGet(nanos);
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            long count = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                count = count + buckets.get(i);
+                out.append(name).append("_bucket{le=\"").append(bounds[i]).append("\"} ").append(count).append('\n');
+            }
+            count = count + buckets.get(bounds.length);
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            out.append(name).append("_sum ").append(sumNanos.get() / 1000000000.0).append('\n');
+            out.append(name).append("_count ").append(count).append('\n');
+        }
+    }
+}
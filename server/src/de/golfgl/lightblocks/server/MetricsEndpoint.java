@@ -0,0 +1,54 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.Gdx;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+
+/**
+ * Plain HTTP endpoint on its own port serving the metrics on /metrics, to be scraped by Prometheus
+ */
+class MetricsEndpoint implements HttpHandler {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Metrics metrics;
+    private HttpServer httpServer;
+
+    MetricsEndpoint(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void start(int port) {
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+            httpServer.createContext("/metrics", this);
+            httpServer.start();
+            Gdx.app.log("Metrics", "Serving metrics on port " + port);
+        } catch (IOException e) {
+            Gdx.app.error("Metrics", "Could not start metrics endpoint.", e);
+        }
+    }
+
+    void stop() {
+        if (httpServer != null)
+            httpServer.stop(0);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        StringBuilder out = new StringBuilder(4096);
+        metrics.write(out);
+        byte[] response = out.toString().getBytes(UTF8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, response.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(response);
+        body.close();
+    }
+}
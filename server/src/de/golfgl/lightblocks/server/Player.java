@@ -1,34 +1,71 @@
 package de.golfgl.lightblocks.server;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Queue;
 import com.badlogic.gdx.utils.TimeUtils;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.golfgl.lightblocks.server.model.InGameMessage;
 import de.golfgl.lightblocks.server.model.KeepAliveMessage;
 import de.golfgl.lightblocks.server.model.PlayerInfo;
+import de.golfgl.lightblocks.state.InitGameParameters;
 
+/**
+ * A connected client. Messages are received on the connection's WebSocket thread. The outgoing
+ * queue is only used by the tick worker of the player's match: it is filled during the tick and
+ * sent at its end. It is bounded, and so is the connection's send queue: when one of them overflows,
+ * the queued messages are dropped and the player gets the full match information again as soon as
+ * its connection caught up.
+ */
 public class Player {
+    // messages enqueued per tick
+    static final int MAX_QUEUED_MESSAGES = 256;
+    // frames waiting in the connection's send queue
+    static final int MAX_SEND_BACKLOG = 64;
+    static final int MATCH_INFO_NONE = 0;
+    static final int MATCH_INFO_CHANGES = 1;
+    static final int MATCH_INFO_FULL = 2;
     private static final int SECONDS_INACTIVITY_WARNING = 10;
     private static final String GAME_TIMEOUT_WARNING = "Inactive players will be disconnected";
+    // marks the position of the next match event in the outgoing queue
+    private static final String EVENT_MESSAGE = new String("EVT");
     public final long connectedMs;
     private final LightblocksServer server;
     private final WebSocket conn;
     private final Queue<String> outgoingQueue = new Queue<>();
+    // tick and number of every enqueued match event
+    private final IntArray outgoingEvents = new IntArray();
+    private final StringBuilder outgoingTextBatch = new StringBuilder();
+    SentGameboards sentGameboards = new SentGameboards();
     public String nickName;
     public String userId;
     public int clientVersion;
     public String token;
     public String params;
     public String roomName;
+    public int modeType = InitGameParameters.TYPE_MIX;
     public ConnectionState state = ConnectionState.CONNECTED;
+    public boolean binaryProtocol;
+    public boolean batchedFrames;
+    String sessionToken;
+    long waitingSinceMs;
+    // the matchmaker retries a full room on every tick, only the first failure is logged
+    boolean roomFailureLogged;
     private Match match;
     private long startedPlayingMs;
     private long lastMessageReceived;
     private long lastGameMessageReceived;
     private String lastMessageToPlayer;
+    // the match information to send on the next tick, see MATCH_INFO_*
+    private final AtomicInteger matchInfoRequest = new AtomicInteger();
+    // messages were dropped, the full match information is sent as soon as the send queue is empty
+    private boolean fellBehind;
 
     public Player(LightblocksServer server, WebSocket conn) {
         this.server = server;
@@ -53,10 +90,26 @@ public class Player {
         if (playerInfo.roomName != null) {
             roomName = playerInfo.roomName;
         }
+        binaryProtocol = playerInfo.binaryProtocol >= BinaryProtocol.VERSION;
+        batchedFrames = playerInfo.batchedFrames;
+
+        if (playerInfo.spectateRoom != null || playerInfo.spectateMatch > 0) {
+            // this will call addSpectatorToMatch if successful
+            server.spectateMatch(this, playerInfo.spectateRoom, playerInfo.spectateMatch);
+            return;
+        }
+        // this will call addPlayerToMatch if successful, a new match is searched otherwise
+        if (playerInfo.resumeToken != null && server.resumeSession(this, playerInfo.resumeToken, playerInfo.matchInfoVersion))
+            return;
+        if (params.contains("/modern"))
+            modeType = InitGameParameters.TYPE_MODERN;
+        else if (params.contains("/classic"))
+            modeType = InitGameParameters.TYPE_CLASSIC;
 
         state = ConnectionState.WAITING;
         // this will call addPlayerToMatch eventually
-        server.enqueueToFindMatchForPlayer(this);
+        if (!server.enqueueToFindMatchForPlayer(this))
+            state = ConnectionState.CONNECTED;
     }
 
     void addPlayerToMatch(Match match) {
@@ -69,17 +122,37 @@ public class Player {
             lastGameMessageReceived = startedPlayingMs;
             Gdx.app.log("Player", "Successfully connected " + nickName + "/" + userId
                     + " - " + server.serverStats.getPlayersCurrentlyConnected() + " connected overall");
+
+            if (server.serverConfig.resumeGraceSeconds > 0) {
+                sessionToken = server.createSessionToken();
+                server.sessions.put(sessionToken, match);
+                sendImmediately(Serializer.ID_SESSION + sessionToken);
+            }
+        }
+    }
+
+    void addSpectatorToMatch(Match match) {
+        if (match != null && this.match == null) {
+            this.match = match;
+            state = ConnectionState.SPECTATING;
+            Gdx.app.log("Player", nickName + " is spectating match " + match.matchId);
         }
     }
 
-    public void disconnected() {
+    /**
+     * @param resumable true if the connection dropped and the player might resume the session
+     */
+    public void disconnected(boolean resumable) {
+        ConnectionState lastState = state;
         if (state != ConnectionState.CONNECTED) {
             Gdx.app.log("Player", "Disconnect: " + nickName + "/" + userId);
         }
         state = ConnectionState.DISCONNECTED;
         // dispose everything here
-        if (match != null) {
-            match.playerDisconnected(this);
+        if (match != null && lastState == ConnectionState.SPECTATING) {
+            match.removeSpectator(this);
+        } else if (match != null) {
+            match.playerDisconnected(this, resumable);
             server.serverStats.playerDisconnected((TimeUtils.millis() - startedPlayingMs) / 1000);
         }
     }
@@ -89,42 +162,203 @@ public class Player {
         if (object instanceof PlayerInfo && state == ConnectionState.CONNECTED) {
             doConnect((PlayerInfo) object);
 
-            if (state != ConnectionState.PLAYING && state != ConnectionState.WAITING && conn.isOpen()) {
+            if (state != ConnectionState.PLAYING && state != ConnectionState.WAITING
+                    && state != ConnectionState.SPECTATING && conn.isOpen()) {
                 // if connection was not successfully established and player does not wait, disconnect the player
                 conn.close(4101, "Could not add you to a match");
             }
+        } else if (object instanceof InGameMessage && state == ConnectionState.PLAYING
+                && InGameMessage.RESYNC.equals(((InGameMessage) object).message)) {
+            // handled by the match on its next tick
+            requestMatchInfo(true);
         } else if (object instanceof InGameMessage && state == ConnectionState.PLAYING) {
             lastGameMessageReceived = System.currentTimeMillis();
             if (GAME_TIMEOUT_WARNING.equals(lastMessageToPlayer)) {
                 sendMessageToPlayer("");
             }
             match.gotMessage(this, (InGameMessage) object);
-        } else if (object instanceof InGameMessage && state == ConnectionState.WAITING) {
-            // ignore in game matches while waiting for a match
+        } else if (object instanceof InGameMessage && (state == ConnectionState.WAITING
+                || state == ConnectionState.SPECTATING)) {
+            // ignore in game matches while waiting for a match or spectating
         } else if (!(object instanceof KeepAliveMessage))
             throw new UnexpectedException();
     }
 
-    public void sendImmediately(String string) {
+    /**
+     * binary messages hold one or more input opcodes
+     */
+    public void onMessage(ByteBuffer message) throws UnexpectedException {
+        if (!binaryProtocol || !message.hasRemaining())
+            throw new UnexpectedException();
+
+        while (message.hasRemaining()) {
+            InGameMessage igm = BinaryProtocol.decodeInput(message.get());
+            if (igm == null)
+                throw new UnexpectedException();
+            onMessage(igm);
+        }
+    }
+
+    /**
+     * the match sends the match information on its next tick
+     *
+     * @param full true if the gameboards should not be based on the last match information the player got
+     */
+    void requestMatchInfo(boolean full) {
+        int request = full ? MATCH_INFO_FULL : MATCH_INFO_CHANGES;
+        int lastRequest;
+        do {
+            lastRequest = matchInfoRequest.get();
+        } while (lastRequest < request && !matchInfoRequest.compareAndSet(lastRequest, request));
+    }
+
+    /**
+     * @return the requested match information, see MATCH_INFO_*. Called by the match's tick worker
+     */
+    int takeMatchInfoRequest() {
+        return matchInfoRequest.getAndSet(MATCH_INFO_NONE);
+    }
+
+    void close(String reason) {
         if (conn.isOpen())
+            conn.close(4103, reason);
+    }
+
+    /**
+     * @return number of frames waiting to be written to the connection
+     */
+    int getSendBacklog() {
+        return conn instanceof WebSocketImpl ? ((WebSocketImpl) conn).outQueue.size() : 0;
+    }
+
+    /**
+     * sends events of the match's event broadcast immediately, bypassing the queue
+     */
+    void sendEvents(EventBroadcast events, int firstEvent, int lastEvent, boolean mirrored) {
+        if (conn.isOpen())
+            events.send(conn, firstEvent, lastEvent, mirrored, binaryProtocol, batchedFrames);
+    }
+
+    public void sendImmediately(String string) {
+        if (conn.isOpen()) {
+            server.metrics.frameSent(Metrics.utf8Length(string));
             conn.send(string);
+        }
     }
 
+    /**
+     * enqueues a message to send at the end of the tick. Called by the match's tick worker
+     */
     public void enqueueMessage(String string) {
-        synchronized (outgoingQueue) {
-            outgoingQueue.addLast(string);
+        if (checkQueueFull())
+            return;
+
+        outgoingQueue.addLast(string);
+    }
+
+    /**
+     * enqueues an event of the match's event broadcast. Called by the match's tick worker
+     */
+    void enqueueEvent(int tick, int event) {
+        if (checkQueueFull())
+            return;
+
+        outgoingEvents.add(tick, event);
+        outgoingQueue.addLast(EVENT_MESSAGE);
+    }
+
+    private boolean checkQueueFull() {
+        if (outgoingQueue.size < MAX_QUEUED_MESSAGES && !fellBehind)
+            return false;
+
+        if (!fellBehind)
+            Gdx.app.debug("Player", nickName + " fell behind, " + outgoingQueue.size + " messages queued");
+        dropQueue();
+        server.metrics.messagesDropped.inc();
+        return true;
+    }
+
+    private void dropQueue() {
+        server.metrics.messagesDropped.add(outgoingQueue.size);
+        outgoingQueue.clear();
+        outgoingEvents.clear();
+        fellBehind = true;
+    }
+
+    /**
+     * sends all enqueued messages. If the player supports batched frames, consecutive text messages
+     * and consecutive events are sent in a single frame each
+     *
+     * @param mirrored true if the player sees the events from the view of player 2
+     */
+    void sendQueue(EventBroadcast events, boolean mirrored) {
+        if (!conn.isOpen()) {
+            outgoingQueue.clear();
+            outgoingEvents.clear();
+            return;
+        }
+
+        int backlog = getSendBacklog();
+        if (!fellBehind && backlog > MAX_SEND_BACKLOG) {
+            Gdx.app.debug("Player", nickName + " fell behind, " + backlog + " frames waiting");
+            dropQueue();
         }
+        if (fellBehind) {
+            // the match information is enqueued on the next tick, and replaces what was dropped
+            if (backlog == 0) {
+                fellBehind = false;
+                requestMatchInfo(true);
+            }
+            return;
+        }
+
+        int eventIndex = 0;
+        while (!outgoingQueue.isEmpty()) {
+            String message = outgoingQueue.removeFirst();
+            if (message == EVENT_MESSAGE)
+                eventIndex = sendQueuedEvents(events, mirrored, eventIndex);
+            else
+                sendTextMessages(message);
+        }
+        outgoingEvents.clear();
     }
 
-    public void sendQueue() {
-        synchronized (outgoingQueue) {
-            if (conn.isOpen()) {
-                while (!outgoingQueue.isEmpty()) {
-                    conn.send(outgoingQueue.removeFirst());
-                }
-            } else
-                outgoingQueue.clear();
+    private void sendTextMessages(String message) {
+        if (!batchedFrames || outgoingQueue.isEmpty() || outgoingQueue.first() == EVENT_MESSAGE) {
+            server.metrics.frameSent(Metrics.utf8Length(message));
+            conn.send(message);
+            return;
+        }
+
+        outgoingTextBatch.setLength(0);
+        outgoingTextBatch.append(Serializer.ID_BATCH).append(message);
+        while (!outgoingQueue.isEmpty() && outgoingQueue.first() != EVENT_MESSAGE) {
+            outgoingTextBatch.append(Serializer.BATCH_SEPARATOR).append(outgoingQueue.removeFirst());
         }
+        server.metrics.frameSent(Metrics.utf8Length(outgoingTextBatch));
+        conn.send(outgoingTextBatch.toString());
+    }
+
+    private int sendQueuedEvents(EventBroadcast events, boolean mirrored, int eventIndex) {
+        int tick = outgoingEvents.get(eventIndex);
+        int firstEvent = outgoingEvents.get(eventIndex + 1);
+        int lastEvent = firstEvent;
+        eventIndex = eventIndex + 2;
+
+        if (batchedFrames) {
+            while (!outgoingQueue.isEmpty() && outgoingQueue.first() == EVENT_MESSAGE
+                    && outgoingEvents.get(eventIndex) == tick && outgoingEvents.get(eventIndex + 1) == lastEvent + 1) {
+                outgoingQueue.removeFirst();
+                lastEvent++;
+                eventIndex = eventIndex + 2;
+            }
+        }
+
+        // events of earlier ticks were dropped by the broadcast already
+        if (tick == events.getTick())
+            events.send(conn, firstEvent, lastEvent, mirrored, binaryProtocol, batchedFrames);
+
+        return eventIndex;
     }
 
     public void sendMessageToPlayer(String s) {
@@ -154,7 +388,7 @@ public class Player {
         return false;
     }
 
-    enum ConnectionState {CONNECTED, WAITING, PLAYING, DISCONNECTED}
+    enum ConnectionState {CONNECTED, WAITING, PLAYING, SPECTATING, DISCONNECTED}
 
     static class UnexpectedException extends Exception {
 
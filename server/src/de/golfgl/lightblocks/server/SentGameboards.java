@@ -0,0 +1,84 @@
+package de.golfgl.lightblocks.server;
+
+import de.golfgl.lightblocks.model.Gameboard;
+
+/**
+ * The gameboards a player got with its last match information. The client keeps its gameboards
+ * up to date with the game events, so the next match information only needs the rows that changed
+ * since then. Every match information has a version, changes name the version they are based on.
+ * A client with another version requests a full resync.
+ * <p>
+ * Only used while holding the match's lock.
+ */
+class SentGameboards {
+    private static final char EMPTY = Gameboard.gameboardSquareToChar(Gameboard.SQUARE_EMPTY);
+
+    private final String[] gameboards = new String[2];
+    private final StringBuilder changedRows = new StringBuilder();
+    private int gameNum = -1;
+    private int version;
+
+    /**
+     * @return version the next changes are based on, or 0 if full gameboards have to be sent
+     */
+    int getBaseVersion(int gameNum) {
+        return this.gameNum == gameNum ? version : 0;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the new version
+     */
+    int nextVersion(int gameNum) {
+        this.gameNum = gameNum;
+        version++;
+        return version;
+    }
+
+    /**
+     * stores the gameboard as sent to the player
+     *
+     * @param index      0 for the player's own gameboard, 1 for the opponent's
+     * @param gameboard  serialized gameboard
+     * @param changesOnly true if changes may be sent instead of the full gameboard
+     * @return the changed rows: two digit row number and the row's squares per row. Null if the full
+     * gameboard has to be sent, because there is no base or the changes are not smaller
+     */
+    String update(int index, String gameboard, boolean changesOnly) {
+        String lastGameboard = gameboards[index];
+        gameboards[index] = gameboard;
+        if (!changesOnly || lastGameboard == null)
+            return null;
+
+        changedRows.setLength(0);
+        for (int row = 0; row < Gameboard.GAMEBOARD_ALLROWS; row++) {
+            int rowStart = row * Gameboard.GAMEBOARD_COLUMNS;
+            if (rowEquals(lastGameboard, gameboard, rowStart))
+                continue;
+
+            if (row < 10)
+                changedRows.append('0');
+            changedRows.append(row);
+            for (int pos = rowStart; pos < rowStart + Gameboard.GAMEBOARD_COLUMNS; pos++)
+                changedRows.append(getSquare(gameboard, pos));
+        }
+
+        return changedRows.length() < gameboard.length() ? changedRows.toString() : null;
+    }
+
+    private static boolean rowEquals(String gameboard1, String gameboard2, int rowStart) {
+        for (int pos = rowStart; pos < rowStart + Gameboard.GAMEBOARD_COLUMNS; pos++) {
+            if (getSquare(gameboard1, pos) != getSquare(gameboard2, pos))
+                return false;
+        }
+        return true;
+    }
+
+    private static char getSquare(String gameboard, int pos) {
+        // serialized gameboards are cut after the last block
+        return pos < gameboard.length() ? gameboard.charAt(pos) : EMPTY;
+    }
+}
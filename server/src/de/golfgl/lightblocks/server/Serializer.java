@@ -1,6 +1,7 @@
 package de.golfgl.lightblocks.server;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -14,15 +15,28 @@ public class Serializer {
     public static final String ID_SERVERINFO = "HSH";
     public static final String ID_PLAYERINFO = "PIN";
     public static final String ID_IN_GAME_MSG = "IGM";
+    // batch of text messages sent in one frame, separated by BATCH_SEPARATOR
+    public static final String ID_BATCH = "BAT";
+    public static final char BATCH_SEPARATOR = '\u001e';
+    // token to resume the session after the connection dropped
+    public static final String ID_SESSION = "SES";
 
     // jackson is thread safe
     private final ObjectMapper json = new ObjectMapper();
+    private final Metrics metrics;
+
+    public Serializer(Metrics metrics) {
+        this.metrics = metrics;
+    }
 
     public String serialize(Object object) {
+        long startNanos = TimeUtils.nanoTime();
         try {
             return getPrefixFromObject(object) + json.writeValueAsString(object);
         } catch (JsonProcessingException e) {
             return null;
+        } finally {
+            metrics.serializationTime.observeNanos(TimeUtils.nanoTime() - startNanos);
         }
     }
 
@@ -36,7 +50,7 @@ public class Serializer {
                         return json.readValue(message.substring(3), PlayerInfo.class);
                 }
             } else if (message.startsWith(ID_IN_GAME_MSG)) {
-                return new InGameMessage(message.substring(ID_IN_GAME_MSG.length()));
+                return InGameMessage.fromText(message, ID_IN_GAME_MSG.length());
             } else if (message.isEmpty()) {
                 return new KeepAliveMessage();
             }
@@ -3,15 +3,19 @@ package de.golfgl.lightblocks.server;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.backends.headless.HeadlessPreferences;
 import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.ObjectMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
+import de.golfgl.lightblocks.multiplayer.ai.AiProfile;
 import de.golfgl.lightblocks.server.model.ServerInfo;
 import de.golfgl.lightblocks.state.InitGameParameters;
 
@@ -21,10 +25,18 @@ public class ServerConfiguration {
     public static final String KEY_XML_SERVER_DESC = "description";
     public static final String KEY_XML_PRIVATE_ROOMS = "privateRooms";
     public static final String KEY_XML_GAMEMODES = "gamemodes";
+    public static final String KEY_XML_AI_PROFILE = "aiProfile";
+    // ai.<profile>.<setting> changes or adds an AI profile
+    public static final String KEY_XML_AI_PREFIX = "ai.";
+    // room.<room name>.aiProfile sets the AI profile of a private room
+    public static final String KEY_XML_ROOM_PREFIX = "room.";
 
     private final String[] args;
     private final Logger logger;
-    public int threadNum = 10;
+    // main thread plus one tick worker per core
+    public int threadNum = Runtime.getRuntime().availableProcessors() + 1;
+    // threads planning the AI moves, 0 plans on the tick workers
+    public int aiThreadNum = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
     public int port = 8887;
     public int loglevel = Application.LOG_INFO;
     public int beginningLevel = 0;
@@ -33,7 +45,20 @@ public class ServerConfiguration {
     public boolean resetEmptyRooms = true;
     public int secondsInactivity = 25;
     public int secondsTimeout = 5;
+    // high-water mark for idle matches kept for reuse
+    public int matchPoolMax = 64;
+    // spectators per match, 0 disables spectating
+    public int spectatorsMax = 200;
+    // seconds the slot of a dropped player is kept, 0 disables resuming sessions
+    public int resumeGraceSeconds = 20;
+    // port of the Prometheus metrics endpoint, 0 to disable it
+    public int metricsPort;
+    // match ticks taking longer are logged with their phases and gameboards, 0 disables it
+    public int slowTickMs = 10;
     private ServerInfo serverInfo;
+    private final ObjectMap<String, AiProfile> aiProfiles = new ObjectMap<>();
+    private final ObjectMap<String, AiProfile> roomAiProfiles = new ObjectMap<>();
+    private AiProfile defaultAiProfile = AiProfile.NORMAL;
 
     public ServerConfiguration(String[] arg) {
         this.args = arg;
@@ -82,6 +107,16 @@ public class ServerConfiguration {
             logger.info("Using " + this.threadNum + " threads. Configure with --server.threads=xxxx");
         }
 
+        aiThreadNum = Math.max(0, findInt("server.aiThreads", aiThreadNum));
+        matchPoolMax = Math.max(0, findInt("server.matchPool", matchPoolMax));
+        spectatorsMax = Math.max(0, findInt("server.spectators", spectatorsMax));
+        resumeGraceSeconds = Math.max(0, findInt("server.resumeGrace", resumeGraceSeconds));
+        slowTickMs = Math.max(0, findInt("server.slowTickMs", slowTickMs));
+
+        metricsPort = findInt("metrics.port", 0);
+        if (metricsPort <= 0)
+            logger.info("Metrics endpoint disabled. Enable with --metrics.port=xxxx");
+
         enableNsd = 0 != findInt("enableNsd", 1);
 
         readXml();
@@ -123,6 +158,10 @@ public class ServerConfiguration {
         serverInfo.description = prefs.getString(KEY_XML_SERVER_DESC, "No server description given.");
         serverInfo.privateRooms = prefs.getBoolean(KEY_XML_PRIVATE_ROOMS, false);
         serverInfo.version = LightblocksServer.SERVER_VERSION;
+        serverInfo.binaryProtocol = BinaryProtocol.VERSION;
+        serverInfo.batchedFrames = true;
+        serverInfo.spectators = spectatorsMax > 0;
+        serverInfo.sessionResume = resumeGraceSeconds;
         serverInfo.modes = new ArrayList<>();
 
         modeType = prefs.getInteger(KEY_XML_GAMEMODES, InitGameParameters.TYPE_MIX);
@@ -134,6 +173,8 @@ public class ServerConfiguration {
         if (modeType == InitGameParameters.TYPE_MIX || modeType == InitGameParameters.TYPE_MODERN)
             serverInfo.modes.add("modern");
 
+        readAiProfiles(prefs);
+
         secondsTimeout = Math.max(secondsTimeout, prefs.getInteger("disconnectTimeoutSeconds", secondsTimeout));
         secondsInactivity = Math.max(secondsInactivity, prefs.getInteger("disconnectInactivitySeconds", secondsInactivity));
 
@@ -144,11 +185,77 @@ public class ServerConfiguration {
             prefs.putString(KEY_XML_SERVER_DESC, serverInfo.description);
             prefs.putInteger(KEY_XML_GAMEMODES, modeType);
             prefs.putBoolean(KEY_XML_PRIVATE_ROOMS, serverInfo.privateRooms);
+            prefs.putString(KEY_XML_AI_PROFILE, defaultAiProfile.name);
             prefs.flush();
         }
 
     }
 
+    private void readAiProfiles(HeadlessPreferences prefs) {
+        for (AiProfile profile : new AiProfile[]{AiProfile.EASY, AiProfile.NORMAL, AiProfile.HARD, AiProfile.EXPERT})
+            aiProfiles.put(profile.name, profile);
+
+        Map<String, ?> settings = prefs.get();
+        for (String key : settings.keySet()) {
+            if (key.startsWith(KEY_XML_AI_PREFIX) && key.indexOf('.', KEY_XML_AI_PREFIX.length()) > 0) {
+                String name = key.substring(KEY_XML_AI_PREFIX.length(), key.indexOf('.', KEY_XML_AI_PREFIX.length()))
+                        .toLowerCase(Locale.ROOT);
+                if (!aiProfiles.containsKey(name) || aiProfiles.get(name) == AiProfile.getBuiltIn(name))
+                    aiProfiles.put(name, readAiProfile(prefs, name));
+            }
+        }
+
+        String profileName = findString("server.aiProfile", prefs.getString(KEY_XML_AI_PROFILE, defaultAiProfile.name));
+        defaultAiProfile = findAiProfile(profileName, defaultAiProfile);
+        logger.info("AI profile: " + defaultAiProfile);
+
+        for (String key : settings.keySet()) {
+            String suffix = "." + KEY_XML_AI_PROFILE;
+            if (key.startsWith(KEY_XML_ROOM_PREFIX) && key.endsWith(suffix) && key.length() > KEY_XML_ROOM_PREFIX.length() + suffix.length()) {
+                String roomKey = Match.getRoomKey(key.substring(KEY_XML_ROOM_PREFIX.length(), key.length() - suffix.length()));
+                roomAiProfiles.put(roomKey, findAiProfile(prefs.getString(key), defaultAiProfile));
+            }
+        }
+    }
+
+    /**
+     * reads the settings of an AI profile. Settings not given are taken from the built-in profile of
+     * the same name, or from the normal profile
+     */
+    private AiProfile readAiProfile(HeadlessPreferences prefs, String name) {
+        AiProfile base = AiProfile.getBuiltIn(name);
+        if (base == null)
+            base = AiProfile.NORMAL;
+
+        String prefix = KEY_XML_AI_PREFIX + name + ".";
+        return new AiProfile(name,
+                prefs.getInteger(prefix + "depth", base.depth),
+                prefs.getInteger(prefix + "beamWidth", base.beamWidth),
+                prefs.getFloat(prefix + "moveDelay", base.moveDelay),
+                prefs.getFloat(prefix + "planDelay", base.planDelay),
+                prefs.getFloat(prefix + "heightFactor", base.heightFactor),
+                prefs.getFloat(prefix + "completeLinesFactor", base.completeLinesFactor),
+                prefs.getFloat(prefix + "holesFactor", base.holesFactor),
+                prefs.getFloat(prefix + "bumpinessFactor", base.bumpinessFactor));
+    }
+
+    private AiProfile findAiProfile(String name, AiProfile defaultProfile) {
+        AiProfile profile = aiProfiles.get(name.toLowerCase(Locale.ROOT));
+        if (profile == null) {
+            logger.warn("Unknown AI profile " + name + ", using " + defaultProfile.name);
+            return defaultProfile;
+        }
+        return profile;
+    }
+
+    /**
+     * @return AI profile for the private room, or the server's default if the room has none or it is no private room
+     */
+    public AiProfile getAiProfile(@Nullable String roomName) {
+        AiProfile profile = (roomName != null ? roomAiProfiles.get(Match.getRoomKey(roomName)) : null);
+        return profile != null ? profile : defaultAiProfile;
+    }
+
     public ServerInfo getServerInfo() {
         return serverInfo;
     }
@@ -3,16 +3,24 @@ package de.golfgl.lightblocks.server;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.TimeUtils;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ServerStats {
     public static final String TAG_LOG = "STATS";
-    public int matchesStarted;
-    public int matchesEnded;
+    private static final int WAIT_TIME_SAMPLES = 1024;
+    private final AtomicInteger matchesStarted = new AtomicInteger();
+    private final AtomicInteger matchesEnded = new AtomicInteger();
     private int playersConnectedOverall;
     private int playersCurrentlyConnected;
     private long secondsConnectedOverall;
     private long resetMs;
+    private int tickOverruns;
+    private long ticksSkipped;
+    // ring buffer of the latest matchmaking wait times
+    private final long[] waitTimeSamples = new long[WAIT_TIME_SAMPLES];
+    private int waitTimeSampleCount;
 
     public ServerStats() {
         reset();
@@ -30,11 +38,70 @@ public class ServerStats {
     }
 
     public void reset() {
-        matchesEnded = 0;
-        matchesStarted = 0;
+        matchesEnded.set(0);
+        matchesStarted.set(0);
         playersConnectedOverall = 0;
         secondsConnectedOverall = 0;
+        synchronized (this) {
+            tickOverruns = 0;
+            ticksSkipped = 0;
+        }
         resetMs = TimeUtils.millis();
+        synchronized (waitTimeSamples) {
+            waitTimeSampleCount = 0;
+        }
+    }
+
+    /**
+     * records the time a player waited in the matchmaking queue
+     */
+    public void playerMatched(long waitTimeMs) {
+        synchronized (waitTimeSamples) {
+            waitTimeSamples[waitTimeSampleCount % WAIT_TIME_SAMPLES] = waitTimeMs;
+            waitTimeSampleCount++;
+        }
+    }
+
+    /**
+     * @param percentiles requested percentiles, 0..1
+     * @return matchmaking wait time in ms for the requested percentiles over the latest samples, or
+     * null if no player was matched since the last reset
+     */
+    public long[] getWaitTimePercentiles(float... percentiles) {
+        long[] sorted;
+        synchronized (waitTimeSamples) {
+            if (waitTimeSampleCount == 0)
+                return null;
+            sorted = Arrays.copyOf(waitTimeSamples, Math.min(waitTimeSampleCount, WAIT_TIME_SAMPLES));
+        }
+        Arrays.sort(sorted);
+
+        long[] retVal = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            int index = (int) Math.ceil(percentiles[i] * sorted.length) - 1;
+            retVal[i] = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+        return retVal;
+    }
+
+    /**
+     * a tick worker fell behind its schedule and had to catch up
+     *
+     * @param skipped number of ticks dropped because catching up was not possible
+     */
+    public void tickOverrun(long skipped) {
+        synchronized (this) {
+            tickOverruns++;
+            ticksSkipped = ticksSkipped + skipped;
+        }
+    }
+
+    public void incMatchesStarted() {
+        matchesStarted.incrementAndGet();
+    }
+
+    public void incMatchesEnded() {
+        matchesEnded.incrementAndGet();
     }
 
     public void incPlayerConnected() {
@@ -60,11 +127,17 @@ public class ServerStats {
         long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) % 60;
 
         Gdx.app.log(TAG_LOG, "for the last " + String.format("%d days %d hours %d minutes %d seconds", days, hours, minutes, seconds));
-        Gdx.app.log(TAG_LOG, "Matches started: " + matchesStarted);
-        Gdx.app.log(TAG_LOG, "Matches ended: " + matchesEnded);
+        Gdx.app.log(TAG_LOG, "Matches started: " + matchesStarted.get());
+        Gdx.app.log(TAG_LOG, "Matches ended: " + matchesEnded.get());
         Gdx.app.log(TAG_LOG, "Players connected: " + playersConnectedOverall + " overall, " + playersCurrentlyConnected + " currently connected");
         int playersOverallNotConnectedAnymore = playersConnectedOverall - playersCurrentlyConnected;
         if (playersOverallNotConnectedAnymore > 0)
             Gdx.app.log(TAG_LOG, "Player average connection time (sec): " + (secondsConnectedOverall / playersOverallNotConnectedAnymore));
+        if (tickOverruns > 0)
+            Gdx.app.log(TAG_LOG, "Tick overruns: " + tickOverruns + ", ticks skipped: " + ticksSkipped);
+        long[] waitTimes = getWaitTimePercentiles(.5f, .9f, .99f, 1f);
+        if (waitTimes != null)
+            Gdx.app.log(TAG_LOG, "Matchmaking wait time (ms): p50 " + waitTimes[0] + ", p90 " + waitTimes[1]
+                    + ", p99 " + waitTimes[2] + ", max " + waitTimes[3]);
     }
 }
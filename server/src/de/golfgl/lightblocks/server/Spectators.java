@@ -0,0 +1,149 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Spectators of a match. After the players were served, every spectator gets all events of the
+ * tick from the match's event broadcast, from the view of player 1.
+ * <p>
+ * A new spectator starts with a full snapshot. If a spectator can't keep up and more than
+ * {@link #MAX_BACKLOG} frames are waiting in its connection's send queue, it gets no more events
+ * but a new snapshot as soon as its send queue is empty, at most every {@link #SNAPSHOT_INTERVAL_MS}.
+ * Events are resumed after the snapshot.
+ * <p>
+ * The list is copy on write: changed by the WebSocket and main threads, iterated by the tick worker.
+ */
+class Spectators {
+    static final int MAX_BACKLOG = 32;
+    static final long SNAPSHOT_INTERVAL_MS = 2000;
+
+    private final Match match;
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile boolean hasText;
+    private volatile boolean hasBinary;
+
+    Spectators(Match match) {
+        this.match = match;
+    }
+
+    /**
+     * @return false if the maximum number of spectators is reached
+     */
+    synchronized boolean add(Player player, int max) {
+        if (subscriptions.length >= max)
+            return false;
+
+        Subscription[] newSubscriptions = new Subscription[subscriptions.length + 1];
+        System.arraycopy(subscriptions, 0, newSubscriptions, 0, subscriptions.length);
+        newSubscriptions[subscriptions.length] = new Subscription(player);
+        setSubscriptions(newSubscriptions);
+        return true;
+    }
+
+    synchronized void remove(Player player) {
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i].player == player) {
+                Subscription[] newSubscriptions = new Subscription[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, newSubscriptions, 0, i);
+                System.arraycopy(subscriptions, i + 1, newSubscriptions, i, newSubscriptions.length - i);
+                setSubscriptions(newSubscriptions);
+                return;
+            }
+        }
+    }
+
+    /**
+     * removes all spectators and closes their connections
+     */
+    void closeAll(String reason) {
+        Subscription[] closed;
+        synchronized (this) {
+            closed = subscriptions;
+            setSubscriptions(new Subscription[0]);
+        }
+        for (Subscription subscription : closed)
+            subscription.player.close(reason);
+    }
+
+    private void setSubscriptions(Subscription[] newSubscriptions) {
+        boolean text = false;
+        boolean binary = false;
+        for (Subscription subscription : newSubscriptions) {
+            text = text || !subscription.player.binaryProtocol;
+            binary = binary || subscription.player.binaryProtocol;
+        }
+        hasText = text;
+        hasBinary = binary;
+        subscriptions = newSubscriptions;
+    }
+
+    int size() {
+        return subscriptions.length;
+    }
+
+    boolean hasTextSpectator() {
+        return hasText;
+    }
+
+    boolean hasBinarySpectator() {
+        return hasBinary;
+    }
+
+    /**
+     * all spectators get a new snapshot on the next tick, because the match changed fundamentally
+     */
+    void requestSnapshot() {
+        for (Subscription subscription : subscriptions) {
+            subscription.lastSnapshotMs = 0;
+            subscription.needsSnapshot = true;
+        }
+    }
+
+    /**
+     * sends the events of this tick or a snapshot to all spectators. Called by the tick worker
+     */
+    void send(EventBroadcast events) {
+        Subscription[] subscriptions = this.subscriptions;
+        if (subscriptions.length == 0)
+            return;
+
+        long now = TimeUtils.millis();
+        int eventNum = events.getEventNum();
+        String snapshot = null;
+        for (Subscription subscription : subscriptions) {
+            Player player = subscription.player;
+            int backlog = player.getSendBacklog();
+
+            if (!subscription.needsSnapshot && backlog > MAX_BACKLOG) {
+                Gdx.app.debug("Spectators", player.nickName + " fell behind on match " + match.matchId);
+                subscription.needsSnapshot = true;
+            }
+
+            if (subscription.needsSnapshot) {
+                // the snapshot contains this tick's events already
+                if (backlog == 0 && now - subscription.lastSnapshotMs >= SNAPSHOT_INTERVAL_MS) {
+                    if (snapshot == null)
+                        snapshot = match.getSnapshot();
+                    if (snapshot != null) {
+                        player.sendImmediately(snapshot);
+                        subscription.needsSnapshot = false;
+                        subscription.lastSnapshotMs = now;
+                    }
+                }
+            } else if (eventNum > 0) {
+                player.sendEvents(events, 0, eventNum - 1, false);
+            }
+        }
+    }
+
+    private static class Subscription {
+        private final Player player;
+        private volatile boolean needsSnapshot = true;
+        private volatile long lastSnapshotMs;
+
+        Subscription(Player player) {
+            this.player = player;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package de.golfgl.lightblocks.server;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rolling percentiles of the match tick durations of the whole server.
+ * <p>
+ * Durations are counted in HdrHistogram style buckets: values below 32 ns have a bucket of their
+ * own, above that every power of two is split into 16 linear sub buckets, so a percentile is off by
+ * 3% at most. Two windows are kept: values are added to the current one, percentiles are evaluated
+ * over both. The main thread rotates the windows, values added during a rotation might get lost.
+ */
+class TickLatency {
+    static final long WINDOW_MS = 30000;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    // up to 2^40 ns, about 18 minutes
+    private static final int BUCKETS = SUB_BUCKETS + (40 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray[] windows = new AtomicLongArray[]{new AtomicLongArray(BUCKETS), new AtomicLongArray(BUCKETS)};
+    private final AtomicLong[] maxima = new AtomicLong[]{new AtomicLong(), new AtomicLong()};
+    private volatile int current;
+    private long windowStartMs = TimeUtils.millis();
+
+    void record(long nanos) {
+        int window = current;
+        windows[window].incrementAndGet(getBucket(nanos));
+
+        AtomicLong max = maxima[window];
+        long lastMax = max.get();
+        while (nanos > lastMax && !max.compareAndSet(lastMax, nanos))
+            lastMax = max.get();
+    }
+
+    /**
+     * starts a new window if the current one is older than {@link #WINDOW_MS}. Called by the main thread
+     */
+    void rotate() {
+        if (TimeUtils.timeSinceMillis(windowStartMs) < WINDOW_MS)
+            return;
+
+        int next = 1 - current;
+        AtomicLongArray nextWindow = windows[next];
+        for (int i = 0; i < BUCKETS; i++)
+            nextWindow.set(i, 0);
+        maxima[next].set(0);
+        current = next;
+        windowStartMs = TimeUtils.millis();
+    }
+
+    /**
+     * @param percentile 0..1
+     * @return duration in ns, 0 if nothing was recorded
+     */
+    long getPercentile(float percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count = count + windows[0].get(i) + windows[1].get(i);
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen = seen + windows[0].get(i) + windows[1].get(i);
+            if (seen >= rank)
+                return Math.min(getValue(i), getMax());
+        }
+        return getMax();
+    }
+
+    long getMax() {
+        return Math.max(maxima[0].get(), maxima[1].get());
+    }
+
+    private static int getBucket(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) Math.max(0, nanos);
+
+        int magnitude = 64 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >> magnitude);
+        return Math.min(BUCKETS - 1, SUB_BUCKETS + (magnitude - 1) * HALF_SUB_BUCKETS + subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * @return the middle of the bucket's value range
+     */
+    private static long getValue(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int magnitude = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return (subBucket << magnitude) + (1L << magnitude) / 2;
+    }
+}
@@ -1,9 +1,64 @@
 package de.golfgl.lightblocks.server.model;
 
 public class InGameMessage {
+    // client requests the full match information
+    public static final String RESYNC = "RSY";
+
+    // game inputs, the numbers are the opcodes of the binary protocol
+    public static final int INPUT_NONE = 0;
+    public static final int INPUT_START_MOVE_LEFT = 1;
+    public static final int INPUT_START_MOVE_RIGHT = 2;
+    public static final int INPUT_STOP_MOVE = 3;
+    public static final int INPUT_HOLD = 4;
+    public static final int INPUT_ROTATE_RIGHT = 5;
+    public static final int INPUT_ROTATE_LEFT = 6;
+    public static final int INPUT_DROP_NONE = 7;
+    public static final int INPUT_DROP_SOFT = 8;
+    public static final int INPUT_DROP_HARD = 9;
+
+    // shared instances of the game inputs, by opcode
+    private static final InGameMessage[] INPUTS = new InGameMessage[]{null,
+            new InGameMessage("SML", INPUT_START_MOVE_LEFT), new InGameMessage("SMR", INPUT_START_MOVE_RIGHT),
+            new InGameMessage("SMH", INPUT_STOP_MOVE), new InGameMessage("HAT", INPUT_HOLD),
+            new InGameMessage("ROR", INPUT_ROTATE_RIGHT), new InGameMessage("ROL", INPUT_ROTATE_LEFT),
+            new InGameMessage("DRN", INPUT_DROP_NONE), new InGameMessage("DRS", INPUT_DROP_SOFT),
+            new InGameMessage("DRH", INPUT_DROP_HARD)};
+    private static final InGameMessage RESYNC_MESSAGE = new InGameMessage(RESYNC, INPUT_NONE);
+
     public final String message;
+    // opcode of the game input, INPUT_NONE for other messages
+    public final int input;
 
     public InGameMessage(String message) {
+        this(message, INPUT_NONE);
+    }
+
+    private InGameMessage(String message, int input) {
         this.message = message;
+        this.input = input;
+    }
+
+    /**
+     * @return the shared message for the game input opcode, or null if the opcode is unknown
+     */
+    public static InGameMessage fromInput(int input) {
+        return input > INPUT_NONE && input < INPUTS.length ? INPUTS[input] : null;
+    }
+
+    /**
+     * @return the message starting at the offset of the text. Known messages are shared instances,
+     * so the high-frequency game inputs don't allocate
+     */
+    public static InGameMessage fromText(String text, int offset) {
+        int length = text.length() - offset;
+        for (int i = 1; i < INPUTS.length; i++) {
+            String message = INPUTS[i].message;
+            if (length == message.length() && text.startsWith(message, offset))
+                return INPUTS[i];
+        }
+        if (length == RESYNC.length() && text.startsWith(RESYNC, offset))
+            return RESYNC_MESSAGE;
+
+        return new InGameMessage(text.substring(offset));
     }
 }
@@ -6,9 +6,15 @@ public class MatchInfo {
     public PlayerInfo player1;
     public PlayerInfo player2;
     public boolean isModern;
+    public int matchId;
+    // the gameboards only contain changes if the version the client has is the base version
+    public int version;
+    public int baseVersion;
 
     public static class PlayerInfo {
         public String gameboard;
+        // instead of the gameboard: per changed row the two digit row number and the row's squares
+        public String changedRows;
         public ScoreInfo score;
         public String nickname;
         public String activePiece;
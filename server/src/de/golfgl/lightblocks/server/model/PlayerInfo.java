@@ -7,4 +7,12 @@ public class PlayerInfo {
     public String authToken;
     public String gameMode;
     public String roomName;
+    public int binaryProtocol;
+    public boolean batchedFrames;
+    // set to watch a match instead of playing: private room name or id of a public match
+    public String spectateRoom;
+    public int spectateMatch;
+    // set to resume the session of a dropped connection, with the last applied match information version
+    public String resumeToken;
+    public int matchInfoVersion;
 }
@@ -10,4 +10,9 @@ public class ServerInfo {
     public boolean authRequired;
     public List<String> modes;
     public boolean privateRooms;
+    public int binaryProtocol;
+    public boolean batchedFrames;
+    public boolean spectators;
+    // seconds a dropped player can resume its session, 0 if not supported
+    public int sessionResume;
 }
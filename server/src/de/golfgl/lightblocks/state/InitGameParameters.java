@@ -13,6 +13,9 @@ public class InitGameParameters {
 
     private int beginningLevel;
     private int modeType;
+    // seeds the pieces and garbage gaps of the game, so it can be replayed exactly
+    private boolean seeded;
+    private long randomSeed;
 
     public int getBeginningLevel() {
         return beginningLevel;
@@ -29,4 +32,17 @@ public class InitGameParameters {
     public void setModeType(int modeType) {
         this.modeType = modeType;
     }
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    public void setRandomSeed(long randomSeed) {
+        this.randomSeed = randomSeed;
+        seeded = true;
+    }
 }
@@ -0,0 +1,39 @@
+package de.golfgl.lightblocks.simulator;
+
+/**
+ * Final state of a simulated match. Matches with the same seed must have the same result, as long
+ * as the game model and the AI behave the same.
+ */
+class MatchResult {
+    final long seed;
+    // updates until the game was over, or the maximum if the match was ended undecided
+    final int frames;
+    final int[] scores = new int[2];
+    final int[] lines = new int[2];
+    final int[] pieces = new int[2];
+    // serialized gameboards, empty squares are dots
+    final String[] gameboards = new String[2];
+
+    MatchResult(long seed, int frames) {
+        this.seed = seed;
+        this.frames = frames;
+    }
+
+    int getPieces() {
+        return pieces[0] + pieces[1];
+    }
+
+    /**
+     * @return the result as line of the result file
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(seed).append(' ').append(frames);
+        for (int player = 0; player < 2; player++) {
+            builder.append(' ').append(scores[player]).append(' ').append(lines[player])
+                    .append(' ').append(pieces[player]).append(' ').append(gameboards[player]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,254 @@
+package de.golfgl.lightblocks.simulator;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Plays seeded AI vs AI matches on the server's game model as fast as possible on all cores, and
+ * reports the throughput and allocation rate of the game model and the AI.
+ * <p>
+ * Matches with the same seed are played the same, so the results of two runs can be compared to
+ * check that an engine change did not change the game: write them with --out=file and compare a
+ * later run with --compare=file.
+ */
+public class MatchSimulator extends ApplicationAdapter {
+    private static final long REPORT_INTERVAL_MS = 5000;
+
+    private final SimulatorConfiguration config;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MatchResult[] results;
+    private final AtomicInteger nextMatch = new AtomicInteger();
+    private final AtomicInteger matchesDone = new AtomicInteger();
+    private final AtomicLong piecesDone = new AtomicLong();
+    // bytes allocated by the simulator threads, -1 if not supported by the JVM
+    private final AtomicLong bytesAllocated = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public MatchSimulator(SimulatorConfiguration config) {
+        this.config = config;
+        results = new MatchResult[config.matches];
+    }
+
+    public static void main(String[] arg) {
+        HeadlessApplicationConfiguration appConfig = new HeadlessApplicationConfiguration();
+        // the application is only needed for logging, the matches are played by their own threads
+        appConfig.updatesPerSecond = -1;
+        SimulatorConfiguration config = new SimulatorConfiguration(arg);
+
+        MatchSimulator simulator = new MatchSimulator(config);
+        new HeadlessApplication(simulator, appConfig);
+        Gdx.app.setLogLevel(config.loglevel);
+
+        boolean successful = simulator.run();
+
+        Gdx.app.exit();
+        System.exit(successful ? 0 : 1);
+    }
+
+    /**
+     * plays all matches, blocks until they are over
+     *
+     * @return true if all matches were played and equal the compared results
+     */
+    public boolean run() {
+        Gdx.app.log("Simulator", "Starting " + config);
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported())
+            ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+        else
+            bytesAllocated.set(-1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.threadNum, new ThreadFactory() {
+            private final AtomicInteger threadNum = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Simulator" + threadNum.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long startMs = TimeUtils.millis();
+        for (int i = 0; i < config.threadNum; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    playMatches();
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS))
+                Gdx.app.log("Simulator", matchesDone.get() + "/" + config.matches + " matches played");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        double seconds = Math.max(1, TimeUtils.timeSinceMillis(startMs)) / 1000.0;
+
+        long frames = 0;
+        for (MatchResult result : results) {
+            if (result != null)
+                frames = frames + result.frames;
+        }
+        Gdx.app.log("Simulator", "Finished " + config);
+        Gdx.app.log("Simulator", String.format(Locale.ROOT, "Throughput: %.1f matches/s, %.0f pieces/s, "
+                        + "%.0fx real time", matchesDone.get() / seconds, piecesDone.get() / seconds,
+                frames * SimulatedMatch.FRAME_DELTA / seconds));
+        if (bytesAllocated.get() >= 0)
+            Gdx.app.log("Simulator", String.format(Locale.ROOT, "Allocation: %.1f KB/s, %.0f bytes per piece",
+                    bytesAllocated.get() / seconds / 1024,
+                    bytesAllocated.get() / (double) Math.max(1, piecesDone.get())));
+        else
+            Gdx.app.log("Simulator", "Allocation: not supported by this JVM");
+
+        if (failures.get() > 0) {
+            Gdx.app.error("Simulator", failures.get() + " match(es) failed");
+            return false;
+        }
+
+        Array<String> lines = new Array<>(results.length);
+        for (MatchResult result : results)
+            lines.add(result.toString());
+        Gdx.app.log("Simulator", "Results checksum: " + getChecksum(lines));
+
+        boolean successful = true;
+        if (config.outFile != null)
+            successful = writeResults(lines);
+        if (config.compareFile != null)
+            successful = compareResults(lines) && successful;
+        return successful;
+    }
+
+    /**
+     * plays matches until all are taken. Called by every simulator thread
+     */
+    private void playMatches() {
+        long threadId = Thread.currentThread().getId();
+        long startBytes = getAllocatedBytes(threadId);
+        SimulatedMatch match = new SimulatedMatch(config);
+
+        int matchNum;
+        while ((matchNum = nextMatch.getAndIncrement()) < results.length) {
+            try {
+                MatchResult result = match.play(config.seed + matchNum);
+                results[matchNum] = result;
+                piecesDone.addAndGet(result.getPieces());
+            } catch (Throwable t) {
+                failures.incrementAndGet();
+                Gdx.app.error("Simulator", "Match with seed " + (config.seed + matchNum) + " failed", t);
+                // the reused game model might be broken
+                match = new SimulatedMatch(config);
+            }
+            matchesDone.incrementAndGet();
+        }
+
+        if (startBytes >= 0 && bytesAllocated.get() >= 0)
+            bytesAllocated.addAndGet(getAllocatedBytes(threadId) - startBytes);
+    }
+
+    private long getAllocatedBytes(long threadId) {
+        if (threads instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId);
+        return -1;
+    }
+
+    private static String getChecksum(Array<String> lines) {
+        CRC32 crc = new CRC32();
+        for (String line : lines) {
+            for (int i = 0; i < line.length(); i++)
+                crc.update(line.charAt(i));
+            crc.update('\n');
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    private boolean writeResults(Array<String> lines) {
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(config.outFile), "UTF-8");
+            try {
+                for (String line : lines)
+                    writer.write(line + "\n");
+            } finally {
+                writer.close();
+            }
+            Gdx.app.log("Simulator", "Results written to " + config.outFile);
+            return true;
+        } catch (IOException e) {
+            Gdx.app.error("Simulator", "Could not write results to " + config.outFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * compares the results with the ones of the compare file, matches not played by both runs are
+     * not compared
+     *
+     * @return true if all results are equal
+     */
+    private boolean compareResults(Array<String> lines) {
+        int compared = 0;
+        int differences = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(config.compareFile), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int seedEnd = line.indexOf(' ');
+                    long seed = Long.parseLong(seedEnd > 0 ? line.substring(0, seedEnd) : line);
+                    long matchNum = seed - config.seed;
+                    if (matchNum < 0 || matchNum >= lines.size)
+                        continue;
+
+                    compared++;
+                    String result = lines.get((int) matchNum);
+                    if (!result.equals(line)) {
+                        if (differences == 0) {
+                            Gdx.app.error("Simulator", "First different match, expected:\n" + line
+                                    + "\nbut was:\n" + result);
+                        }
+                        differences++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | NumberFormatException e) {
+            Gdx.app.error("Simulator", "Could not read results from " + config.compareFile, e);
+            return false;
+        }
+
+        if (differences > 0 || compared == 0) {
+            Gdx.app.error("Simulator", differences + " of " + compared + " compared match(es) differ from "
+                    + config.compareFile);
+            return false;
+        }
+        Gdx.app.log("Simulator", "All " + compared + " compared match(es) equal " + config.compareFile);
+        return true;
+    }
+}
@@ -0,0 +1,155 @@
+package de.golfgl.lightblocks.simulator;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.IntArray;
+
+import javax.annotation.Nullable;
+
+import de.golfgl.lightblocks.model.GameScore;
+import de.golfgl.lightblocks.model.IGameModelListener;
+import de.golfgl.lightblocks.model.ServerMultiplayerModel;
+import de.golfgl.lightblocks.multiplayer.ai.AiProfile;
+import de.golfgl.lightblocks.multiplayer.ai.ArtificialPlayer;
+import de.golfgl.lightblocks.state.InitGameParameters;
+
+/**
+ * Plays AI vs AI matches on the server's game model, frame by frame without waiting. The game
+ * model and AI players are reused for every match like the server's matches do, so one instance
+ * is used per simulator thread.
+ * <p>
+ * Everything random is seeded from the match's seed and the AI plans on the calling thread, so a
+ * seed always leads to the same match.
+ */
+class SimulatedMatch {
+    // the server's tick rate
+    static final float FRAME_DELTA = 1 / 60f;
+
+    private final ServerMultiplayerModel gameModel = new ServerMultiplayerModel();
+    private final InitGameParameters gameParams = new InitGameParameters();
+    private final IGameModelListener listener = new NoUserInterface();
+    private final AiProfile aiProfile;
+    private final int maxFrames;
+    private ArtificialPlayer aiPlayer1;
+    private ArtificialPlayer aiPlayer2;
+
+    SimulatedMatch(SimulatorConfiguration config) {
+        gameParams.setModeType(config.modeType);
+        aiProfile = config.aiProfile;
+        maxFrames = (int) (config.maxMatchSeconds / FRAME_DELTA);
+    }
+
+    /**
+     * plays a match until it is over or the maximum time was simulated
+     */
+    MatchResult play(long seed) {
+        RandomXS128 seeds = new RandomXS128(seed);
+        gameParams.setRandomSeed(seeds.nextLong());
+        gameModel.startNewGame(gameParams);
+        ServerMultiplayerModel secondGameModel = gameModel.getSecondGameModel();
+
+        if (aiPlayer1 == null) {
+            aiPlayer1 = new ArtificialPlayer(gameModel, secondGameModel);
+            aiPlayer2 = new ArtificialPlayer(secondGameModel, gameModel);
+        } else {
+            aiPlayer1.reset();
+            aiPlayer2.reset();
+        }
+        aiPlayer1.setProfile(aiProfile);
+        aiPlayer2.setProfile(aiProfile);
+        aiPlayer1.setRandomSeed(seeds.nextLong());
+        aiPlayer2.setRandomSeed(seeds.nextLong());
+        gameModel.setAiPlayer(aiPlayer1);
+        secondGameModel.setAiPlayer(aiPlayer2);
+        // this lets the AIs plan their first pieces
+        gameModel.setUserInterface(listener);
+        secondGameModel.setUserInterface(listener);
+
+        int frames = 0;
+        while (!gameModel.isGameOver() && frames < maxFrames) {
+            gameModel.update(FRAME_DELTA);
+            frames++;
+        }
+
+        MatchResult result = new MatchResult(seed, frames);
+        fillResult(result, 0, gameModel);
+        fillResult(result, 1, secondGameModel);
+        return result;
+    }
+
+    private static void fillResult(MatchResult result, int player, ServerMultiplayerModel gameModel) {
+        GameScore score = gameModel.getScore();
+        result.scores[player] = score.getScore();
+        result.lines[player] = score.getClearedLines();
+        result.pieces[player] = score.getDrawnTetrominos();
+        String gameboard = gameModel.getSerializedGameboard().replace(' ', '.');
+        result.gameboards[player] = gameboard.isEmpty() ? "." : gameboard;
+    }
+
+    private static class NoUserInterface implements IGameModelListener {
+        @Override
+        public void insertNewBlock(int x, int y, int blockType) {
+        }
+
+        @Override
+        public void moveTetro(Integer[][] v, int dx, int dy, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void rotateTetro(Integer[][] vOld, Integer[][] vNew, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void clearAndInsertLines(IntArray linesToRemove, boolean special, int[] garbageHolePosition) {
+        }
+
+        @Override
+        public void markAndMoveFreezedLines(boolean playSoundAndMove, IntArray removedLines, IntArray fullLines) {
+        }
+
+        @Override
+        public void setGameOver() {
+        }
+
+        @Override
+        public void showNextTetro(Integer[][] relativeBlockPositions, int blockType) {
+        }
+
+        @Override
+        public void activateNextTetro(Integer[][] boardBlockPositions, int blockType, int ghostPieceDistance) {
+        }
+
+        @Override
+        public void swapHoldAndActivePiece(Integer[][] newHoldPiecePositions, Integer[][] oldActivePiecePositions,
+                                           Integer[][] newActivePiecePositions, int ghostPieceDistance,
+                                           int holdBlockType) {
+        }
+
+        @Override
+        public void pinTetromino(Integer[][] currentBlockPositions) {
+        }
+
+        @Override
+        public void updateScore(GameScore score, int gainedScore) {
+        }
+
+        @Override
+        public void markConflict(int x, int y) {
+        }
+
+        @Override
+        public void showMotivation(MotivationTypes achievement, @Nullable String extra) {
+        }
+
+        @Override
+        public void showGarbageAmount(int lines) {
+        }
+
+        @Override
+        public void showComboHeight(int comboHeight) {
+        }
+
+        @Override
+        public void emphasizeTimeLabel() {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.golfgl.lightblocks.simulator;
+
+import com.badlogic.gdx.Application;
+
+import javax.annotation.Nullable;
+
+import de.golfgl.lightblocks.multiplayer.ai.AiProfile;
+import de.golfgl.lightblocks.state.InitGameParameters;
+
+/**
+ * Options of the simulator, given as --name=value arguments or system properties
+ */
+public class SimulatorConfiguration {
+    private final String[] args;
+    public int matches = 1000;
+    // match n is seeded with seed + n
+    public long seed = 1;
+    public int modeType = InitGameParameters.TYPE_MODERN;
+    public AiProfile aiProfile = AiProfile.NORMAL;
+    // simulated seconds after which a match is ended undecided
+    public int maxMatchSeconds = 600;
+    public int threadNum = Runtime.getRuntime().availableProcessors();
+    // file to write the results of all matches to, null for none
+    public String outFile;
+    // results of an earlier run to compare with, null for none
+    public String compareFile;
+    public int loglevel = Application.LOG_INFO;
+
+    public SimulatorConfiguration(String[] arg) {
+        this.args = arg;
+
+        loglevel = Math.min(findInt("verbosity", loglevel), Application.LOG_DEBUG);
+        matches = Math.max(1, findInt("matches", matches));
+        seed = findLong("seed", seed);
+        modeType = "classic".equalsIgnoreCase(findString("mode", "modern"))
+                ? InitGameParameters.TYPE_CLASSIC : InitGameParameters.TYPE_MODERN;
+        AiProfile profile = AiProfile.getBuiltIn(findString("aiProfile", aiProfile.name));
+        if (profile != null)
+            aiProfile = profile;
+        maxMatchSeconds = Math.max(1, findInt("maxMatchSeconds", maxMatchSeconds));
+        threadNum = Math.max(1, findInt("threads", threadNum));
+        outFile = findString("out", null);
+        compareFile = findString("compare", null);
+    }
+
+    protected int findInt(String name, int defaultVal) {
+        int retVal = defaultVal;
+        try {
+            retVal = Integer.parseInt(findString(name, String.valueOf(defaultVal)));
+        } catch (Throwable ignored) {
+        }
+        return retVal;
+    }
+
+    protected long findLong(String name, long defaultVal) {
+        long retVal = defaultVal;
+        try {
+            retVal = Long.parseLong(findString(name, String.valueOf(defaultVal)));
+        } catch (Throwable ignored) {
+        }
+        return retVal;
+    }
+
+    protected String findString(String name, @Nullable String defaultVal) {
+        // first check for system property
+        String retVal = System.getProperty(name, defaultVal);
+
+        // and check for command line argument, too
+        for (String arg : args) {
+            if (arg.startsWith("--" + name + "=")) {
+                retVal = arg.substring(name.length() + 3);
+            }
+        }
+
+        return retVal;
+    }
+
+    @Override
+    public String toString() {
+        return matches + " match(es) from seed " + seed + ", "
+                + (modeType == InitGameParameters.TYPE_CLASSIC ? "classic" : "modern") + " mode, AI " + aiProfile
+                + ", at most " + maxMatchSeconds + "s each, " + threadNum + " thread(s)";
+    }
+}